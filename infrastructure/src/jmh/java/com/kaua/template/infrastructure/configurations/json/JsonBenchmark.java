@@ -0,0 +1,86 @@
+package com.kaua.template.infrastructure.configurations.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the direct {@link Json} calls with the previous shape, a capturing {@link Callable} around the mapper
+ * on every call. With the {@code gc} profiler the difference shows in {@code gc.alloc.rate.norm}. The Smile
+ * benchmarks measure the binary profile on the same payload, and {@code readTree} an escaped json document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonBenchmark {
+
+    private ObjectMapper mapper;
+    private Payload payload;
+    private byte[] json;
+    private byte[] smile;
+    private String escaped;
+
+    @Setup
+    public void setup() {
+        this.mapper = Json.mapper();
+        this.payload = new Payload("0f8fad5b-d9cb-469f-a165-70867728950e", 201, Map.of("Location", "/orders/123"));
+        this.json = Json.writeValueAsBytes(this.payload);
+        this.smile = Json.writeValueAsSmile(this.payload);
+        this.escaped = Json.writeValueAsString(Json.writeValueAsString(this.payload));
+    }
+
+    @Benchmark
+    public byte[] writeValueAsBytes() {
+        return Json.writeValueAsBytes(this.payload);
+    }
+
+    @Benchmark
+    public byte[] writeValueAsBytesThroughCallable() {
+        return invoke(() -> this.mapper.writeValueAsBytes(this.payload));
+    }
+
+    @Benchmark
+    public Payload readValue() {
+        return Json.readValue(this.json, Payload.class);
+    }
+
+    @Benchmark
+    public Payload readValueThroughCallable() {
+        return invoke(() -> this.mapper.readValue(this.json, Payload.class));
+    }
+
+    @Benchmark
+    public byte[] writeValueAsSmile() {
+        return Json.writeValueAsSmile(this.payload);
+    }
+
+    @Benchmark
+    public Payload readSmile() {
+        return Json.readSmile(this.smile, Payload.class);
+    }
+
+    @Benchmark
+    public Payload readTree() {
+        return Json.readTree(this.escaped, Payload.class);
+    }
+
+    private static <T> T invoke(final Callable<T> callable) {
+        try {
+            return callable.call();
+        } catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public record Payload(String id, int statusCode, Map<String, String> headers) {
+    }
+}
@@ -1,22 +1,91 @@
 package com.kaua.template.infrastructure.configurations;
 
+import com.kaua.template.infrastructure.configurations.properties.RedisClientProperties;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.resource.ClientResources;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnection;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.util.StringUtils;
+
+import java.util.HashSet;
 
 @Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(RedisClientProperties.class)
 public class CacheConfig {
 
+    /**
+     * Client settings shared by every Redis connection factory of the application, built from
+     * {@code spring.data.redis}. The {@link ClientResources} come from the Spring Boot auto-configuration, which
+     * registers the Lettuce command latency metrics in the meter registry.
+     */
     @Bean
-    public LettuceConnectionFactory redisConnectionFactory(final RedisProperties redisProperties) {
-        return new LettuceConnectionFactory(
-                redisProperties.getHost(),
-                redisProperties.getPort()
-        );
+    public LettuceClientConfiguration redisClientConfiguration(
+            final RedisProperties redisProperties,
+            final ClientResources clientResources
+    ) {
+        return clientConfiguration(redisProperties, clientResources).build();
+    }
+
+    @Bean
+    public LettuceConnectionFactory redisConnectionFactory(
+            final RedisProperties redisProperties,
+            final RedisClientProperties redisClientProperties,
+            final LettuceClientConfiguration redisClientConfiguration
+    ) {
+        final var aConnectionFactory = connectionFactory(redisProperties, redisClientConfiguration);
+
+        // with a pool every command borrows its own connection, instead of queueing behind the others on a
+        // single shared connection
+        aConnectionFactory.setShareNativeConnection(!isPoolEnabled(redisProperties));
+
+        // without a policy spring flushes each command of a pipeline on its own
+        aConnectionFactory.setPipeliningFlushPolicy(redisClientProperties.getPipelineFlushSize() > 0
+                ? LettuceConnection.PipeliningFlushPolicy.buffered(redisClientProperties.getPipelineFlushSize())
+                : LettuceConnection.PipeliningFlushPolicy.flushOnClose());
+
+        return aConnectionFactory;
+    }
+
+    /**
+     * Connection factory for the reads that may be answered by a replica (the find of the idempotency keys), every
+     * other command keeps going to the master through the {@code redisConnectionFactory}. It is not a default
+     * candidate, so it is only injected where it is asked for by name.
+     */
+    @Bean(defaultCandidate = false)
+    @ConditionalOnProperty(prefix = "cache.redis", name = "read-from")
+    public LettuceConnectionFactory replicaRedisConnectionFactory(
+            final RedisProperties redisProperties,
+            final RedisClientProperties redisClientProperties,
+            final ClientResources clientResources
+    ) {
+        final var aClientConfiguration = clientConfiguration(redisProperties, clientResources)
+                .readFrom(ReadFrom.valueOf(redisClientProperties.getReadFrom()))
+                .build();
+        final var aConnectionFactory = connectionFactory(redisProperties, aClientConfiguration);
+        aConnectionFactory.setShareNativeConnection(!isPoolEnabled(redisProperties));
+        return aConnectionFactory;
     }
 
     @Bean
@@ -28,4 +97,134 @@ public class CacheConfig {
         template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
         return template;
     }
+
+    /**
+     * Template for values that are already serialized (e.g. the idempotency key codec), they are written and read
+     * as the raw bytes instead of being wrapped by the JDK serialization.
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> byteArrayRedisTemplate(final LettuceConnectionFactory redisConnectionFactory) {
+        return byteArrayTemplate(redisConnectionFactory);
+    }
+
+    /**
+     * Raw bytes template over the {@link #replicaRedisConnectionFactory}, only used for reads.
+     */
+    @Bean(defaultCandidate = false)
+    @ConditionalOnProperty(prefix = "cache.redis", name = "read-from")
+    public RedisTemplate<String, byte[]> replicaByteArrayRedisTemplate(
+            final @Qualifier("replicaRedisConnectionFactory") LettuceConnectionFactory replicaRedisConnectionFactory
+    ) {
+        return byteArrayTemplate(replicaRedisConnectionFactory);
+    }
+
+    private static RedisTemplate<String, byte[]> byteArrayTemplate(final LettuceConnectionFactory connectionFactory) {
+        final var aTemplate = new RedisTemplate<String, byte[]>();
+        aTemplate.setConnectionFactory(connectionFactory);
+        aTemplate.setKeySerializer(RedisSerializer.string());
+        aTemplate.setValueSerializer(RedisSerializer.byteArray());
+        aTemplate.setHashKeySerializer(RedisSerializer.string());
+        aTemplate.setHashValueSerializer(RedisSerializer.byteArray());
+        return aTemplate;
+    }
+
+    private static LettuceClientConfiguration.LettuceClientConfigurationBuilder clientConfiguration(
+            final RedisProperties redisProperties,
+            final ClientResources clientResources
+    ) {
+        final var aPool = redisProperties.getLettuce().getPool();
+        final LettuceClientConfiguration.LettuceClientConfigurationBuilder aBuilder = isPoolEnabled(redisProperties)
+                ? LettucePoolingClientConfiguration.builder().poolConfig(poolConfig(aPool))
+                : LettuceClientConfiguration.builder();
+
+        aBuilder.clientResources(clientResources)
+                .clientOptions(clientOptions(redisProperties));
+
+        if (redisProperties.getTimeout() != null) {
+            aBuilder.commandTimeout(redisProperties.getTimeout());
+        }
+        if (redisProperties.getLettuce().getShutdownTimeout() != null) {
+            aBuilder.shutdownTimeout(redisProperties.getLettuce().getShutdownTimeout());
+        }
+        if (StringUtils.hasText(redisProperties.getClientName())) {
+            aBuilder.clientName(redisProperties.getClientName());
+        }
+        if (redisProperties.getSsl().isEnabled()) {
+            aBuilder.useSsl();
+        }
+
+        return aBuilder;
+    }
+
+    private static LettuceConnectionFactory connectionFactory(
+            final RedisProperties redisProperties,
+            final LettuceClientConfiguration clientConfiguration
+    ) {
+        final var aCluster = redisProperties.getCluster();
+
+        if (aCluster != null && aCluster.getNodes() != null && !aCluster.getNodes().isEmpty()) {
+            final var aClusterConfiguration = new RedisClusterConfiguration(aCluster.getNodes());
+            if (aCluster.getMaxRedirects() != null) {
+                aClusterConfiguration.setMaxRedirects(aCluster.getMaxRedirects());
+            }
+            aClusterConfiguration.setUsername(redisProperties.getUsername());
+            aClusterConfiguration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+            return new LettuceConnectionFactory(aClusterConfiguration, clientConfiguration);
+        }
+
+        final var aSentinel = redisProperties.getSentinel();
+
+        if (aSentinel != null && aSentinel.getMaster() != null && aSentinel.getNodes() != null) {
+            final var aSentinelConfiguration = new RedisSentinelConfiguration(aSentinel.getMaster(), new HashSet<>(aSentinel.getNodes()));
+            aSentinelConfiguration.setDatabase(redisProperties.getDatabase());
+            aSentinelConfiguration.setUsername(redisProperties.getUsername());
+            aSentinelConfiguration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+            aSentinelConfiguration.setSentinelPassword(RedisPassword.of(aSentinel.getPassword()));
+            return new LettuceConnectionFactory(aSentinelConfiguration, clientConfiguration);
+        }
+
+        final var aStandaloneConfiguration = new RedisStandaloneConfiguration(redisProperties.getHost(), redisProperties.getPort());
+        aStandaloneConfiguration.setDatabase(redisProperties.getDatabase());
+        aStandaloneConfiguration.setUsername(redisProperties.getUsername());
+        aStandaloneConfiguration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+        return new LettuceConnectionFactory(aStandaloneConfiguration, clientConfiguration);
+    }
+
+    private static ClientOptions clientOptions(final RedisProperties redisProperties) {
+        final var aCluster = redisProperties.getCluster();
+        final var aBuilder = aCluster != null && aCluster.getNodes() != null && !aCluster.getNodes().isEmpty()
+                // follows the slot moves and failovers of the cluster instead of waiting for a MOVED reply
+                ? ClusterClientOptions.builder().topologyRefreshOptions(ClusterTopologyRefreshOptions.builder()
+                        .enableAllAdaptiveRefreshTriggers()
+                        .build())
+                : ClientOptions.builder();
+
+        final var aSocketOptions = SocketOptions.builder();
+        if (redisProperties.getConnectTimeout() != null) {
+            aSocketOptions.connectTimeout(redisProperties.getConnectTimeout());
+        }
+
+        return aBuilder
+                .socketOptions(aSocketOptions.build())
+                .timeoutOptions(TimeoutOptions.enabled())
+                .build();
+    }
+
+    private static GenericObjectPoolConfig<?> poolConfig(final RedisProperties.Pool pool) {
+        final var aConfig = new GenericObjectPoolConfig<>();
+        aConfig.setMaxTotal(pool.getMaxActive());
+        aConfig.setMaxIdle(pool.getMaxIdle());
+        aConfig.setMinIdle(pool.getMinIdle());
+        if (pool.getMaxWait() != null) {
+            aConfig.setMaxWait(pool.getMaxWait());
+        }
+        if (pool.getTimeBetweenEvictionRuns() != null) {
+            aConfig.setTimeBetweenEvictionRuns(pool.getTimeBetweenEvictionRuns());
+        }
+        return aConfig;
+    }
+
+    private static boolean isPoolEnabled(final RedisProperties redisProperties) {
+        return Boolean.TRUE.equals(redisProperties.getLettuce().getPool().getEnabled());
+    }
 }
@@ -6,6 +6,8 @@ import com.kaua.template.domain.exceptions.InternalErrorException;
 import com.kaua.template.domain.exceptions.NotFoundException;
 import com.kaua.template.domain.exceptions.ValidationException;
 import com.kaua.template.domain.utils.InstantUtils;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyInProgressException;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyStoreUnavailableException;
 import com.kaua.template.infrastructure.exceptions.IdempotencyKeyUnsupportedMethodException;
 import com.kaua.template.infrastructure.utils.ApiError;
 import org.slf4j.Logger;
@@ -55,6 +57,20 @@ public class GlobalExceptionHandler {
                 .body(ApiError.from(ex.getMessage(), InstantUtils.now()));
     }
 
+    @ExceptionHandler(IdempotencyKeyInProgressException.class)
+    public ResponseEntity<ApiError> handleIdempotencyKeyInProgressException(final IdempotencyKeyInProgressException ex) {
+        log.debug("Handling idempotency key in progress exception: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(ApiError.from(ex.getMessage(), InstantUtils.now()));
+    }
+
+    @ExceptionHandler(IdempotencyKeyStoreUnavailableException.class)
+    public ResponseEntity<ApiError> handleIdempotencyKeyStoreUnavailableException(final IdempotencyKeyStoreUnavailableException ex) {
+        log.warn("Handling idempotency key store unavailable exception: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ApiError.from(ex.getMessage(), InstantUtils.now()));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiError> handleException(final Exception ex) {
         log.error("Handling unexpected exception: {}", ex.getMessage(), ex);
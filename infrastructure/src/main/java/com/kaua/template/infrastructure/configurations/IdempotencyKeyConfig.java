@@ -1,27 +1,404 @@
 package com.kaua.template.infrastructure.configurations;
 
+import com.kaua.template.infrastructure.configurations.properties.IdempotencyKeyProperties;
+import com.kaua.template.infrastructure.configurations.properties.IdempotencyKeyProperties.CircuitBreaker.FailureMode;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompletionListener;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompressor;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyMetrics;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyWaiters;
+import com.kaua.template.infrastructure.idempotency.gateways.AsyncIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.CircuitBreakerIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.ExecutorAsyncIdempotencyKeyGateway;
 import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
 import com.kaua.template.infrastructure.idempotency.gateways.InMemoryIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.JdbcIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.JdbcIdempotencyKeyPurger;
+import com.kaua.template.infrastructure.idempotency.gateways.JdbcIdempotencyKeySchema;
+import com.kaua.template.infrastructure.idempotency.gateways.MappedFileIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.RedisAsyncIdempotencyKeyGateway;
 import com.kaua.template.infrastructure.idempotency.gateways.RedisIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.RedisIdempotencyKeyShards;
+import com.kaua.template.infrastructure.idempotency.gateways.ShardedIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.TieredIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.WriteBehindIdempotencyKeyGateway;
 import com.kaua.template.infrastructure.utils.ObservationHelper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.web.client.RestClient;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
 
 @Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(IdempotencyKeyProperties.class)
 public class IdempotencyKeyConfig {
 
+    @Bean
+    public IdempotencyKeyCompressor idempotencyKeyCompressor(final IdempotencyKeyProperties properties) {
+        final var aCompression = properties.getCompression();
+        return new IdempotencyKeyCompressor(
+                aCompression.getAlgorithm(),
+                aCompression.getThreshold().toBytes(),
+                aCompression.getLevel()
+        );
+    }
+
+    @Bean
+    public IdempotencyKeyMetrics idempotencyKeyMetrics(
+            final MeterRegistry meterRegistry,
+            final IdempotencyKeyProperties properties
+    ) {
+        return new IdempotencyKeyMetrics(meterRegistry, properties.getStorage().getType());
+    }
+
+    @Bean
+    public IdempotencyKeyWaiters idempotencyKeyWaiters(
+            final IdempotencyKeyGateway idempotencyKeyGateway,
+            final IdempotencyKeyProperties properties
+    ) {
+        final var aWait = properties.getWait();
+        return new IdempotencyKeyWaiters(
+                idempotencyKeyGateway,
+                aWait.isEnabled(),
+                aWait.getMaxWait(),
+                aWait.getPollInterval()
+        );
+    }
+
+    /**
+     * Wraps the gateway of the configured storage, the storage bean is resolved here because a bean is never
+     * injected into its own factory method.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "idempotency-key.write-behind.enabled", havingValue = "true")
+    public WriteBehindIdempotencyKeyGateway writeBehindIdempotencyKeyGateway(
+            final IdempotencyKeyGateway idempotencyKeyGateway,
+            final IdempotencyKeyProperties properties,
+            final MeterRegistry meterRegistry
+    ) {
+        final var aWriteBehind = properties.getWriteBehind();
+        final var aGateway = new WriteBehindIdempotencyKeyGateway(
+                idempotencyKeyGateway,
+                aWriteBehind.getQueueCapacity(),
+                aWriteBehind.getBatchSize()
+        );
+
+        Gauge.builder("idempotency.write_behind.pending", aGateway, WriteBehindIdempotencyKeyGateway::pendingCount)
+                .description("Completed responses waiting to be stored")
+                .register(meterRegistry);
+        FunctionCounter.builder("idempotency.write_behind.synchronous_writes", aGateway, WriteBehindIdempotencyKeyGateway::getSynchronousWriteCount)
+                .description("Responses stored by the request thread because the write queue was full")
+                .register(meterRegistry);
+        FunctionCounter.builder("idempotency.write_behind.failed_writes", aGateway, WriteBehindIdempotencyKeyGateway::getFailedWriteCount)
+                .description("Responses that could not be stored, their keys stay in progress until the ttl")
+                .register(meterRegistry);
+
+        return aGateway;
+    }
+
+    /**
+     * Non-blocking access to the configured gateway, a plain Redis storage talks to Lettuce directly, the
+     * in-memory storage runs in the caller thread because it never waits and the others run on virtual threads.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "idempotency-key.async.enabled", havingValue = "true")
+    public AsyncIdempotencyKeyGateway asyncIdempotencyKeyGateway(
+            final IdempotencyKeyGateway idempotencyKeyGateway,
+            final ObjectProvider<RedisConnectionFactory> redisConnectionFactory,
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyCompressor compressor
+    ) {
+        if (idempotencyKeyGateway instanceof RedisIdempotencyKeyGateway
+                && redisConnectionFactory.getIfAvailable() instanceof LettuceConnectionFactory aConnectionFactory) {
+            return new RedisAsyncIdempotencyKeyGateway(aConnectionFactory, observationHelper, compressor);
+        }
+
+        if (idempotencyKeyGateway instanceof InMemoryIdempotencyKeyGateway) {
+            return ExecutorAsyncIdempotencyKeyGateway.direct(idempotencyKeyGateway);
+        }
+
+        return ExecutorAsyncIdempotencyKeyGateway.virtualThreads(idempotencyKeyGateway);
+    }
+
+    @Bean
+    @ConditionalOnExpression("${idempotency-key.wait.enabled:false} and {'redis', 'tiered'}.contains('${idempotency-key.storage.type:in-memory}'.toLowerCase())")
+    public RedisMessageListenerContainer idempotencyKeyCompletionListenerContainer(
+            final RedisConnectionFactory redisConnectionFactory,
+            final RedisIdempotencyKeyShards redisIdempotencyKeyShards,
+            final IdempotencyKeyWaiters idempotencyKeyWaiters
+    ) {
+        final var aListener = new IdempotencyKeyCompletionListener(idempotencyKeyWaiters);
+        final var aTopic = new ChannelTopic(RedisIdempotencyKeyGateway.COMPLETION_CHANNEL);
+
+        // with shards the completion is published on the node that owns the key, not on the main connection
+        redisIdempotencyKeyShards.subscribe(aListener, aTopic);
+
+        final var aContainer = new RedisMessageListenerContainer();
+        aContainer.setConnectionFactory(redisConnectionFactory);
+        aContainer.addMessageListener(aListener, aTopic);
+        return aContainer;
+    }
+
     @Bean
     @ConditionalOnProperty(name = "idempotency-key.storage.type", havingValue = "in-memory")
-    public IdempotencyKeyGateway inMemoryIdempotencyKeyGateway(final ObservationHelper observationHelper) {
-        return new InMemoryIdempotencyKeyGateway(observationHelper);
+    public IdempotencyKeyGateway inMemoryIdempotencyKeyGateway(
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyProperties properties,
+            final IdempotencyKeyCompressor compressor,
+            final MeterRegistry meterRegistry
+    ) {
+        final var aInMemory = properties.getStorage().getInMemory();
+        final var aGateway = new InMemoryIdempotencyKeyGateway(
+                observationHelper,
+                aInMemory.getMaxEntries(),
+                aInMemory.getMaxSize() != null ? aInMemory.getMaxSize().toBytes() : 0,
+                compressor
+        );
+
+        FunctionCounter.builder("idempotency.storage.evictions", aGateway, InMemoryIdempotencyKeyGateway::getEvictionCount)
+                .description("Idempotency keys evicted before their ttl because the in-memory store is full")
+                .tag("storage_type", "IN_MEMORY")
+                .register(meterRegistry);
+        FunctionCounter.builder("idempotency.storage.expirations", aGateway, InMemoryIdempotencyKeyGateway::getExpirationCount)
+                .description("Idempotency keys removed after their ttl elapsed")
+                .tag("storage_type", "IN_MEMORY")
+                .register(meterRegistry);
+        Gauge.builder("idempotency.storage.size", aGateway, InMemoryIdempotencyKeyGateway::size)
+                .description("Idempotency keys currently kept in memory")
+                .tag("storage_type", "IN_MEMORY")
+                .register(meterRegistry);
+
+        return aGateway;
+    }
+
+    @Bean
+    @ConditionalOnExpression("{'redis', 'tiered'}.contains('${idempotency-key.storage.type:in-memory}'.toLowerCase())")
+    public RedisIdempotencyKeyShards redisIdempotencyKeyShards(
+            final IdempotencyKeyProperties properties,
+            final RedisProperties redisProperties,
+            final LettuceClientConfiguration redisClientConfiguration
+    ) {
+        return new RedisIdempotencyKeyShards(properties.getStorage().getRedis().getShards(), redisProperties, redisClientConfiguration);
     }
 
     @Bean
     @ConditionalOnProperty(name = "idempotency-key.storage.type", havingValue = "redis")
-    public IdempotencyKeyGateway redisIdempotencyKeyGateway(final RedisTemplate<String, byte[]> redisTemplate, final ObservationHelper observationHelper) {
-        return new RedisIdempotencyKeyGateway(redisTemplate, observationHelper);
+    public IdempotencyKeyGateway redisIdempotencyKeyGateway(
+            final @Qualifier("byteArrayRedisTemplate") RedisTemplate<String, byte[]> redisTemplate,
+            final @Qualifier("replicaByteArrayRedisTemplate") ObjectProvider<RedisTemplate<String, byte[]>> replicaRedisTemplate,
+            final RedisIdempotencyKeyShards redisIdempotencyKeyShards,
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyProperties properties,
+            final IdempotencyKeyCompressor compressor,
+            final MeterRegistry meterRegistry
+    ) {
+        return withCircuitBreaker(
+                redisGateway(redisTemplate, replicaRedisTemplate, redisIdempotencyKeyShards, observationHelper, properties, compressor),
+                observationHelper,
+                properties,
+                compressor,
+                meterRegistry
+        );
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "idempotency-key.storage.type", havingValue = "tiered")
+    public IdempotencyKeyGateway tieredIdempotencyKeyGateway(
+            final @Qualifier("byteArrayRedisTemplate") RedisTemplate<String, byte[]> redisTemplate,
+            final @Qualifier("replicaByteArrayRedisTemplate") ObjectProvider<RedisTemplate<String, byte[]>> replicaRedisTemplate,
+            final RedisIdempotencyKeyShards redisIdempotencyKeyShards,
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyProperties properties,
+            final IdempotencyKeyCompressor compressor,
+            final MeterRegistry meterRegistry
+    ) {
+        final var aTiered = properties.getStorage().getTiered();
+        // the near cache stays in front of the breaker, so it still replays while Redis is unavailable
+        return new TieredIdempotencyKeyGateway(
+                withCircuitBreaker(
+                        redisGateway(redisTemplate, replicaRedisTemplate, redisIdempotencyKeyShards, observationHelper, properties, compressor),
+                        observationHelper,
+                        properties,
+                        compressor,
+                        meterRegistry
+                ),
+                observationHelper,
+                aTiered.getMaxEntries(),
+                aTiered.getMaxTtl()
+        );
+    }
+
+    @Bean(initMethod = "start")
+    @ConditionalOnProperty(name = "idempotency-key.storage.type", havingValue = "mapped-file")
+    public MappedFileIdempotencyKeyGateway mappedFileIdempotencyKeyGateway(
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyProperties properties,
+            final IdempotencyKeyCompressor compressor,
+            final MeterRegistry meterRegistry
+    ) {
+        final var aMappedFile = properties.getStorage().getMappedFile();
+        final var aGateway = new MappedFileIdempotencyKeyGateway(
+                aMappedFile.getDirectory(),
+                aMappedFile.getSegmentSize().toBytes(),
+                aMappedFile.getCompactionInterval(),
+                observationHelper,
+                compressor
+        );
+
+        Gauge.builder("idempotency.storage.size", aGateway, MappedFileIdempotencyKeyGateway::size)
+                .description("Idempotency keys currently indexed")
+                .tag("storage_type", "MAPPED_FILE")
+                .register(meterRegistry);
+        Gauge.builder("idempotency.storage.segments", aGateway, MappedFileIdempotencyKeyGateway::segmentCount)
+                .description("Segment files currently mapped by the idempotency key log")
+                .tag("storage_type", "MAPPED_FILE")
+                .register(meterRegistry);
+
+        return aGateway;
+    }
+
+    /**
+     * The jdbc storage is opt-in, spring-jdbc and the database driver are added to the build only by the
+     * applications that use it, so its beans are not loaded when they are missing.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(JdbcTemplate.class)
+    @ConditionalOnProperty(name = "idempotency-key.storage.type", havingValue = "jdbc")
+    static class JdbcStorageConfig {
+
+        @Bean(initMethod = "migrate")
+        public JdbcIdempotencyKeySchema jdbcIdempotencyKeySchema(final DataSource dataSource) {
+            return new JdbcIdempotencyKeySchema(dataSource);
+        }
+
+        @Bean
+        @DependsOn("jdbcIdempotencyKeySchema")
+        public IdempotencyKeyGateway jdbcIdempotencyKeyGateway(
+                final JdbcTemplate jdbcTemplate,
+                final PlatformTransactionManager transactionManager,
+                final ObservationHelper observationHelper,
+                final IdempotencyKeyProperties properties,
+                final IdempotencyKeyCompressor compressor,
+                final MeterRegistry meterRegistry
+        ) {
+            return withCircuitBreaker(
+                    new JdbcIdempotencyKeyGateway(
+                            jdbcTemplate,
+                            new TransactionTemplate(transactionManager),
+                            observationHelper,
+                            compressor
+                    ),
+                    observationHelper,
+                    properties,
+                    compressor,
+                    meterRegistry
+            );
+        }
+
+        @Bean(initMethod = "start")
+        @DependsOn("jdbcIdempotencyKeySchema")
+        public JdbcIdempotencyKeyPurger jdbcIdempotencyKeyPurger(
+                final JdbcTemplate jdbcTemplate,
+                final PlatformTransactionManager transactionManager,
+                final IdempotencyKeyProperties properties
+        ) {
+            final var aJdbc = properties.getStorage().getJdbc();
+            return new JdbcIdempotencyKeyPurger(
+                    jdbcTemplate,
+                    new TransactionTemplate(transactionManager),
+                    aJdbc.getPurgeBatchSize(),
+                    aJdbc.getPurgeInterval()
+            );
+        }
+    }
+
+    /**
+     * Puts the circuit breaker in front of a remote store when it is enabled, the local stores never wait on
+     * the network so they are not wrapped.
+     */
+    private static IdempotencyKeyGateway withCircuitBreaker(
+            final IdempotencyKeyGateway idempotencyKeyGateway,
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyProperties properties,
+            final IdempotencyKeyCompressor compressor,
+            final MeterRegistry meterRegistry
+    ) {
+        final var aCircuitBreaker = properties.getCircuitBreaker();
+
+        if (!aCircuitBreaker.isEnabled()) {
+            return idempotencyKeyGateway;
+        }
+
+        final var aFallback = aCircuitBreaker.getFailureMode() == FailureMode.FALLBACK
+                ? new InMemoryIdempotencyKeyGateway(observationHelper, aCircuitBreaker.getFallbackMaxEntries(), 0, compressor)
+                : null;
+
+        final var aGateway = new CircuitBreakerIdempotencyKeyGateway(
+                idempotencyKeyGateway,
+                aFallback,
+                aCircuitBreaker.getFailureThreshold(),
+                aCircuitBreaker.getOpenDuration(),
+                aCircuitBreaker.getReadTimeout(),
+                aCircuitBreaker.getWriteTimeout(),
+                aCircuitBreaker.getFallbackMaxEntries()
+        );
+
+        Gauge.builder("idempotency.circuit_breaker.state", aGateway, gateway -> gateway.getState().ordinal())
+                .description("State of the idempotency key store circuit: 0 closed, 1 open, 2 half open")
+                .register(meterRegistry);
+        FunctionCounter.builder("idempotency.circuit_breaker.rejected_calls", aGateway, CircuitBreakerIdempotencyKeyGateway::getRejectedCount)
+                .description("Store calls not made because the circuit was open")
+                .register(meterRegistry);
+        FunctionCounter.builder("idempotency.circuit_breaker.fallback_calls", aGateway, CircuitBreakerIdempotencyKeyGateway::getFallbackCount)
+                .description("Store operations answered by the local fallback store")
+                .register(meterRegistry);
+
+        return aGateway;
+    }
+
+    private static IdempotencyKeyGateway redisGateway(
+            final RedisTemplate<String, byte[]> redisTemplate,
+            final ObjectProvider<RedisTemplate<String, byte[]>> replicaRedisTemplate,
+            final RedisIdempotencyKeyShards redisIdempotencyKeyShards,
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyProperties properties,
+            final IdempotencyKeyCompressor compressor
+    ) {
+        if (redisIdempotencyKeyShards.isEmpty()) {
+            // only the find may go to a replica (cache.redis.read-from), the claims and completions stay on the master
+            return new RedisIdempotencyKeyGateway(
+                    redisTemplate,
+                    replicaRedisTemplate.getIfAvailable(() -> redisTemplate),
+                    observationHelper,
+                    compressor
+            );
+        }
+
+        final var aShards = new LinkedHashMap<String, IdempotencyKeyGateway>();
+        redisIdempotencyKeyShards.getTemplates().forEach((node, template) ->
+                aShards.put(node, new RedisIdempotencyKeyGateway(template, observationHelper, compressor)));
+
+        return new ShardedIdempotencyKeyGateway(aShards, properties.getStorage().getRedis().getVirtualNodes());
     }
 }
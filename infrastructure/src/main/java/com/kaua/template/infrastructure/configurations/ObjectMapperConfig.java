@@ -8,6 +8,7 @@ import org.springframework.context.annotation.Bean;
 @JsonComponent
 public class ObjectMapperConfig {
 
+    // the same instance used by Json, so the MVC converters and the static helpers share the warmed caches
     @Bean
     public ObjectMapper mapper() {
         return Json.mapper();
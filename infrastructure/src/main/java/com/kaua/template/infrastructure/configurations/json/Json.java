@@ -1,74 +1,302 @@
 package com.kaua.template.infrastructure.configurations.json;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedOutputStream;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.kaua.template.infrastructure.exceptions.JsonProcessingFailure;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
-import java.util.concurrent.Callable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * The application mapper, shared by the static helpers and the Spring MVC converters. The mapper is never copied,
+ * so the serializers and deserializers it builds (and the Blackbird accessors behind them) are resolved once for
+ * the whole application. The readers and writers of each type are kept too, they are immutable and skip the root
+ * type lookup on every call. Read and write failures are thrown as {@link JsonProcessingFailure}, with the
+ * position where the parser stopped.
+ * <p>
+ * Payloads that never leave the infrastructure can use the Smile profile instead, a binary encoding of the same
+ * data model with the same modules and settings. Repeated property names and short strings are written once
+ * and referenced afterwards, so documents are smaller and faster to parse than their text form.
+ */
 public enum Json {
     INSTANCE;
 
+    /**
+     * The shared mapper, it must not be reconfigured after startup, use {@link #reader} and {@link #writer} for
+     * per call settings.
+     */
     public static ObjectMapper mapper() {
-        return INSTANCE.mapper.copy();
+        return INSTANCE.mapper;
+    }
+
+    public static ObjectReader reader(final Class<?> type) {
+        final var aReader = INSTANCE.readers.get(type);
+        return aReader != null ? aReader : INSTANCE.readers.computeIfAbsent(type, Json::newReader);
+    }
+
+    public static ObjectReader reader(final TypeReference<?> type) {
+        final var aReader = INSTANCE.readers.get(type.getType());
+        return aReader != null ? aReader : INSTANCE.readers.computeIfAbsent(type.getType(), Json::newReader);
+    }
+
+    public static ObjectWriter writer(final Class<?> type) {
+        final var aWriter = INSTANCE.writers.get(type);
+        return aWriter != null ? aWriter : INSTANCE.writers.computeIfAbsent(type, Json::newWriter);
     }
 
     public static byte[] writeValueAsBytes(final Object obj) {
-        return invoke(() -> INSTANCE.mapper.writeValueAsBytes(obj));
+        try {
+            return writerOf(obj).writeValueAsBytes(obj);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
     }
 
     public static String writeValueAsString(final Object obj) {
-        return invoke(() -> INSTANCE.mapper.writeValueAsString(obj));
+        try {
+            return writerOf(obj).writeValueAsString(obj);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
     }
 
     public static <T> T readValue(final byte[] json, final Class<T> clazz) {
-        return invoke(() -> INSTANCE.mapper.readValue(json, clazz));
+        try {
+            return reader(clazz).readValue(json);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
     }
 
     public static <T> T readValue(final String json, final Class<T> clazz) {
-        return invoke(() -> INSTANCE.mapper.readValue(json, clazz));
+        try {
+            return reader(clazz).readValue(json);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
     }
 
     public static <T> T readValue(final String json, final TypeReference<T> clazz) {
-        return invoke(() -> INSTANCE.mapper.readValue(json, clazz));
+        try {
+            return reader(clazz).readValue(json);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
+    }
+
+    /**
+     * Writes the value straight into the stream, the stream is flushed but not closed.
+     */
+    public static void writeTo(final Object obj, final OutputStream out) {
+        try (final var aGenerator = generator(out)) {
+            writerOf(obj).writeValue(aGenerator, obj);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
     }
 
+    /**
+     * Writes the value straight into the channel, the channel is not closed.
+     */
+    public static void writeTo(final Object obj, final WritableByteChannel channel) {
+        writeTo(obj, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Writes the value from the buffer position on, the position is left after the last written byte. Fails when
+     * the buffer has not enough room for the whole value.
+     */
+    public static void writeTo(final Object obj, final ByteBuffer buffer) {
+        writeTo(obj, new ByteBufferBackedOutputStream(buffer));
+    }
+
+    /**
+     * Reads a value from the stream without closing it.
+     */
+    public static <T> T readFrom(final InputStream in, final Class<T> clazz) {
+        try (final var aParser = parser(in)) {
+            return reader(clazz).readValue(aParser);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
+    }
+
+    /**
+     * Reads a value from the remaining bytes of the buffer, the buffer is fully consumed.
+     */
+    public static <T> T readFrom(final ByteBuffer buffer, final Class<T> clazz) {
+        if (!buffer.hasArray()) {
+            return readFrom(new ByteBufferBackedInputStream(buffer), clazz);
+        }
+
+        try {
+            // a heap buffer is parsed in place, without copying it to a stream buffer
+            final T aValue = reader(clazz).readValue(
+                    buffer.array(),
+                    buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining()
+            );
+            buffer.position(buffer.limit());
+            return aValue;
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
+    }
+
+    /**
+     * A generator over the stream for hand written documents, closing it returns its buffers to the pool and
+     * leaves the stream open.
+     */
+    public static JsonGenerator generator(final OutputStream out) {
+        try {
+            return INSTANCE.mapper.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
+    }
+
+    /**
+     * A parser over the stream, closing it returns its buffers to the pool and leaves the stream open.
+     */
+    public static JsonParser parser(final InputStream in) {
+        try {
+            return INSTANCE.mapper.createParser(in).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
+    }
+
+    /**
+     * The Smile mapper, shared like {@link #mapper()} and configured the same way.
+     */
+    public static ObjectMapper smileMapper() {
+        return INSTANCE.smileMapper;
+    }
+
+    public static ObjectReader smileReader(final Class<?> type) {
+        final var aReader = INSTANCE.smileReaders.get(type);
+        return aReader != null ? aReader : INSTANCE.smileReaders.computeIfAbsent(type, Json::newSmileReader);
+    }
+
+    public static ObjectWriter smileWriter(final Class<?> type) {
+        final var aWriter = INSTANCE.smileWriters.get(type);
+        return aWriter != null ? aWriter : INSTANCE.smileWriters.computeIfAbsent(type, Json::newSmileWriter);
+    }
+
+    public static byte[] writeValueAsSmile(final Object obj) {
+        try {
+            return (obj != null ? smileWriter(obj.getClass()) : INSTANCE.untypedSmileWriter).writeValueAsBytes(obj);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
+    }
+
+    public static <T> T readSmile(final byte[] smile, final Class<T> clazz) {
+        try {
+            return smileReader(clazz).readValue(smile);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
+        }
+    }
+
+    /**
+     * Reads a document that may have been stored as an escaped json string, e.g. {@code "{\"id\":1}"}. The
+     * tokens are read straight into the target type, the string case only parses the inner text again, no
+     * {@code JsonNode} tree is built on either path.
+     */
     public static <T> T readTree(final String json, final Class<T> clazz) {
-        return invoke(() -> {
-            var val = INSTANCE.mapper.readTree(json);
-            if (val instanceof TextNode) {
-                return readTree(val.asText(), clazz);
-            } else {
-                return INSTANCE.mapper.convertValue(val, clazz);
+        try (final var aParser = INSTANCE.mapper.createParser(json)) {
+            if (aParser.nextToken() == JsonToken.VALUE_STRING) {
+                return readTree(aParser.getText(), clazz);
             }
-        });
-    }
-
-    private final ObjectMapper mapper = new Jackson2ObjectMapperBuilder()
-            .dateFormat(new StdDateFormat())
-            .featuresToDisable(
-                    DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
-                    DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES,
-                    DeserializationFeature.FAIL_ON_NULL_CREATOR_PROPERTIES,
-                    SerializationFeature.WRITE_DATES_AS_TIMESTAMPS
-            )
-            .modules(new JavaTimeModule(), new Jdk8Module(), new BlackbirdModule())
-            .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
-            .build();
-
-    private static <T> T invoke(final Callable<T> callable) {
-        try {
-            return callable.call();
-        } catch (final Exception e) {
-            throw new RuntimeException(e);
+            return reader(clazz).readValue(aParser);
+        } catch (final IOException e) {
+            throw new JsonProcessingFailure(e);
         }
     }
+
+    // the default pool keeps the buffers per thread, useless with a new virtual thread per request
+    private final ObjectMapper mapper = newMapper(JsonFactory.builder()
+            .recyclerPool(JsonRecyclerPools.newConcurrentDequePool())
+            .build());
+
+    private final ObjectMapper smileMapper = newMapper(SmileFactory.builder()
+            .recyclerPool(JsonRecyclerPools.newConcurrentDequePool())
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+            .build());
+
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    private final Map<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    private final ObjectWriter untypedWriter = mapper.writer();
+
+    private final Map<Type, ObjectReader> smileReaders = new ConcurrentHashMap<>();
+
+    private final Map<Type, ObjectWriter> smileWriters = new ConcurrentHashMap<>();
+
+    private final ObjectWriter untypedSmileWriter = smileMapper.writer();
+
+    private static ObjectMapper newMapper(final JsonFactory factory) {
+        return new Jackson2ObjectMapperBuilder()
+                .factory(factory)
+                .dateFormat(new StdDateFormat())
+                .featuresToDisable(
+                        DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
+                        DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES,
+                        DeserializationFeature.FAIL_ON_NULL_CREATOR_PROPERTIES,
+                        SerializationFeature.WRITE_DATES_AS_TIMESTAMPS
+                )
+                .modules(new JavaTimeModule(), new Jdk8Module(), new BlackbirdModule())
+                .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+                .build();
+    }
+
+    // the value class is the root type the mapper would resolve on its own, null goes through the untyped writer
+    private static ObjectWriter writerOf(final Object obj) {
+        return obj != null ? writer(obj.getClass()) : INSTANCE.untypedWriter;
+    }
+
+    // static and non capturing, so a cache hit allocates nothing
+    private static ObjectReader newReader(final Type type) {
+        return INSTANCE.mapper.readerFor(INSTANCE.mapper.constructType(type));
+    }
+
+    private static ObjectWriter newWriter(final Type type) {
+        return INSTANCE.mapper.writerFor(INSTANCE.mapper.constructType(type));
+    }
+
+    private static ObjectReader newSmileReader(final Type type) {
+        return INSTANCE.smileMapper.readerFor(INSTANCE.smileMapper.constructType(type));
+    }
+
+    private static ObjectWriter newSmileWriter(final Type type) {
+        return INSTANCE.smileMapper.writerFor(INSTANCE.smileMapper.constructType(type));
+    }
 }
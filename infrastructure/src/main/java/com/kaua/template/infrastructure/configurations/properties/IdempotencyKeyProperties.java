@@ -0,0 +1,566 @@
+package com.kaua.template.infrastructure.configurations.properties;
+
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompressor;
+import com.kaua.template.infrastructure.idempotency.gateways.InMemoryIdempotencyKeyGateway;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+@ConfigurationProperties(prefix = "idempotency-key")
+public class IdempotencyKeyProperties {
+
+    private final Storage storage = new Storage();
+
+    private final Capture capture = new Capture();
+
+    private final Compression compression = new Compression();
+
+    private final Wait wait = new Wait();
+
+    private final Fingerprint fingerprint = new Fingerprint();
+
+    private final WriteBehind writeBehind = new WriteBehind();
+
+    private final Async async = new Async();
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public Capture getCapture() {
+        return capture;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public Wait getWait() {
+        return wait;
+    }
+
+    public Fingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    public WriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    public Async getAsync() {
+        return async;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public static class Storage {
+
+        private String type;
+
+        private final InMemory inMemory = new InMemory();
+
+        private final Redis redis = new Redis();
+
+        private final Tiered tiered = new Tiered();
+
+        private final Jdbc jdbc = new Jdbc();
+
+        private final MappedFile mappedFile = new MappedFile();
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(final String type) {
+            this.type = type;
+        }
+
+        public InMemory getInMemory() {
+            return inMemory;
+        }
+
+        public Redis getRedis() {
+            return redis;
+        }
+
+        public Tiered getTiered() {
+            return tiered;
+        }
+
+        public Jdbc getJdbc() {
+            return jdbc;
+        }
+
+        public MappedFile getMappedFile() {
+            return mappedFile;
+        }
+    }
+
+    public static class InMemory {
+
+        /**
+         * Maximum number of idempotency keys kept in memory, the least valuable ones are evicted first.
+         */
+        private long maxEntries = InMemoryIdempotencyKeyGateway.DEFAULT_MAX_ENTRIES;
+
+        /**
+         * Optional byte budget for the stored keys and responses, when set it replaces {@code maxEntries}.
+         */
+        private DataSize maxSize;
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(final long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(final DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    public static class Redis {
+
+        /**
+         * Standalone Redis nodes ({@code host:port}) the keys are spread over with a consistent hash ring, when
+         * empty the keys go to the node or cluster of {@code spring.data.redis}.
+         */
+        private List<String> shards = new ArrayList<>();
+
+        /**
+         * Positions each shard takes on the hash ring, more positions spread the keys more evenly.
+         */
+        private int virtualNodes = 160;
+
+        public List<String> getShards() {
+            return shards;
+        }
+
+        public void setShards(final List<String> shards) {
+            this.shards = shards;
+        }
+
+        public int getVirtualNodes() {
+            return virtualNodes;
+        }
+
+        public void setVirtualNodes(final int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+    }
+
+    public static class Tiered {
+
+        /**
+         * Maximum number of completed responses kept in the local near cache.
+         */
+        private long maxEntries = 1_000;
+
+        /**
+         * Upper bound for how long a response stays in the near cache, the annotation ttl is used when lower.
+         */
+        private Duration maxTtl = Duration.ofMinutes(5);
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(final long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public Duration getMaxTtl() {
+            return maxTtl;
+        }
+
+        public void setMaxTtl(final Duration maxTtl) {
+            this.maxTtl = maxTtl;
+        }
+    }
+
+    public static class Jdbc {
+
+        /**
+         * Interval between the runs that delete the expired keys.
+         */
+        private Duration purgeInterval = Duration.ofMinutes(1);
+
+        /**
+         * Maximum number of expired keys deleted in each transaction.
+         */
+        private int purgeBatchSize = 1000;
+
+        public Duration getPurgeInterval() {
+            return purgeInterval;
+        }
+
+        public void setPurgeInterval(final Duration purgeInterval) {
+            this.purgeInterval = purgeInterval;
+        }
+
+        public int getPurgeBatchSize() {
+            return purgeBatchSize;
+        }
+
+        public void setPurgeBatchSize(final int purgeBatchSize) {
+            this.purgeBatchSize = purgeBatchSize;
+        }
+    }
+
+    public static class MappedFile {
+
+        /**
+         * Directory of the segment files, it must be kept between restarts for the keys to be recovered.
+         */
+        private Path directory = Path.of("data", "idempotency-keys");
+
+        /**
+         * Size of each segment file mapped in memory, a segment is deleted when all of its keys have expired.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Interval between the runs that delete the expired segments.
+         */
+        private Duration compactionInterval = Duration.ofMinutes(1);
+
+        public Path getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(final Path directory) {
+            this.directory = directory;
+        }
+
+        public DataSize getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(final DataSize segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public Duration getCompactionInterval() {
+            return compactionInterval;
+        }
+
+        public void setCompactionInterval(final Duration compactionInterval) {
+            this.compactionInterval = compactionInterval;
+        }
+    }
+
+    public static class Capture {
+
+        /**
+         * Largest response body kept for replay, bigger responses are still sent to the client but the key is
+         * marked as not replayable instead of buffering the whole body.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(1);
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(final DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    public static class Compression {
+
+        /**
+         * Algorithm used to compress the stored response bodies, {@code NONE} stores them as written.
+         */
+        private IdempotencyKeyCompressor.Algorithm algorithm = IdempotencyKeyCompressor.Algorithm.GZIP;
+
+        /**
+         * Bodies smaller than this are stored uncompressed.
+         */
+        private DataSize threshold = DataSize.ofKilobytes(1);
+
+        /**
+         * Compression level from 1 (fastest) to 9 (smallest).
+         */
+        private int level = Deflater.BEST_SPEED;
+
+        public IdempotencyKeyCompressor.Algorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        public void setAlgorithm(final IdempotencyKeyCompressor.Algorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        public DataSize getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(final DataSize threshold) {
+            this.threshold = threshold;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(final int level) {
+            this.level = level;
+        }
+    }
+
+    public static class Wait {
+
+        /**
+         * When enabled, a request whose key is still in progress waits for the result instead of receiving 409.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum time a duplicate request waits before receiving 409.
+         */
+        private Duration maxWait = Duration.ofSeconds(5);
+
+        /**
+         * Interval to re-check the storage for keys owned by other instances, with redis the waiters are woken by
+         * a pub/sub notification and this is only a fallback for a lost message.
+         */
+        private Duration pollInterval = Duration.ofSeconds(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(final Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(final Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+    }
+
+    public static class Fingerprint {
+
+        /**
+         * When enabled, a key reused with a different method, path or body is rejected with 422 instead of replayed.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Bytes of the body that are hashed, a longer body is told apart only by its content length.
+         */
+        private DataSize maxBodySize = DataSize.ofMegabytes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public DataSize getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public void setMaxBodySize(final DataSize maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+    }
+
+    public static class WriteBehind {
+
+        /**
+         * Stores the final response in background after it is sent, instead of in the request thread.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of responses waiting to be stored, when full the request thread stores its own response.
+         */
+        private int queueCapacity = 10_000;
+
+        /**
+         * Maximum number of responses stored in a single round trip.
+         */
+        private int batchSize = 128;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(final int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    public static class Async {
+
+        /**
+         * Claims and stores the keys without blocking the request thread, the request is suspended while the
+         * claim is pending and dispatched again when it completes.
+         */
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class CircuitBreaker {
+
+        /**
+         * Bounds the calls to a remote store (redis, tiered or jdbc) with timeouts and stops calling it after
+         * consecutive failures.
+         */
+        private boolean enabled = false;
+
+        /**
+         * What a request gets while the store is unavailable.
+         */
+        private FailureMode failureMode = FailureMode.FALLBACK;
+
+        /**
+         * Consecutive failed or timed out calls that open the circuit.
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * How long the store is not called once the circuit opens, then a single call checks it again.
+         */
+        private Duration openDuration = Duration.ofSeconds(10);
+
+        /**
+         * Maximum wait of a claim or find, zero waits as long as the store client does.
+         */
+        private Duration readTimeout = Duration.ofMillis(200);
+
+        /**
+         * Maximum wait of the writes of the final state, zero waits as long as the store client does.
+         */
+        private Duration writeTimeout = Duration.ofMillis(500);
+
+        /**
+         * Maximum number of keys kept by the local store of the {@code FALLBACK} mode.
+         */
+        private long fallbackMaxEntries = 10_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public FailureMode getFailureMode() {
+            return failureMode;
+        }
+
+        public void setFailureMode(final FailureMode failureMode) {
+            this.failureMode = failureMode;
+        }
+
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public void setFailureThreshold(final int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
+
+        public Duration getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(final Duration openDuration) {
+            this.openDuration = openDuration;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(final Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public Duration getWriteTimeout() {
+            return writeTimeout;
+        }
+
+        public void setWriteTimeout(final Duration writeTimeout) {
+            this.writeTimeout = writeTimeout;
+        }
+
+        public long getFallbackMaxEntries() {
+            return fallbackMaxEntries;
+        }
+
+        public void setFallbackMaxEntries(final long fallbackMaxEntries) {
+            this.fallbackMaxEntries = fallbackMaxEntries;
+        }
+
+        public enum FailureMode {
+            /**
+             * The request is processed without deduplication and flagged with {@code x-idempotency-bypassed}.
+             */
+            FAIL_OPEN,
+            /**
+             * The request is rejected with {@code 503 Service Unavailable}.
+             */
+            FAIL_CLOSED,
+            /**
+             * The keys are kept by a local in-memory store until the store is back, deduplicated per instance.
+             */
+            FALLBACK
+        }
+    }
+}
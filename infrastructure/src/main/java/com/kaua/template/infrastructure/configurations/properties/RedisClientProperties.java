@@ -0,0 +1,40 @@
+package com.kaua.template.infrastructure.configurations.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Lettuce settings that {@code spring.data.redis} does not cover, the connection itself (host, timeouts, ssl,
+ * pool) still comes from {@code spring.data.redis}.
+ */
+@ConfigurationProperties(prefix = "cache.redis")
+public class RedisClientProperties {
+
+    /**
+     * Nodes the find of the idempotency keys is sent to, like {@code replicaPreferred}, applied to cluster and
+     * sentinel setups through a dedicated connection. Every other command, including the read-only ones of the
+     * application, keeps going to the master. When empty the find also goes to the master.
+     */
+    private String readFrom;
+
+    /**
+     * Number of commands buffered before a pipeline is flushed to the socket, when not positive the pipeline is
+     * flushed once when it is closed.
+     */
+    private int pipelineFlushSize = 0;
+
+    public String getReadFrom() {
+        return readFrom;
+    }
+
+    public void setReadFrom(final String readFrom) {
+        this.readFrom = readFrom;
+    }
+
+    public int getPipelineFlushSize() {
+        return pipelineFlushSize;
+    }
+
+    public void setPipelineFlushSize(final int pipelineFlushSize) {
+        this.pipelineFlushSize = pipelineFlushSize;
+    }
+}
@@ -0,0 +1,10 @@
+package com.kaua.template.infrastructure.exceptions;
+
+import com.kaua.template.domain.exceptions.NoStackTraceException;
+
+public class IdempotencyKeyInProgressException extends NoStackTraceException {
+
+    public IdempotencyKeyInProgressException() {
+        super("A request with this idempotency key is already being processed");
+    }
+}
@@ -0,0 +1,12 @@
+package com.kaua.template.infrastructure.exceptions;
+
+import com.kaua.template.domain.exceptions.DomainException;
+
+import java.util.Collections;
+
+public class IdempotencyKeyMismatchException extends DomainException {
+
+    public IdempotencyKeyMismatchException() {
+        super("The idempotency key was already used with a different request", Collections.emptyList());
+    }
+}
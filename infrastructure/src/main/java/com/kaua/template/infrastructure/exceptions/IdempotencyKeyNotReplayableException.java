@@ -0,0 +1,12 @@
+package com.kaua.template.infrastructure.exceptions;
+
+import com.kaua.template.domain.exceptions.DomainException;
+
+import java.util.Collections;
+
+public class IdempotencyKeyNotReplayableException extends DomainException {
+
+    public IdempotencyKeyNotReplayableException() {
+        super("The request with this idempotency key was already processed but its response cannot be replayed", Collections.emptyList());
+    }
+}
@@ -0,0 +1,10 @@
+package com.kaua.template.infrastructure.exceptions;
+
+import com.kaua.template.domain.exceptions.NoStackTraceException;
+
+public class IdempotencyKeyStoreUnavailableException extends NoStackTraceException {
+
+    public IdempotencyKeyStoreUnavailableException(final Throwable cause) {
+        super("The idempotency key store is unavailable, try again later", cause);
+    }
+}
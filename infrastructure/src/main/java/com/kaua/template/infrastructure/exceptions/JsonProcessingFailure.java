@@ -0,0 +1,46 @@
+package com.kaua.template.infrastructure.exceptions;
+
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.kaua.template.domain.exceptions.NoStackTraceException;
+
+import java.io.IOException;
+
+/**
+ * A json document that could not be read or written, the cause keeps the original Jackson exception and its
+ * stack trace. The location is where the parser stopped, {@code null} when the failure is not tied to a position
+ * (e.g. a serialization error or an I/O error of the stream).
+ */
+public class JsonProcessingFailure extends NoStackTraceException {
+
+    private final JsonLocation location;
+
+    public JsonProcessingFailure(final IOException cause) {
+        super(messageOf(cause), cause);
+        this.location = locationOf(cause);
+    }
+
+    public JsonLocation getLocation() {
+        return location;
+    }
+
+    private static String messageOf(final IOException cause) {
+        if (!(cause instanceof JacksonException aJacksonException)) {
+            return cause.getMessage();
+        }
+
+        final var aLocation = locationOf(cause);
+        return aLocation != null
+                ? "%s [line:%d] [column:%d]".formatted(aJacksonException.getOriginalMessage(), aLocation.getLineNr(), aLocation.getColumnNr())
+                : aJacksonException.getOriginalMessage();
+    }
+
+    private static JsonLocation locationOf(final IOException cause) {
+        // writes report JsonLocation.NA, which has no line
+        return cause instanceof JacksonException aJacksonException
+                && aJacksonException.getLocation() != null
+                && aJacksonException.getLocation().getLineNr() > 0
+                ? aJacksonException.getLocation()
+                : null;
+    }
+}
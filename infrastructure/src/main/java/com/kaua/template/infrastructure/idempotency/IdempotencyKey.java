@@ -1,5 +1,7 @@
 package com.kaua.template.infrastructure.idempotency;
 
+import org.springframework.http.HttpStatus;
+
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -12,8 +14,42 @@ public @interface IdempotencyKey {
 
     String IDEMPOTENCY_KEY_HEADER = "x-idempotency-key";
     String IDEMPOTENCY_RESPONSE_HEADER = "x-idempotency-response";
+    String IDEMPOTENCY_BYPASSED_HEADER = "x-idempotency-bypassed";
 
     long ttl() default 1;
 
     TimeUnit timeUnit() default TimeUnit.HOURS;
+
+    /**
+     * Largest response body stored for replay, in bytes, a bigger response marks the key as not replayable.
+     * A negative value uses {@code idempotency-key.capture.max-size}.
+     */
+    long maxBodySize() default -1;
+
+    /**
+     * Status series of the responses that are stored, the key of any other response is released so a retry
+     * processes the request again. Server errors are usually transient, so they are not stored by default.
+     */
+    HttpStatus.Series[] storedStatus() default {
+            HttpStatus.Series.SUCCESSFUL,
+            HttpStatus.Series.REDIRECTION,
+            HttpStatus.Series.CLIENT_ERROR
+    };
+
+    Scope scope() default Scope.GLOBAL;
+
+    enum Scope {
+        /**
+         * The same key refers to the same request for every client.
+         */
+        GLOBAL,
+        /**
+         * The key is combined with the authenticated user, a client never replays the response of another one.
+         */
+        PRINCIPAL,
+        /**
+         * The key is combined with the method and path of the request.
+         */
+        PATH
+    }
 }
@@ -0,0 +1,115 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded copy of a response body kept in heap chunks that grow with the body, so a small response does not
+ * hold a large buffer and a large one is never copied to grow a single array. Once more than {@code maxSize}
+ * bytes are written the captured chunks are dropped and the buffer is marked as overflowed.
+ */
+public class IdempotencyKeyCaptureBuffer {
+
+    private static final int MIN_CHUNK_SIZE = 1024;
+    private static final int MAX_CHUNK_SIZE = 16 * 1024;
+
+    private final long maxSize;
+    private final List<byte[]> chunks = new ArrayList<>();
+    private long size;
+    // bytes written to the last chunk
+    private int position;
+    private boolean overflowed;
+
+    public IdempotencyKeyCaptureBuffer(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public void write(final byte[] bytes, final int offset, final int length) {
+        if (this.overflowed) {
+            return;
+        }
+
+        if (this.size + length > this.maxSize) {
+            this.overflowed = true;
+            release();
+            return;
+        }
+
+        var aOffset = offset;
+        var aRemaining = length;
+        while (aRemaining > 0) {
+            final var aChunk = currentChunk();
+            final var aLength = Math.min(aRemaining, aChunk.length - this.position);
+            System.arraycopy(bytes, aOffset, aChunk, this.position, aLength);
+            this.position += aLength;
+            this.size += aLength;
+            aOffset += aLength;
+            aRemaining -= aLength;
+        }
+    }
+
+    public void write(final int b) {
+        if (this.overflowed) {
+            return;
+        }
+
+        if (this.size + 1 > this.maxSize) {
+            this.overflowed = true;
+            release();
+            return;
+        }
+
+        currentChunk()[this.position++] = (byte) b;
+        this.size++;
+    }
+
+    public boolean isOverflowed() {
+        return this.overflowed;
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * The captured bytes as they are in the chunks, later writes or a reset do not change the returned body.
+     */
+    public IdempotencyKeyCapturedBody captured() {
+        // the body reads only its first size bytes, later writes land after them or in new chunks
+        return new IdempotencyKeyCapturedBody(this.chunks, (int) this.size);
+    }
+
+    public byte[] toByteArray() {
+        return captured().toByteArray();
+    }
+
+    public void reset() {
+        release();
+        this.overflowed = false;
+    }
+
+    /**
+     * Drops the captured chunks, must be called once the captured body is no longer needed.
+     */
+    public void release() {
+        this.chunks.clear();
+        this.size = 0;
+        this.position = 0;
+    }
+
+    private byte[] currentChunk() {
+        if (!this.chunks.isEmpty()) {
+            final var aLast = this.chunks.get(this.chunks.size() - 1);
+            if (this.position < aLast.length) {
+                return aLast;
+            }
+        }
+
+        // doubles with the body up to the max chunk size, never past what the limit still allows
+        final var aSize = Math.min(Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, this.size)), this.maxSize - this.size);
+        final var aChunk = new byte[(int) aSize];
+        this.chunks.add(aChunk);
+        this.position = 0;
+        return aChunk;
+    }
+}
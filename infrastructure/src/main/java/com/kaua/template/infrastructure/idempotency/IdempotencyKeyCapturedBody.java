@@ -0,0 +1,59 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Response body captured by {@link IdempotencyKeyCaptureBuffer}, kept in the chunks it was written to so the
+ * codec and the compressor read it in place instead of joining it into a single array first.
+ */
+public final class IdempotencyKeyCapturedBody implements Serializable {
+
+    private final List<byte[]> chunks;
+    private final int size;
+
+    IdempotencyKeyCapturedBody(final List<byte[]> chunks, final int size) {
+        this.chunks = List.copyOf(chunks);
+        this.size = size;
+    }
+
+    static IdempotencyKeyCapturedBody of(final byte[] body) {
+        return new IdempotencyKeyCapturedBody(List.of(body), body.length);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void writeTo(final ByteBuffer buffer) {
+        var aRemaining = this.size;
+        for (final var aChunk : this.chunks) {
+            final var aLength = Math.min(aChunk.length, aRemaining);
+            buffer.put(aChunk, 0, aLength);
+            aRemaining -= aLength;
+        }
+    }
+
+    public void writeTo(final OutputStream output) throws IOException {
+        var aRemaining = this.size;
+        for (final var aChunk : this.chunks) {
+            final var aLength = Math.min(aChunk.length, aRemaining);
+            output.write(aChunk, 0, aLength);
+            aRemaining -= aLength;
+        }
+    }
+
+    public byte[] toByteArray() {
+        final var aBuffer = ByteBuffer.allocate(this.size);
+        writeTo(aBuffer);
+        return aBuffer.array();
+    }
+
+    @Override
+    public String toString() {
+        return "IdempotencyKeyCapturedBody(" + this.size + " bytes)";
+    }
+}
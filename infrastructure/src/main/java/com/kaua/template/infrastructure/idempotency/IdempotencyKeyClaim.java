@@ -0,0 +1,29 @@
+package com.kaua.template.infrastructure.idempotency;
+
+/**
+ * Result of an atomic claim on an idempotency key: either the caller acquired the key
+ * and must process the request, or the key already exists and {@code existing} holds
+ * the stored entry (in progress or completed).
+ */
+public record IdempotencyKeyClaim(boolean acquired, IdempotencyKeyDTO existing) {
+
+    public static IdempotencyKeyClaim acquire() {
+        return new IdempotencyKeyClaim(true, null);
+    }
+
+    public static IdempotencyKeyClaim existing(final IdempotencyKeyDTO existing) {
+        return new IdempotencyKeyClaim(false, existing);
+    }
+
+    public boolean isInProgress() {
+        return !acquired && existing.status() == IdempotencyKeyStatus.IN_PROGRESS;
+    }
+
+    public boolean isCompleted() {
+        return !acquired && existing.status() == IdempotencyKeyStatus.COMPLETED;
+    }
+
+    public boolean isNotReplayable() {
+        return !acquired && existing.status() == IdempotencyKeyStatus.NOT_REPLAYABLE;
+    }
+}
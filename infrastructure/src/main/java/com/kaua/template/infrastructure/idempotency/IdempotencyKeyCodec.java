@@ -0,0 +1,148 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Binary format of the stored idempotency entries, written and read without Jackson or charset conversion of the body.
+ *
+ * <pre>
+ * byte    format version
+ * byte    status (ordinal of {@link IdempotencyKeyStatus})
+ * short   http status code
+ * short   content encoding length, followed by its UTF-8 bytes (0 when identity)
+ * short   header count, followed by each header as short name length + name, int value length + value
+ * short   request fingerprint length, followed by its bytes (0 when unknown, absent in version 1)
+ * int     body length, followed by the raw body bytes
+ * </pre>
+ */
+public final class IdempotencyKeyCodec {
+
+    private static final byte VERSION = 2;
+    private static final byte VERSION_WITHOUT_FINGERPRINT = 1;
+    private static final byte[] EMPTY = new byte[0];
+
+    private IdempotencyKeyCodec() {}
+
+    public static byte[] encode(final IdempotencyKeyDTO dto) {
+        return encode(dto, dto.body().length, buffer -> buffer.put(dto.body()));
+    }
+
+    /**
+     * Encodes the completed entry of the input, a body captured by the filter is compressed or copied into the
+     * record straight from its chunks instead of being joined into a single array first.
+     */
+    public static byte[] encode(final IdempotencyKeyInput input, final IdempotencyKeyCompressor compressor) {
+        if (!(input.body() instanceof IdempotencyKeyCapturedBody aBody)) {
+            return encode(compressor.compress(IdempotencyKeyDTO.completed(input)));
+        }
+
+        final var aContentEncoding = input.contentEncoding();
+        final var aFingerprint = input.fingerprint() != null ? input.fingerprint() : EMPTY;
+        final var aCompressed = compressor.compress(aBody, aContentEncoding);
+
+        if (aCompressed != null) {
+            return encode(new IdempotencyKeyDTO(
+                    input.statusCode(),
+                    aCompressed,
+                    input.headers(),
+                    compressor.contentCoding(),
+                    IdempotencyKeyStatus.COMPLETED,
+                    aFingerprint
+            ));
+        }
+
+        final var aHeader = new IdempotencyKeyDTO(
+                input.statusCode(),
+                EMPTY,
+                input.headers(),
+                aContentEncoding,
+                IdempotencyKeyStatus.COMPLETED,
+                aFingerprint
+        );
+        return encode(aHeader, aBody.size(), aBody::writeTo);
+    }
+
+    private static byte[] encode(final IdempotencyKeyDTO dto, final int bodyLength, final Consumer<ByteBuffer> body) {
+        final var aContentEncoding = toBytes(dto.contentEncoding());
+        final var aHeaders = new byte[dto.headers().size() * 2][];
+
+        var aSize = 1 + 1 + 2 + 2 + aContentEncoding.length + 2 + 2 + dto.fingerprint().length + 4 + bodyLength;
+        var i = 0;
+        for (final var aHeader : dto.headers().entrySet()) {
+            aHeaders[i] = toBytes(aHeader.getKey());
+            aHeaders[i + 1] = toBytes(aHeader.getValue());
+            aSize += 2 + aHeaders[i].length + 4 + aHeaders[i + 1].length;
+            i += 2;
+        }
+
+        final var aBuffer = ByteBuffer.allocate(aSize)
+                .put(VERSION)
+                .put((byte) dto.status().ordinal())
+                .putShort((short) dto.statusCode())
+                .putShort((short) aContentEncoding.length)
+                .put(aContentEncoding)
+                .putShort((short) dto.headers().size());
+
+        for (int j = 0; j < aHeaders.length; j += 2) {
+            aBuffer.putShort((short) aHeaders[j].length).put(aHeaders[j]);
+            aBuffer.putInt(aHeaders[j + 1].length).put(aHeaders[j + 1]);
+        }
+
+        aBuffer.putShort((short) dto.fingerprint().length)
+                .put(dto.fingerprint())
+                .putInt(bodyLength);
+        body.accept(aBuffer);
+
+        return aBuffer.array();
+    }
+
+    public static IdempotencyKeyDTO decode(final byte[] record) {
+        final var aBuffer = ByteBuffer.wrap(record);
+        final var aVersion = aBuffer.get();
+
+        if (aVersion != VERSION && aVersion != VERSION_WITHOUT_FINGERPRINT) {
+            throw new IllegalArgumentException("Unsupported idempotency key record version: " + aVersion);
+        }
+
+        final var aStatus = IdempotencyKeyStatus.values()[aBuffer.get()];
+        final var aStatusCode = aBuffer.getShort();
+        final var aContentEncoding = readString(aBuffer, aBuffer.getShort());
+
+        final var aHeaderCount = aBuffer.getShort();
+        final var aHeaders = new LinkedHashMap<String, String>(aHeaderCount * 2);
+        for (int i = 0; i < aHeaderCount; i++) {
+            final var aName = readString(aBuffer, aBuffer.getShort());
+            aHeaders.put(aName, readString(aBuffer, aBuffer.getInt()));
+        }
+
+        final var aFingerprint = new byte[aVersion == VERSION ? aBuffer.getShort() : 0];
+        aBuffer.get(aFingerprint);
+
+        final var aBodyLength = aBuffer.getInt();
+        final var aBodyStart = aBuffer.position();
+        final var aBody = Arrays.copyOfRange(record, aBodyStart, aBodyStart + aBodyLength);
+
+        return new IdempotencyKeyDTO(
+                aStatusCode,
+                aBody,
+                aHeaders,
+                aContentEncoding.isEmpty() ? null : aContentEncoding,
+                aStatus,
+                aFingerprint
+        );
+    }
+
+    private static byte[] toBytes(final String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(final ByteBuffer buffer, final int length) {
+        final var aValue = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return aValue;
+    }
+}
@@ -0,0 +1,63 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.infrastructure.idempotency.gateways.AsyncIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Final state of a claimed key waiting to be stored, either the response to replay or, when {@code body} is
+ * {@code null}, the status of a response that can not be replayed.
+ */
+public record IdempotencyKeyCompletion(
+        String idempotencyKey,
+        IdempotencyKeyInput body,
+        int statusCode,
+        long ttl,
+        TimeUnit timeUnit
+) {
+
+    public static IdempotencyKeyCompletion completed(
+            final String idempotencyKey,
+            final IdempotencyKeyInput body,
+            final long ttl,
+            final TimeUnit timeUnit
+    ) {
+        return new IdempotencyKeyCompletion(idempotencyKey, body, body.statusCode(), ttl, timeUnit);
+    }
+
+    public static IdempotencyKeyCompletion notReplayable(
+            final String idempotencyKey,
+            final int statusCode,
+            final long ttl,
+            final TimeUnit timeUnit
+    ) {
+        return new IdempotencyKeyCompletion(idempotencyKey, null, statusCode, ttl, timeUnit);
+    }
+
+    public boolean isReplayable() {
+        return body != null;
+    }
+
+    /**
+     * The entry the store will hold once this completion is written, before any compression.
+     */
+    public IdempotencyKeyDTO toDTO() {
+        return isReplayable() ? IdempotencyKeyDTO.completed(body) : IdempotencyKeyDTO.notReplayable(statusCode);
+    }
+
+    public void applyTo(final IdempotencyKeyGateway gateway) {
+        if (isReplayable()) {
+            gateway.complete(idempotencyKey, body, ttl, timeUnit);
+        } else {
+            gateway.markNotReplayable(idempotencyKey, statusCode, ttl, timeUnit);
+        }
+    }
+
+    public CompletionStage<Void> applyTo(final AsyncIdempotencyKeyGateway gateway) {
+        return isReplayable()
+                ? gateway.complete(idempotencyKey, body, ttl, timeUnit)
+                : gateway.markNotReplayable(idempotencyKey, statusCode, ttl, timeUnit);
+    }
+}
@@ -0,0 +1,31 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Wakes the local waiters of a key when any instance publishes its completion.
+ */
+public class IdempotencyKeyCompletionListener implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeyCompletionListener.class);
+
+    private final IdempotencyKeyWaiters idempotencyKeyWaiters;
+
+    public IdempotencyKeyCompletionListener(final IdempotencyKeyWaiters idempotencyKeyWaiters) {
+        this.idempotencyKeyWaiters = Objects.requireNonNull(idempotencyKeyWaiters);
+    }
+
+    @Override
+    public void onMessage(final Message message, final byte[] pattern) {
+        final var aIdempotencyKey = new String(message.getBody(), StandardCharsets.UTF_8);
+
+        log.trace("Idempotency key completion received [key:{}]", aIdempotencyKey);
+        this.idempotencyKeyWaiters.signal(aIdempotencyKey);
+    }
+}
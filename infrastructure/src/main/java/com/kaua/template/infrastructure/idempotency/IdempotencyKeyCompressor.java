@@ -0,0 +1,163 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses the stored response bodies above a size threshold, the algorithm used is kept in the
+ * entry {@code contentEncoding} as an HTTP content-coding so the body can be replayed as-is to clients
+ * that accept it.
+ */
+public class IdempotencyKeyCompressor {
+
+    private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+
+    private final Algorithm algorithm;
+    private final long threshold;
+    private final int level;
+
+    public IdempotencyKeyCompressor(final Algorithm algorithm, final long threshold, final int level) {
+        this.algorithm = algorithm;
+        this.threshold = threshold;
+        this.level = level;
+    }
+
+    public static IdempotencyKeyCompressor none() {
+        return new IdempotencyKeyCompressor(Algorithm.NONE, Long.MAX_VALUE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public IdempotencyKeyDTO compress(final IdempotencyKeyDTO dto) {
+        if (dto.status() != IdempotencyKeyStatus.COMPLETED || !compresses(dto.contentEncoding(), dto.body().length)) {
+            return dto;
+        }
+
+        final var aCompressed = this.algorithm.compress(IdempotencyKeyCapturedBody.of(dto.body()), this.level);
+
+        // not worth storing when the payload is already compressed (images, archives...)
+        if (aCompressed.length >= dto.body().length) {
+            return dto;
+        }
+
+        return new IdempotencyKeyDTO(
+                dto.statusCode(),
+                aCompressed,
+                dto.headers(),
+                this.algorithm.contentCoding(),
+                dto.status(),
+                dto.fingerprint()
+        );
+    }
+
+    /**
+     * Compresses a captured body reading it from its chunks, returns {@code null} when it is kept as it is.
+     */
+    public byte[] compress(final IdempotencyKeyCapturedBody body, final String contentEncoding) {
+        if (!compresses(contentEncoding, body.size())) {
+            return null;
+        }
+
+        final var aCompressed = this.algorithm.compress(body, this.level);
+        return aCompressed.length < body.size() ? aCompressed : null;
+    }
+
+    public String contentCoding() {
+        return this.algorithm.contentCoding();
+    }
+
+    /**
+     * Whether the body was compressed by the store, as opposed to a body already encoded by the handler
+     * which is replayed together with its own {@code Content-Encoding} header.
+     */
+    public static boolean isCompressedByStore(final IdempotencyKeyDTO dto) {
+        return dto.contentEncoding() != null && dto.headers().keySet().stream()
+                .noneMatch(CONTENT_ENCODING_HEADER::equalsIgnoreCase);
+    }
+
+    public static byte[] decompress(final IdempotencyKeyDTO dto) {
+        if (!isCompressedByStore(dto)) {
+            return dto.body();
+        }
+        return Algorithm.fromContentCoding(dto.contentEncoding()).decompress(dto.body());
+    }
+
+    private boolean compresses(final String contentEncoding, final long size) {
+        return this.algorithm != Algorithm.NONE && contentEncoding == null && size >= this.threshold;
+    }
+
+    public enum Algorithm {
+        NONE(null),
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String contentCoding;
+
+        Algorithm(final String contentCoding) {
+            this.contentCoding = contentCoding;
+        }
+
+        public String contentCoding() {
+            return contentCoding;
+        }
+
+        public static Algorithm fromContentCoding(final String contentCoding) {
+            return Arrays.stream(values())
+                    .filter(it -> it.contentCoding != null && it.contentCoding.equalsIgnoreCase(contentCoding))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unsupported content encoding: " + contentCoding));
+        }
+
+        private byte[] compress(final IdempotencyKeyCapturedBody body, final int level) {
+            final var aOutput = new ByteArrayOutputStream(body.size() / 2);
+            final var aDeflater = this == DEFLATE ? new Deflater(level) : null;
+            try (final var aStream = newOutputStream(aOutput, aDeflater, level)) {
+                body.writeTo(aStream);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (aDeflater != null) {
+                    aDeflater.end();
+                }
+            }
+            return aOutput.toByteArray();
+        }
+
+        private byte[] decompress(final byte[] body) {
+            try (final var aStream = newInputStream(new ByteArrayInputStream(body))) {
+                return aStream.readAllBytes();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private OutputStream newOutputStream(final OutputStream output, final Deflater deflater, final int level) throws IOException {
+            return switch (this) {
+                // gzip owns its raw deflater and releases it on close, only the level is changed
+                case GZIP -> new GZIPOutputStream(output) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+                case DEFLATE -> new DeflaterOutputStream(output, deflater);
+                case NONE -> output;
+            };
+        }
+
+        private InputStream newInputStream(final InputStream input) throws IOException {
+            return switch (this) {
+                case GZIP -> new GZIPInputStream(input);
+                case DEFLATE -> new InflaterInputStream(input);
+                case NONE -> input;
+            };
+        }
+    }
+}
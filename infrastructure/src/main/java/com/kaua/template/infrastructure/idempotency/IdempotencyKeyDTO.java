@@ -1,30 +1,63 @@
 package com.kaua.template.infrastructure.idempotency;
 
-import com.fasterxml.jackson.annotation.JsonCreator;
-import com.fasterxml.jackson.annotation.JsonProperty;
-
 import java.io.Serializable;
+import java.util.HexFormat;
 import java.util.Map;
 
-public record IdempotencyKeyDTO(int statusCode, String body, Map<String, String> headers) implements Serializable {
+/**
+ * Stored idempotency entry, the body is kept as the raw bytes written to the client and
+ * {@code contentEncoding} describes how those bytes are encoded ({@code null} for identity).
+ * {@code fingerprint} is the hash of the request that produced the entry, empty when unknown.
+ */
+public record IdempotencyKeyDTO(
+        int statusCode,
+        byte[] body,
+        Map<String, String> headers,
+        String contentEncoding,
+        IdempotencyKeyStatus status,
+        byte[] fingerprint
+) implements Serializable {
+
+    private static final byte[] EMPTY_BODY = new byte[0];
 
-    @JsonCreator
     public IdempotencyKeyDTO(
-            @JsonProperty("status_code") final int statusCode,
-            @JsonProperty("body") final String body,
-            @JsonProperty("headers") Map<String, String> headers
+            final int statusCode,
+            final byte[] body,
+            final Map<String, String> headers,
+            final String contentEncoding,
+            final IdempotencyKeyStatus status
     ) {
-        this.statusCode = statusCode;
-        this.body = body;
-        this.headers = headers;
+        this(statusCode, body, headers, contentEncoding, status, EMPTY_BODY);
+    }
+
+    public static IdempotencyKeyDTO inProgress() {
+        return new IdempotencyKeyDTO(0, EMPTY_BODY, Map.of(), null, IdempotencyKeyStatus.IN_PROGRESS);
+    }
+
+    public static IdempotencyKeyDTO completed(final IdempotencyKeyInput input) {
+        return new IdempotencyKeyDTO(
+                input.statusCode(),
+                input.bodyAsBytes(),
+                input.headers(),
+                input.contentEncoding(),
+                IdempotencyKeyStatus.COMPLETED,
+                input.fingerprint() != null ? input.fingerprint() : EMPTY_BODY
+        );
+    }
+
+    public static IdempotencyKeyDTO notReplayable(final int statusCode) {
+        return new IdempotencyKeyDTO(statusCode, EMPTY_BODY, Map.of(), null, IdempotencyKeyStatus.NOT_REPLAYABLE);
     }
 
     @Override
     public String toString() {
-        return "IdempotencyKeyInput(" +
+        return "IdempotencyKeyDTO(" +
                 "statusCode=" + statusCode +
-                ", body=" + body +
+                ", body=" + body.length + " bytes" +
                 ", headers=" + headers.size() +
+                ", contentEncoding=" + contentEncoding +
+                ", status=" + status +
+                ", fingerprint=" + HexFormat.of().formatHex(fingerprint) +
                 ')';
     }
 }
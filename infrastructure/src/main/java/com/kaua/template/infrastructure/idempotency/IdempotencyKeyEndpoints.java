@@ -0,0 +1,187 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.server.RequestPath;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.ServletRequestPathUtils;
+import org.springframework.web.util.pattern.PathPattern;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the endpoints annotated with {@link IdempotencyKey}, built once from the registered request mappings.
+ * <p>
+ * A request is resolved by matching its path and method against the annotated patterns, most requests
+ * don't match any of them and go through without a handler lookup. When an annotated pattern matches, the
+ * not annotated mappings are checked for a more specific pattern, the same rule Spring uses to pick the handler.
+ * Mappings that can only be told apart by their other conditions (params, headers, consumes...) and apps
+ * using the legacy {@code AntPathMatcher} fall back to the handler mapping lookup.
+ */
+public class IdempotencyKeyEndpoints {
+
+    private final RequestMappingHandlerMapping requestMappingHandlerMapping;
+    private final List<Endpoint> annotatedEndpoints;
+    private final List<Endpoint> otherEndpoints;
+    private final Map<Method, IdempotencyKeyPolicy> policiesByMethod;
+    private final boolean lookupOnly;
+
+    private IdempotencyKeyEndpoints(
+            final RequestMappingHandlerMapping requestMappingHandlerMapping,
+            final List<Endpoint> annotatedEndpoints,
+            final List<Endpoint> otherEndpoints,
+            final Map<Method, IdempotencyKeyPolicy> policiesByMethod,
+            final boolean lookupOnly
+    ) {
+        this.requestMappingHandlerMapping = requestMappingHandlerMapping;
+        this.annotatedEndpoints = annotatedEndpoints;
+        this.otherEndpoints = otherEndpoints;
+        this.policiesByMethod = policiesByMethod;
+        this.lookupOnly = lookupOnly;
+    }
+
+    public static IdempotencyKeyEndpoints from(final RequestMappingHandlerMapping requestMappingHandlerMapping) {
+        final var aAnnotatedEndpoints = new ArrayList<Endpoint>();
+        final var aOtherEndpoints = new ArrayList<Endpoint>();
+        final var aPoliciesByMethod = new HashMap<Method, IdempotencyKeyPolicy>();
+        var aLookupOnly = false;
+
+        for (final var aMapping : requestMappingHandlerMapping.getHandlerMethods().entrySet()) {
+            final var aInfo = aMapping.getKey();
+            final var aPolicy = resolvePolicy(aMapping.getValue());
+
+            if (aPolicy != null) {
+                aPoliciesByMethod.put(aMapping.getValue().getMethod(), aPolicy);
+            }
+
+            if (aInfo.getPathPatternsCondition() == null) {
+                aLookupOnly = true;
+                continue;
+            }
+
+            final var aMethods = aInfo.getMethodsCondition().getMethods().stream()
+                    .map(RequestMethod::name)
+                    .collect(Collectors.toUnmodifiableSet());
+
+            for (final var aPattern : aInfo.getPathPatternsCondition().getPatterns()) {
+                final var aEndpoint = new Endpoint(aPattern, aMethods, aPolicy, false);
+                (aPolicy != null ? aAnnotatedEndpoints : aOtherEndpoints).add(aEndpoint);
+            }
+        }
+
+        // the same pattern and method mapped twice is only resolved by the other conditions of the mapping
+        final var aAllEndpoints = new ArrayList<>(aAnnotatedEndpoints);
+        aAllEndpoints.addAll(aOtherEndpoints);
+        aAnnotatedEndpoints.replaceAll(it -> aAllEndpoints.stream()
+                .anyMatch(other -> other != it && other.overlaps(it)) ? it.asAmbiguous() : it);
+
+        return new IdempotencyKeyEndpoints(
+                requestMappingHandlerMapping,
+                List.copyOf(aAnnotatedEndpoints),
+                List.copyOf(aOtherEndpoints),
+                Map.copyOf(aPoliciesByMethod),
+                aLookupOnly
+        );
+    }
+
+    /**
+     * Returns the policy of the endpoint that handles the request or null when it is not annotated.
+     */
+    public IdempotencyKeyPolicy find(final HttpServletRequest request) throws Exception {
+        if (this.lookupOnly) {
+            return findByHandlerLookup(request);
+        }
+
+        if (this.annotatedEndpoints.isEmpty()) {
+            return null;
+        }
+
+        final var aPath = getPathWithinApplication(request);
+        final var aMethod = request.getMethod();
+
+        Endpoint aBest = null;
+        for (final var aEndpoint : this.annotatedEndpoints) {
+            if (aEndpoint.matches(aPath, aMethod) && (aBest == null || aEndpoint.isMoreSpecificThan(aBest))) {
+                aBest = aEndpoint;
+            }
+        }
+
+        if (aBest == null) {
+            return null;
+        }
+
+        if (aBest.ambiguous()) {
+            return findByHandlerLookup(request);
+        }
+
+        for (final var aEndpoint : this.otherEndpoints) {
+            if (aEndpoint.matches(aPath, aMethod) && aEndpoint.isMoreSpecificThan(aBest)) {
+                return null;
+            }
+        }
+
+        return aBest.policy();
+    }
+
+    private IdempotencyKeyPolicy findByHandlerLookup(final HttpServletRequest request) throws Exception {
+        final var aHandlerChain = this.requestMappingHandlerMapping.getHandler(request);
+
+        if (aHandlerChain != null && aHandlerChain.getHandler() instanceof HandlerMethod aHandlerMethod) {
+            return this.policiesByMethod.get(aHandlerMethod.getMethod());
+        }
+        return null;
+    }
+
+    private static IdempotencyKeyPolicy resolvePolicy(final HandlerMethod handlerMethod) {
+        if (!handlerMethod.getBeanType().isAnnotationPresent(RestController.class)) {
+            return null;
+        }
+
+        final var aAnnotation = handlerMethod.getMethodAnnotation(IdempotencyKey.class);
+        return aAnnotation != null
+                ? IdempotencyKeyPolicy.from(aAnnotation, handlerMethod.getBeanType().getSimpleName() + "#" + handlerMethod.getMethod().getName())
+                : null;
+    }
+
+    private static RequestPath getPathWithinApplication(final HttpServletRequest request) {
+        if (ServletRequestPathUtils.hasParsedRequestPath(request)) {
+            return ServletRequestPathUtils.getParsedRequestPath(request).pathWithinApplication();
+        }
+
+        try {
+            return ServletRequestPathUtils.parseAndCache(request).pathWithinApplication();
+        } finally {
+            // the dispatcher servlet parses it again, don't leave our copy behind
+            ServletRequestPathUtils.clearParsedRequestPath(request);
+        }
+    }
+
+    private record Endpoint(PathPattern pattern, Set<String> methods, IdempotencyKeyPolicy policy, boolean ambiguous) {
+
+        boolean matches(final RequestPath path, final String method) {
+            return (this.methods.isEmpty() || this.methods.contains(method)) && this.pattern.matches(path);
+        }
+
+        boolean isMoreSpecificThan(final Endpoint other) {
+            return PathPattern.SPECIFICITY_COMPARATOR.compare(this.pattern, other.pattern) < 0;
+        }
+
+        boolean overlaps(final Endpoint other) {
+            return this.pattern.getPatternString().equals(other.pattern.getPatternString())
+                    && (this.methods.isEmpty() || other.methods.isEmpty()
+                    || this.methods.stream().anyMatch(other.methods::contains));
+        }
+
+        Endpoint asAmbiguous() {
+            return new Endpoint(this.pattern, this.methods, this.policy, true);
+        }
+    }
+}
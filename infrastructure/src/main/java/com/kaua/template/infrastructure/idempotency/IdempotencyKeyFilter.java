@@ -1,7 +1,13 @@
 package com.kaua.template.infrastructure.idempotency;
 
+import com.kaua.template.infrastructure.configurations.properties.IdempotencyKeyProperties;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyInProgressException;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyMismatchException;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyNotReplayableException;
 import com.kaua.template.infrastructure.exceptions.IdempotencyKeyRequiredException;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyStoreUnavailableException;
 import com.kaua.template.infrastructure.exceptions.IdempotencyKeyUnsupportedMethodException;
+import com.kaua.template.infrastructure.idempotency.gateways.AsyncIdempotencyKeyGateway;
 import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
 import com.kaua.template.infrastructure.utils.ObservationHelper;
 import jakarta.servlet.FilterChain;
@@ -9,20 +15,24 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
-import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerExceptionResolver;
-import org.springframework.web.servlet.HandlerExecutionChain;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 
-import java.lang.reflect.Method;
+import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Component
@@ -30,21 +40,66 @@ public class IdempotencyKeyFilter extends OncePerRequestFilter {
 
     private static final Logger log = LoggerFactory.getLogger(IdempotencyKeyFilter.class);
 
+    // result of a claim resolved while the request was suspended, either the claim or its failure
+    private static final String ASYNC_CLAIM_ATTRIBUTE = IdempotencyKeyFilter.class.getName() + ".ASYNC_CLAIM";
+
+    // set when the claim of the async dispatch is the result of a wait, the key is not waited for twice
+    private static final String ASYNC_WAITED_ATTRIBUTE = IdempotencyKeyFilter.class.getName() + ".ASYNC_WAITED";
+
     private final IdempotencyKeyGateway idempotencyKeyGateway;
-    private final RequestMappingHandlerMapping requestMappingHandlerMapping;
+    private final AsyncIdempotencyKeyGateway asyncIdempotencyKeyGateway;
+    private final IdempotencyKeyWaiters idempotencyKeyWaiters;
+    private final IdempotencyKeyEndpoints idempotencyKeyEndpoints;
     private final HandlerExceptionResolver resolver;
     private final ObservationHelper observationHelper;
+    private final IdempotencyKeyMetrics idempotencyKeyMetrics;
+    private final long maxCaptureSize;
+    private final boolean fingerprintEnabled;
+    private final long fingerprintMaxBodySize;
+    private final boolean failOpen;
+
+    public IdempotencyKeyFilter(
+            final IdempotencyKeyGateway idempotencyKeyGateway,
+            final IdempotencyKeyWaiters idempotencyKeyWaiters,
+            final RequestMappingHandlerMapping requestMappingHandlerMapping,
+            final HandlerExceptionResolver resolver,
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyProperties properties
+    ) {
+        this(
+                idempotencyKeyGateway,
+                null,
+                idempotencyKeyWaiters,
+                requestMappingHandlerMapping,
+                resolver,
+                observationHelper,
+                properties,
+                IdempotencyKeyMetrics.disabled()
+        );
+    }
 
+    @Autowired
     public IdempotencyKeyFilter(
             final IdempotencyKeyGateway idempotencyKeyGateway,
+            final @Nullable AsyncIdempotencyKeyGateway asyncIdempotencyKeyGateway,
+            final IdempotencyKeyWaiters idempotencyKeyWaiters,
             final RequestMappingHandlerMapping requestMappingHandlerMapping,
             final @Qualifier("handlerExceptionResolver") HandlerExceptionResolver resolver,
-            final ObservationHelper observationHelper
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyProperties properties,
+            final IdempotencyKeyMetrics idempotencyKeyMetrics
     ) {
         this.idempotencyKeyGateway = Objects.requireNonNull(idempotencyKeyGateway);
-        this.requestMappingHandlerMapping = Objects.requireNonNull(requestMappingHandlerMapping);
+        this.asyncIdempotencyKeyGateway = asyncIdempotencyKeyGateway;
+        this.idempotencyKeyWaiters = Objects.requireNonNull(idempotencyKeyWaiters);
+        this.idempotencyKeyEndpoints = IdempotencyKeyEndpoints.from(Objects.requireNonNull(requestMappingHandlerMapping));
         this.resolver = Objects.requireNonNull(resolver);
         this.observationHelper = Objects.requireNonNull(observationHelper);
+        this.idempotencyKeyMetrics = Objects.requireNonNull(idempotencyKeyMetrics);
+        this.maxCaptureSize = properties.getCapture().getMaxSize().toBytes();
+        this.fingerprintEnabled = properties.getFingerprint().isEnabled();
+        this.fingerprintMaxBodySize = properties.getFingerprint().getMaxBodySize().toBytes();
+        this.failOpen = properties.getCircuitBreaker().getFailureMode() == IdempotencyKeyProperties.CircuitBreaker.FailureMode.FAIL_OPEN;
     }
 
     @Override
@@ -53,6 +108,12 @@ public class IdempotencyKeyFilter extends OncePerRequestFilter {
             @NonNull final HttpServletResponse response,
             @NonNull final FilterChain filterChain
     ) {
+        if (isAsyncDispatch(request) && request.getAttribute(ASYNC_CLAIM_ATTRIBUTE) == null) {
+            // an async dispatch started by the handler, the key was already handled on the first dispatch
+            filterChain.doFilter(request, response);
+            return;
+        }
+
         log.debug("Processing the idempotency key filter");
 
         this.observationHelper.observation(
@@ -65,9 +126,9 @@ public class IdempotencyKeyFilter extends OncePerRequestFilter {
                     span.setAttribute("http.user_agent", request.getHeader("User-Agent"));
 
                     try {
-                        final var aHandlerMethod = getHandlerMethod(request);
+                        final var aPolicy = this.idempotencyKeyEndpoints.find(request);
 
-                        if (aHandlerMethod != null && isIdempotencyKeyAnnotated(aHandlerMethod)) {
+                        if (aPolicy != null) {
                             if (!isSupportedMethod(request)) {
                                 throw new IdempotencyKeyUnsupportedMethodException(request.getMethod());
                             }
@@ -79,55 +140,153 @@ public class IdempotencyKeyFilter extends OncePerRequestFilter {
                             }
 
                             span.setAttribute("idempotency_key", aIdempotencyKey);
-                            final var aExistsIdempotencyKey = this.idempotencyKeyGateway.find(aIdempotencyKey);
 
-                            if (aExistsIdempotencyKey.isPresent()) {
-                                response.setStatus(aExistsIdempotencyKey.get().statusCode());
-                                aExistsIdempotencyKey.get().headers().forEach(response::addHeader);
-                                response.getWriter().write(aExistsIdempotencyKey.get().body());
+                            // the key as stored, the same as the header unless the endpoint scopes it
+                            final var aKey = aPolicy.scopedKey(request, aIdempotencyKey);
+                            final var aTTL = aPolicy.ttl();
+                            final var aTimeUnit = aPolicy.timeUnit();
+                            final var aEndpoint = aPolicy.endpoint();
+
+                            IdempotencyKeyClaim aClaim;
+
+                            try {
+                                final var aWaited = request.getAttribute(ASYNC_WAITED_ATTRIBUTE) != null;
+                                request.removeAttribute(ASYNC_WAITED_ATTRIBUTE);
+
+                                aClaim = claim(request, response, aKey, aPolicy);
+
+                                if (aClaim != null && aClaim.isInProgress() && this.idempotencyKeyWaiters.isEnabled() && !aWaited) {
+                                    span.setAttribute("idempotency_key_waited", true);
+                                    log.debug("Idempotency key in progress, waiting for the result [key:{}]", aIdempotencyKey);
+                                    aClaim = await(request, response, aKey, aPolicy);
+                                }
+                            } catch (final IdempotencyKeyStoreUnavailableException e) {
+                                if (!this.failOpen) {
+                                    throw e;
+                                }
+
+                                span.setAttribute("idempotency_key_bypassed", true);
+                                this.idempotencyKeyMetrics.recordResult(aEndpoint, IdempotencyKeyMetrics.Result.BYPASSED);
+                                log.warn("Idempotency key store unavailable, processing the request without the key [key:{}]", aIdempotencyKey);
+                                response.addHeader(IdempotencyKey.IDEMPOTENCY_BYPASSED_HEADER, "true");
+                                filterChain.doFilter(request, response);
+                                return;
+                            }
+
+                            if (aClaim == null) {
+                                span.setAttribute("idempotency_key_suspended", true);
+                                log.debug("Idempotency key pending, request suspended [key:{}]", aIdempotencyKey);
+                                return;
+                            }
+
+                            final var aFingerprintRequest = this.fingerprintEnabled
+                                    ? new IdempotencyKeyFingerprintRequest(request, this.fingerprintMaxBodySize)
+                                    : null;
+
+                            if (aClaim.isCompleted()) {
+                                final var aExistsIdempotencyKey = aClaim.existing();
+
+                                if (aFingerprintRequest != null && aExistsIdempotencyKey.fingerprint().length > 0
+                                        && !MessageDigest.isEqual(aExistsIdempotencyKey.fingerprint(), aFingerprintRequest.finish())) {
+                                    span.setAttribute("idempotency_key_mismatch", true);
+                                    this.idempotencyKeyMetrics.recordResult(aEndpoint, IdempotencyKeyMetrics.Result.MISMATCH);
+                                    throw new IdempotencyKeyMismatchException();
+                                }
+
+                                response.setStatus(aExistsIdempotencyKey.statusCode());
+                                aExistsIdempotencyKey.headers().forEach(response::addHeader);
                                 response.addHeader(IdempotencyKey.IDEMPOTENCY_RESPONSE_HEADER, "true");
+                                writeStoredBody(request, response, aExistsIdempotencyKey);
                                 span.setAttribute("idempotency_key_found", true);
-                                log.debug("Idempotency key found, returning the previous response {}", aExistsIdempotencyKey.get());
+                                this.idempotencyKeyMetrics.recordResult(aEndpoint, IdempotencyKeyMetrics.Result.HIT);
+                                log.debug("Idempotency key found, returning the previous response {}", aExistsIdempotencyKey);
                                 return;
                             }
 
-                            final var aIdempotencyKeyValues = getIdempotencyKeyValues(aHandlerMethod);
-                            final var aTTL = aIdempotencyKeyValues.ttl();
-                            final var aTimeUnit = aIdempotencyKeyValues.timeUnit();
+                            if (aClaim.isNotReplayable()) {
+                                span.setAttribute("idempotency_key_found", true);
+                                this.idempotencyKeyMetrics.recordResult(aEndpoint, IdempotencyKeyMetrics.Result.NOT_REPLAYABLE);
+                                throw new IdempotencyKeyNotReplayableException();
+                            }
+
+                            if (aClaim.isInProgress()) {
+                                span.setAttribute("idempotency_key_in_progress", true);
+                                this.idempotencyKeyMetrics.recordResult(aEndpoint, IdempotencyKeyMetrics.Result.IN_PROGRESS);
+                                throw new IdempotencyKeyInProgressException();
+                            }
 
-                            log.debug("Idempotency key not found, saving before processing the request [key:{}] [ttl:{}] [timeUnit:{}]",
+                            this.idempotencyKeyMetrics.recordResult(aEndpoint, IdempotencyKeyMetrics.Result.MISS);
+                            log.debug("Idempotency key claimed before processing the request [key:{}] [ttl:{}] [timeUnit:{}]",
                                     aIdempotencyKey, aTTL, aTimeUnit);
 
-                            this.idempotencyKeyGateway.save(aIdempotencyKey, aTTL, aTimeUnit);
+                            final var aMaxBodySize = aPolicy.maxBodySize(this.maxCaptureSize);
+                            final var aResponseCapture = new IdempotencyKeyResponseCapture(response, aMaxBodySize);
+                            var aSignalOnStore = false;
 
-                            final var aResponseWrapper = new ContentCachingResponseWrapper(response);
-                            filterChain.doFilter(request, aResponseWrapper);
+                            try {
+                                try {
+                                    filterChain.doFilter(aFingerprintRequest != null ? aFingerprintRequest : request, aResponseCapture);
+                                } catch (final Exception e) {
+                                    // resolved as a server error below, released unless the endpoint stores them
+                                    if (!aPolicy.stores(HttpStatus.INTERNAL_SERVER_ERROR.value())) {
+                                        aSignalOnStore = releaseAfterFailure(aEndpoint, aKey);
+                                    }
+                                    throw e;
+                                }
+                                aResponseCapture.finish();
 
-                            final var aBodyArray = aResponseWrapper.getContentAsByteArray();
-                            aResponseWrapper.copyBodyToResponse();
+                                if (!aPolicy.stores(aResponseCapture.getStatus())) {
+                                    aSignalOnStore = release(aEndpoint, aKey);
 
-                            final var aBody = new String(aBodyArray, aResponseWrapper.getCharacterEncoding());
-                            final var aHeaders = aResponseWrapper.getHeaderNames().stream()
-                                    .collect(Collectors.toMap(
-                                            headerName -> headerName,
-                                            aResponseWrapper::getHeader
+                                    log.debug("Response status not stored by the endpoint, idempotency key released [key:{}] [status:{}]",
+                                            aIdempotencyKey, aResponseCapture.getStatus());
+                                    return;
+                                }
+
+                                if (!aResponseCapture.isReplayable()) {
+                                    aSignalOnStore = store(aEndpoint, IdempotencyKeyCompletion.notReplayable(
+                                            aKey,
+                                            aResponseCapture.getStatus(),
+                                            aTTL,
+                                            aTimeUnit
                                     ));
 
-                            final var aInput = new IdempotencyKeyInput(
-                                    aResponseWrapper.getStatus(),
-                                    aBody,
-                                    aHeaders
-                            );
-
-                            this.idempotencyKeyGateway.save(
-                                    aIdempotencyKey,
-                                    aInput,
-                                    aTTL,
-                                    aTimeUnit
-                            );
-
-                            log.debug("Idempotency key not found, saving the response for future requests [key:{}] [ttl:{}] [timeUnit:{}], result: {}",
-                                    aIdempotencyKey, aTTL, aTimeUnit, aInput);
+                                    log.debug("Response bigger than the capture limit, idempotency key marked as not replayable [key:{}] [maxBodySize:{}]",
+                                            aIdempotencyKey, aMaxBodySize);
+                                    return;
+                                }
+
+                                final var aHeaders = aResponseCapture.getHeaderNames().stream()
+                                        .distinct()
+                                        .collect(Collectors.toMap(
+                                                headerName -> headerName,
+                                                aResponseCapture::getHeader
+                                        ));
+
+                                final var aBody = aResponseCapture.getCapturedBodyChunks();
+                                final var aInput = new IdempotencyKeyInput(
+                                        aResponseCapture.getStatus(),
+                                        aBody,
+                                        aHeaders,
+                                        aFingerprintRequest != null ? aFingerprintRequest.finish() : null
+                                );
+
+                                this.idempotencyKeyMetrics.recordResponseSize(aEndpoint, aBody.size());
+                                aSignalOnStore = store(aEndpoint, IdempotencyKeyCompletion.completed(
+                                        aKey,
+                                        aInput,
+                                        aTTL,
+                                        aTimeUnit
+                                ));
+
+                                log.debug("Idempotency key not found, saving the response for future requests [key:{}] [ttl:{}] [timeUnit:{}], result: {}",
+                                        aIdempotencyKey, aTTL, aTimeUnit, aInput);
+                            } finally {
+                                aResponseCapture.release();
+                                if (!aSignalOnStore) {
+                                    this.idempotencyKeyWaiters.signal(aKey);
+                                }
+                            }
                         } else {
                             filterChain.doFilter(request, response);
                         }
@@ -137,28 +296,225 @@ public class IdempotencyKeyFilter extends OncePerRequestFilter {
                 });
     }
 
-    private HandlerMethod getHandlerMethod(final HttpServletRequest request) {
-        // Obtain the handler method from the request, if available
-        final HandlerExecutionChain handlerChain;
-        try {
-            handlerChain = this.requestMappingHandlerMapping.getHandler(request);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // the async dispatch sent when a pending claim completes must reach this filter
+        return this.asyncIdempotencyKeyGateway == null;
+    }
+
+    /**
+     * Claims the key, with the async gateway a claim that is not completed yet suspends the request and
+     * returns {@code null}, the request is dispatched again with the result once the claim completes.
+     */
+    private IdempotencyKeyClaim claim(
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final String idempotencyKey,
+            final IdempotencyKeyPolicy policy
+    ) {
+        if (isAsyncDispatch(request)) {
+            final var aResult = request.getAttribute(ASYNC_CLAIM_ATTRIBUTE);
+            request.removeAttribute(ASYNC_CLAIM_ATTRIBUTE);
+
+            if (aResult instanceof RuntimeException aFailure) {
+                throw aFailure;
+            }
+            if (aResult instanceof Throwable aFailure) {
+                throw new IllegalStateException(aFailure);
+            }
+            return (IdempotencyKeyClaim) aResult;
         }
 
-        if (handlerChain != null && handlerChain.getHandler() instanceof HandlerMethod) {
-            return (HandlerMethod) handlerChain.getHandler();
+        final var aStart = System.nanoTime();
+
+        if (this.asyncIdempotencyKeyGateway == null || !request.isAsyncSupported()) {
+            try {
+                final var aClaim = this.idempotencyKeyGateway.claim(idempotencyKey, policy.ttl(), policy.timeUnit());
+                recordLatency(policy.endpoint(), IdempotencyKeyMetrics.Operation.CLAIM, aStart, null);
+                return aClaim;
+            } catch (final RuntimeException e) {
+                recordLatency(policy.endpoint(), IdempotencyKeyMetrics.Operation.CLAIM, aStart, e);
+                throw e;
+            }
+        }
+
+        final var aPending = this.asyncIdempotencyKeyGateway.claim(idempotencyKey, policy.ttl(), policy.timeUnit())
+                .toCompletableFuture()
+                .whenComplete((claim, error) ->
+                        recordLatency(policy.endpoint(), IdempotencyKeyMetrics.Operation.CLAIM, aStart, error));
+
+        if (aPending.isDone()) {
+            try {
+                return aPending.join();
+            } catch (final CompletionException e) {
+                throw e.getCause() instanceof RuntimeException aFailure ? aFailure : e;
+            }
+        }
+
+        suspend(request, response, aPending);
+        return null;
+    }
+
+    /**
+     * Waits for a key in progress. With the async gateway the request is suspended and {@code null} is returned,
+     * it is dispatched again with the claim once the wait ends, the worker thread is not parked in the meantime.
+     */
+    private IdempotencyKeyClaim await(
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final String idempotencyKey,
+            final IdempotencyKeyPolicy policy
+    ) throws InterruptedException {
+        if (this.asyncIdempotencyKeyGateway == null || !request.isAsyncSupported()) {
+            return this.idempotencyKeyWaiters.await(idempotencyKey, policy.ttl(), policy.timeUnit());
         }
+
+        request.setAttribute(ASYNC_WAITED_ATTRIBUTE, Boolean.TRUE);
+        suspend(request, response, this.idempotencyKeyWaiters.awaitAsync(
+                this.asyncIdempotencyKeyGateway,
+                idempotencyKey,
+                policy.ttl(),
+                policy.timeUnit()
+        ));
         return null;
     }
 
-    private boolean isIdempotencyKeyAnnotated(final HandlerMethod handlerMethod) {
-        Method method = handlerMethod.getMethod();
-        return method.isAnnotationPresent(IdempotencyKey.class) && handlerMethod.getBeanType().isAnnotationPresent(RestController.class);
+    private static void suspend(
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final CompletionStage<IdempotencyKeyClaim> pending
+    ) {
+        final var aAsyncContext = request.startAsync(request, response);
+        pending.whenComplete((claim, error) -> {
+            request.setAttribute(ASYNC_CLAIM_ATTRIBUTE, error != null ? unwrap(error) : claim);
+            aAsyncContext.dispatch();
+        });
+    }
+
+    /**
+     * Stores the final state of the key, returns {@code true} when it is stored in background and the waiters
+     * are signaled once it is written.
+     */
+    private boolean store(final String endpoint, final IdempotencyKeyCompletion completion) {
+        return write(
+                endpoint,
+                completion.isReplayable()
+                        ? IdempotencyKeyMetrics.Operation.COMPLETE
+                        : IdempotencyKeyMetrics.Operation.MARK_NOT_REPLAYABLE,
+                completion.idempotencyKey(),
+                () -> completion.applyTo(this.idempotencyKeyGateway),
+                () -> completion.applyTo(this.asyncIdempotencyKeyGateway)
+        );
+    }
+
+    /**
+     * Removes the claim of a response that is not stored, same return of {@link #store}.
+     */
+    private boolean release(final String endpoint, final String idempotencyKey) {
+        return write(
+                endpoint,
+                IdempotencyKeyMetrics.Operation.RELEASE,
+                idempotencyKey,
+                () -> this.idempotencyKeyGateway.release(idempotencyKey),
+                () -> this.asyncIdempotencyKeyGateway.release(idempotencyKey)
+        );
     }
 
-    private IdempotencyKey getIdempotencyKeyValues(final HandlerMethod handlerMethod) {
-        return handlerMethod.getMethodAnnotation(IdempotencyKey.class);
+    // the failure of the request is what the client sees, a failed release only leaves the key until its ttl
+    private boolean releaseAfterFailure(final String endpoint, final String idempotencyKey) {
+        try {
+            return release(endpoint, idempotencyKey);
+        } catch (final RuntimeException e) {
+            log.error("Failed to release the idempotency key of a failed request [key:{}]", idempotencyKey, e);
+            return false;
+        }
+    }
+
+    private boolean write(
+            final String endpoint,
+            final IdempotencyKeyMetrics.Operation operation,
+            final String idempotencyKey,
+            final Runnable blockingWrite,
+            final Supplier<CompletionStage<Void>> asyncWrite
+    ) {
+        final var aStart = System.nanoTime();
+
+        if (this.asyncIdempotencyKeyGateway == null) {
+            try {
+                blockingWrite.run();
+                recordLatency(endpoint, operation, aStart, null);
+                return false;
+            } catch (final IdempotencyKeyStoreUnavailableException e) {
+                // the request is already processed, its response is sent and the key waits for its ttl
+                recordLatency(endpoint, operation, aStart, e);
+                log.warn("Idempotency key store unavailable, the key was not written [key:{}] [operation:{}]", idempotencyKey, operation);
+                return false;
+            } catch (final RuntimeException e) {
+                recordLatency(endpoint, operation, aStart, e);
+                throw e;
+            }
+        }
+
+        asyncWrite.get().whenComplete((ignored, error) -> {
+            recordLatency(endpoint, operation, aStart, error);
+            if (error != null) {
+                // the key stays in the store until its ttl elapses
+                log.error("Failed to write the idempotency key [key:{}] [operation:{}]", idempotencyKey, operation, unwrap(error));
+            }
+            this.idempotencyKeyWaiters.signal(idempotencyKey);
+        });
+        return true;
+    }
+
+    private void recordLatency(
+            final String endpoint,
+            final IdempotencyKeyMetrics.Operation operation,
+            final long start,
+            final Throwable error
+    ) {
+        this.idempotencyKeyMetrics.recordLatency(endpoint, operation, System.nanoTime() - start, error != null ? unwrap(error) : null);
+    }
+
+    private static Throwable unwrap(final Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private void writeStoredBody(
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final IdempotencyKeyDTO storedResponse
+    ) throws IOException {
+        final byte[] aBody;
+
+        // bodies compressed by the store are sent as-is when the client accepts the same encoding
+        if (IdempotencyKeyCompressor.isCompressedByStore(storedResponse)
+                && acceptsEncoding(request, storedResponse.contentEncoding())) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, storedResponse.contentEncoding());
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            aBody = storedResponse.body();
+        } else {
+            aBody = IdempotencyKeyCompressor.decompress(storedResponse);
+        }
+
+        response.setContentLength(aBody.length);
+        response.getOutputStream().write(aBody);
+    }
+
+    private boolean acceptsEncoding(final HttpServletRequest request, final String contentEncoding) {
+        final var aAcceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+
+        if (aAcceptEncoding == null) {
+            return false;
+        }
+
+        for (final var aToken : aAcceptEncoding.split(",")) {
+            final var aParts = aToken.split(";");
+            if (aParts[0].trim().equalsIgnoreCase(contentEncoding)) {
+                // "gzip;q=0" means the client refuses the encoding
+                return aParts.length == 1 || !aParts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
     }
 
     private boolean isSupportedMethod(final HttpServletRequest request) {
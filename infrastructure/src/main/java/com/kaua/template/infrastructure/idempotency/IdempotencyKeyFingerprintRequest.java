@@ -0,0 +1,257 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.Part;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.TreeMap;
+
+/**
+ * Hashes the request body while the handler reads it, so the fingerprint of the request is known without
+ * buffering the body. The fingerprint is the SHA-256 of the method, the path, the declared content length and
+ * the first {@code maxBodySize} bytes of the body.
+ * <p>
+ * {@link #finish()} reads whatever the handler left unread up to that limit, the same bytes are hashed whether
+ * the body was read by a handler or only by the filter when replaying.
+ * <p>
+ * Form bodies ({@code application/x-www-form-urlencoded} and {@code multipart/form-data}) are read by the
+ * container through {@code getParameter*()} and {@code getParts()}, never through this wrapper, so for them
+ * the parameters and the parts are hashed instead of the raw bytes. Both are available the same way after the
+ * handler ran or before replaying.
+ */
+public class IdempotencyKeyFingerprintRequest extends HttpServletRequestWrapper {
+
+    private static final MessageDigest SHA_256_PROTOTYPE = newSha256();
+    private static final int DRAIN_BUFFER_SIZE = 8192;
+    private static final long DEFAULT_MAX_BODY_SIZE = 1024 * 1024;
+    private static final String FORM_URLENCODED = "application/x-www-form-urlencoded";
+    private static final String MULTIPART = "multipart/";
+
+    private final MessageDigest digest;
+    private final long maxBodySize;
+    private final boolean form;
+    private HashingInputStream inputStream;
+    private BufferedReader reader;
+    private byte[] fingerprint;
+
+    public IdempotencyKeyFingerprintRequest(final HttpServletRequest request) {
+        this(request, DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * @param maxBodySize bytes of the body that are hashed, the rest is only covered by the content length
+     */
+    public IdempotencyKeyFingerprintRequest(final HttpServletRequest request, final long maxBodySize) {
+        super(request);
+        this.digest = cloneDigest();
+        this.maxBodySize = maxBodySize;
+        this.form = isForm(request.getContentType());
+        this.digest.update(request.getMethod().getBytes(StandardCharsets.US_ASCII));
+        this.digest.update((byte) ' ');
+        this.digest.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+        this.digest.update((byte) '\n');
+        this.digest.update(Long.toString(request.getContentLengthLong()).getBytes(StandardCharsets.US_ASCII));
+        this.digest.update((byte) '\n');
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (this.form) {
+            return super.getInputStream();
+        }
+        if (this.reader != null) {
+            throw new IllegalStateException("getReader() has already been called for this request");
+        }
+        return hashingInputStream();
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (this.form) {
+            return super.getReader();
+        }
+        if (this.reader == null) {
+            if (this.inputStream != null) {
+                throw new IllegalStateException("getInputStream() has already been called for this request");
+            }
+
+            final var aEncoding = getCharacterEncoding();
+            final var aCharset = aEncoding != null ? Charset.forName(aEncoding) : StandardCharsets.ISO_8859_1;
+            this.reader = new BufferedReader(new InputStreamReader(hashingInputStream(), aCharset));
+        }
+        return this.reader;
+    }
+
+    /**
+     * Hashes the rest of the body up to the limit and returns the fingerprint, later calls return the same value.
+     */
+    public byte[] finish() throws IOException {
+        if (this.fingerprint == null) {
+            if (this.form) {
+                hashForm();
+            } else {
+                final var aInput = hashingInputStream();
+                final var aBuffer = new byte[DRAIN_BUFFER_SIZE];
+                // past the limit the bytes are not hashed, reading them would only cost time
+                while (aInput.remaining() > 0
+                        && aInput.read(aBuffer, 0, (int) Math.min(aBuffer.length, aInput.remaining())) != -1) {
+                    // the bytes are hashed as they are read
+                }
+            }
+            this.fingerprint = this.digest.digest();
+        }
+        return this.fingerprint;
+    }
+
+    private void hashForm() throws IOException {
+        if (isMultipart(getContentType())) {
+            final Collection<Part> aParts;
+            try {
+                aParts = getParts();
+            } catch (final ServletException e) {
+                throw new IOException(e);
+            }
+
+            var aRemaining = this.maxBodySize;
+            for (final var aPart : aParts) {
+                update(aPart.getName());
+                update(aPart.getSubmittedFileName());
+                update(aPart.getContentType());
+                this.digest.update(Long.toString(aPart.getSize()).getBytes(StandardCharsets.US_ASCII));
+                this.digest.update((byte) '\n');
+                try (final var aInput = aPart.getInputStream()) {
+                    aRemaining -= hash(aInput, aRemaining);
+                }
+            }
+            return;
+        }
+
+        // sorted, the container does not guarantee the order of the map
+        for (final var aParameter : new TreeMap<>(getParameterMap()).entrySet()) {
+            update(aParameter.getKey());
+            for (final var aValue : aParameter.getValue()) {
+                update(aValue);
+            }
+        }
+    }
+
+    private long hash(final InputStream input, final long limit) throws IOException {
+        final var aBuffer = new byte[DRAIN_BUFFER_SIZE];
+        var aHashed = 0L;
+        int aCount;
+        while (aHashed < limit && (aCount = input.read(aBuffer, 0, (int) Math.min(aBuffer.length, limit - aHashed))) != -1) {
+            this.digest.update(aBuffer, 0, aCount);
+            aHashed += aCount;
+        }
+        return aHashed;
+    }
+
+    // the length prefix keeps "ab" + "c" apart from "a" + "bc"
+    private void update(final String value) {
+        if (value == null) {
+            this.digest.update((byte) 0);
+            return;
+        }
+        final var aBytes = value.getBytes(StandardCharsets.UTF_8);
+        this.digest.update(Integer.toString(aBytes.length).getBytes(StandardCharsets.US_ASCII));
+        this.digest.update((byte) ':');
+        this.digest.update(aBytes);
+    }
+
+    private HashingInputStream hashingInputStream() throws IOException {
+        if (this.inputStream == null) {
+            this.inputStream = new HashingInputStream(super.getInputStream(), this.digest, this.maxBodySize);
+        }
+        return this.inputStream;
+    }
+
+    private static boolean isForm(final String contentType) {
+        return contentType != null && (contentType.regionMatches(true, 0, FORM_URLENCODED, 0, FORM_URLENCODED.length())
+                || isMultipart(contentType));
+    }
+
+    private static boolean isMultipart(final String contentType) {
+        return contentType != null && contentType.regionMatches(true, 0, MULTIPART, 0, MULTIPART.length());
+    }
+
+    private static MessageDigest cloneDigest() {
+        try {
+            return (MessageDigest) SHA_256_PROTOTYPE.clone();
+        } catch (final CloneNotSupportedException e) {
+            return newSha256();
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class HashingInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+        private final MessageDigest digest;
+        private long remaining;
+
+        private HashingInputStream(final ServletInputStream delegate, final MessageDigest digest, final long limit) {
+            this.delegate = delegate;
+            this.digest = digest;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final var aByte = this.delegate.read();
+            if (aByte != -1 && this.remaining > 0) {
+                this.digest.update((byte) aByte);
+                this.remaining--;
+            }
+            return aByte;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final var aCount = this.delegate.read(b, off, len);
+            if (aCount > 0 && this.remaining > 0) {
+                final var aHashed = (int) Math.min(aCount, this.remaining);
+                this.digest.update(b, off, aHashed);
+                this.remaining -= aHashed;
+            }
+            return aCount;
+        }
+
+        private long remaining() {
+            return this.remaining;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return this.delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(final ReadListener readListener) {
+            this.delegate.setReadListener(readListener);
+        }
+    }
+}
@@ -2,11 +2,22 @@ package com.kaua.template.infrastructure.idempotency;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.kaua.template.infrastructure.configurations.json.Json;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
-public record IdempotencyKeyInput(int statusCode, Object body, Map<String, String> headers) implements Serializable {
+/**
+ * Response to be stored for an idempotency key, {@code fingerprint} is the hash of the request that
+ * produced it or {@code null} when the request is not fingerprinted.
+ */
+public record IdempotencyKeyInput(
+        int statusCode,
+        Object body,
+        Map<String, String> headers,
+        byte[] fingerprint
+) implements Serializable {
 
     @JsonCreator
     public IdempotencyKeyInput(
@@ -14,20 +25,41 @@ public record IdempotencyKeyInput(int statusCode, Object body, Map<String, Strin
             @JsonProperty("body") final Object body,
             @JsonProperty("headers") Map<String, String> headers
     ) {
-        this.statusCode = statusCode;
-        this.body = body;
-        this.headers = headers;
+        this(statusCode, body, headers, null);
     }
 
     public IdempotencyKeyInput(final Object body) {
         this(0, body, Map.of());
     }
 
+    /**
+     * Raw bytes of the body, the filter already hands over the bytes written to the client so
+     * only programmatic callers pay for the string or json encoding. The stores encode a captured
+     * body from its chunks through {@link IdempotencyKeyCodec#encode(IdempotencyKeyInput, IdempotencyKeyCompressor)}.
+     */
+    public byte[] bodyAsBytes() {
+        return switch (body) {
+            case byte[] aBytes -> aBytes;
+            case IdempotencyKeyCapturedBody aCaptured -> aCaptured.toByteArray();
+            case String aString -> aString.getBytes(StandardCharsets.UTF_8);
+            case null -> new byte[0];
+            default -> Json.writeValueAsBytes(body);
+        };
+    }
+
+    public String contentEncoding() {
+        return headers.entrySet().stream()
+                .filter(it -> it.getKey().equalsIgnoreCase("Content-Encoding"))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+
     @Override
     public String toString() {
         return "IdempotencyKeyInput(" +
                 "statusCode=" + statusCode +
-                ", body=" + body +
+                ", body=" + (body instanceof byte[] aBytes ? aBytes.length + " bytes" : body instanceof IdempotencyKeyCapturedBody aCaptured ? aCaptured.size() + " bytes" : body) +
                 ", headers=" + headers.size() +
                 ')';
     }
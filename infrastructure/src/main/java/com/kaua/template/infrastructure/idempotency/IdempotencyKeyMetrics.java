@@ -0,0 +1,143 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the idempotent requests, tagged by endpoint and storage type:
+ * <ul>
+ *     <li>{@code idempotency.requests}: what the claim of each request found (hit, miss, in progress...)</li>
+ *     <li>{@code idempotency.storage.latency}: time of the claims and stores seen by the request, as a histogram</li>
+ *     <li>{@code idempotency.storage.errors}: store operations that failed, by exception</li>
+ *     <li>{@code idempotency.response.size}: size of the stored responses before compression, as a histogram</li>
+ * </ul>
+ * The meters of an endpoint are registered on its first request and reused after it. The ones of the failures are
+ * registered only on the first failure, so the endpoints that never fail do not publish their histograms.
+ */
+public class IdempotencyKeyMetrics {
+
+    public enum Result {
+        HIT,
+        MISS,
+        IN_PROGRESS,
+        NOT_REPLAYABLE,
+        MISMATCH,
+        BYPASSED
+    }
+
+    public enum Operation {
+        CLAIM,
+        COMPLETE,
+        MARK_NOT_REPLAYABLE,
+        RELEASE
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final String storageType;
+    private final ConcurrentHashMap<String, EndpointMeters> endpoints = new ConcurrentHashMap<>();
+
+    public IdempotencyKeyMetrics(final MeterRegistry meterRegistry, final String storageType) {
+        this.meterRegistry = meterRegistry;
+        // same format of the storage gauges, e.g. in-memory is IN_MEMORY
+        this.storageType = Objects.requireNonNullElse(storageType, "none").toUpperCase(Locale.ROOT).replace('-', '_');
+    }
+
+    /**
+     * Metrics that go nowhere, a composite registry without registries only creates no-op meters.
+     */
+    public static IdempotencyKeyMetrics disabled() {
+        return new IdempotencyKeyMetrics(new CompositeMeterRegistry(), "none");
+    }
+
+    public void recordResult(final String endpoint, final Result result) {
+        meters(endpoint).results().get(result).increment();
+    }
+
+    /**
+     * Records the time of a store operation, a non-null {@code error} marks it as failed and is counted by type.
+     */
+    public void recordLatency(final String endpoint, final Operation operation, final long nanos, final Throwable error) {
+        if (error == null) {
+            meters(endpoint).successLatencies().get(operation).record(nanos, TimeUnit.NANOSECONDS);
+        } else {
+            // looked up in the registry on each failure, like the counter below
+            latency(endpoint, operation, "error").record(nanos, TimeUnit.NANOSECONDS);
+            Counter.builder("idempotency.storage.errors")
+                    .description("Idempotency key store operations that failed")
+                    .tag("endpoint", endpoint)
+                    .tag("storage_type", this.storageType)
+                    .tag("operation", tagValue(operation))
+                    .tag("exception", error.getClass().getSimpleName())
+                    .register(this.meterRegistry)
+                    .increment();
+        }
+    }
+
+    public void recordResponseSize(final String endpoint, final int bytes) {
+        meters(endpoint).responseSize().record(bytes);
+    }
+
+    private EndpointMeters meters(final String endpoint) {
+        final var aMeters = this.endpoints.get(endpoint);
+        return aMeters != null ? aMeters : this.endpoints.computeIfAbsent(endpoint, this::register);
+    }
+
+    private EndpointMeters register(final String endpoint) {
+        final var aResults = new EnumMap<Result, Counter>(Result.class);
+        for (final var aResult : Result.values()) {
+            aResults.put(aResult, Counter.builder("idempotency.requests")
+                    .description("Idempotent requests by what their claim found")
+                    .tag("endpoint", endpoint)
+                    .tag("storage_type", this.storageType)
+                    .tag("result", tagValue(aResult))
+                    .register(this.meterRegistry));
+        }
+
+        final var aSuccessLatencies = new EnumMap<Operation, Timer>(Operation.class);
+        for (final var aOperation : Operation.values()) {
+            aSuccessLatencies.put(aOperation, latency(endpoint, aOperation, "success"));
+        }
+
+        final var aResponseSize = DistributionSummary.builder("idempotency.response.size")
+                .description("Size of the stored responses before compression")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .tag("storage_type", this.storageType)
+                .publishPercentileHistogram()
+                .register(this.meterRegistry);
+
+        return new EndpointMeters(aResults, aSuccessLatencies, aResponseSize);
+    }
+
+    private Timer latency(final String endpoint, final Operation operation, final String outcome) {
+        return Timer.builder("idempotency.storage.latency")
+                .description("Time of the idempotency key store operations seen by the request")
+                .tag("endpoint", endpoint)
+                .tag("storage_type", this.storageType)
+                .tag("operation", tagValue(operation))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(this.meterRegistry);
+    }
+
+    private static String tagValue(final Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    private record EndpointMeters(
+            Map<Result, Counter> results,
+            Map<Operation, Timer> successLatencies,
+            DistributionSummary responseSize
+    ) {
+    }
+}
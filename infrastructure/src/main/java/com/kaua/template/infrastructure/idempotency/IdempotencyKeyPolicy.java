@@ -0,0 +1,68 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Values of an {@link IdempotencyKey} annotation, read once when the endpoints are indexed. The
+ * {@code endpoint} names the annotated handler ({@code Controller#method}) in the metrics.
+ */
+public record IdempotencyKeyPolicy(
+        long ttl,
+        TimeUnit timeUnit,
+        String endpoint,
+        long maxBodySize,
+        Set<HttpStatus.Series> storedStatus,
+        IdempotencyKey.Scope scope
+) {
+
+    private static final String ANONYMOUS = "anonymous";
+
+    public static IdempotencyKeyPolicy from(final IdempotencyKey annotation, final String endpoint) {
+        final var aStoredStatus = EnumSet.noneOf(HttpStatus.Series.class);
+        aStoredStatus.addAll(Set.of(annotation.storedStatus()));
+
+        return new IdempotencyKeyPolicy(
+                annotation.ttl(),
+                annotation.timeUnit(),
+                endpoint,
+                annotation.maxBodySize(),
+                aStoredStatus,
+                annotation.scope()
+        );
+    }
+
+    /**
+     * Maximum size of the stored body, the global limit when the annotation does not set one.
+     */
+    public long maxBodySize(final long defaultMaxBodySize) {
+        return this.maxBodySize >= 0 ? this.maxBodySize : defaultMaxBodySize;
+    }
+
+    public boolean stores(final int statusCode) {
+        final var aSeries = HttpStatus.Series.resolve(statusCode);
+        return aSeries != null && this.storedStatus.contains(aSeries);
+    }
+
+    /**
+     * The key as stored, combined with what the scope requires. The combined part is length prefixed, so a
+     * client can not pick a key that collides with the key of another principal or path.
+     */
+    public String scopedKey(final HttpServletRequest request, final String idempotencyKey) {
+        return switch (this.scope) {
+            case GLOBAL -> idempotencyKey;
+            case PRINCIPAL -> scoped("principal", request.getUserPrincipal() != null
+                    ? request.getUserPrincipal().getName()
+                    : ANONYMOUS, idempotencyKey);
+            case PATH -> scoped("path", request.getMethod() + " " + request.getRequestURI(), idempotencyKey);
+        };
+    }
+
+    private static String scoped(final String scope, final String value, final String idempotencyKey) {
+        return scope + ":" + value.length() + ":" + value + ":" + idempotencyKey;
+    }
+}
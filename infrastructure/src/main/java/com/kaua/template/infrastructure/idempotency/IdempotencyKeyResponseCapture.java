@@ -0,0 +1,144 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Response wrapper that streams the body to the client as it is written while keeping a bounded
+ * copy of it for the idempotency store, unlike {@code ContentCachingResponseWrapper} nothing is
+ * held back until the handler returns.
+ */
+public class IdempotencyKeyResponseCapture extends HttpServletResponseWrapper {
+
+    private final IdempotencyKeyCaptureBuffer captureBuffer;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    public IdempotencyKeyResponseCapture(final HttpServletResponse response, final long maxCaptureSize) {
+        super(response);
+        this.captureBuffer = new IdempotencyKeyCaptureBuffer(maxCaptureSize);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (this.writer != null) {
+            throw new IllegalStateException("getWriter() has already been called for this response");
+        }
+        return teeOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (this.writer == null) {
+            if (this.outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called for this response");
+            }
+            this.writer = new PrintWriter(new OutputStreamWriter(teeOutputStream(), getCharacterEncoding()));
+        }
+        return this.writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        this.captureBuffer.reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        this.captureBuffer.reset();
+    }
+
+    /**
+     * Flushes any pending characters of the writer to the client and the capture buffer.
+     */
+    public void finish() {
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+    }
+
+    public boolean isReplayable() {
+        return !this.captureBuffer.isOverflowed();
+    }
+
+    public byte[] getCapturedBody() {
+        return this.captureBuffer.toByteArray();
+    }
+
+    /**
+     * The captured body in the chunks it was written to, for the store to encode without joining them.
+     */
+    public IdempotencyKeyCapturedBody getCapturedBodyChunks() {
+        return this.captureBuffer.captured();
+    }
+
+    public void release() {
+        this.captureBuffer.release();
+    }
+
+    private ServletOutputStream teeOutputStream() throws IOException {
+        if (this.outputStream == null) {
+            this.outputStream = new TeeOutputStream(super.getOutputStream(), this.captureBuffer);
+        }
+        return this.outputStream;
+    }
+
+    private static class TeeOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+        private final IdempotencyKeyCaptureBuffer captureBuffer;
+
+        private TeeOutputStream(final ServletOutputStream delegate, final IdempotencyKeyCaptureBuffer captureBuffer) {
+            this.delegate = delegate;
+            this.captureBuffer = captureBuffer;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.delegate.write(b);
+            this.captureBuffer.write(b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            this.delegate.write(b, off, len);
+            this.captureBuffer.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(final WriteListener writeListener) {
+            this.delegate.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.kaua.template.infrastructure.idempotency;
+
+public enum IdempotencyKeyStatus {
+
+    IN_PROGRESS,
+    COMPLETED,
+    NOT_REPLAYABLE
+}
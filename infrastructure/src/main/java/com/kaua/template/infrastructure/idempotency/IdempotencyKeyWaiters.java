@@ -0,0 +1,182 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.infrastructure.idempotency.gateways.AsyncIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Parks the duplicate requests of an idempotency key that is still {@code IN_PROGRESS} until the request
+ * that owns the key finishes, so they receive the stored response instead of a conflict.
+ * <p>
+ * The owner signals the waiters of its own instance when it finishes, waiters of a key owned by another
+ * instance re-check the storage every {@code pollInterval}. A waiter gives up after {@code maxWait} and
+ * the key is reported as still in progress.
+ * <p>
+ * {@link #await} parks the calling thread and is meant for the blocking filter path. The async filter path uses
+ * {@link #awaitAsync}, which reads the storage through the non-blocking gateway and waits on a timer, so no
+ * worker thread is held by a duplicate request while the key is in progress.
+ */
+public class IdempotencyKeyWaiters {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeyWaiters.class);
+
+    private final ConcurrentHashMap<String, Waiter> waiters = new ConcurrentHashMap<>();
+
+    private final IdempotencyKeyGateway idempotencyKeyGateway;
+    private final boolean enabled;
+    private final long maxWaitNanos;
+    private final long pollIntervalNanos;
+
+    public IdempotencyKeyWaiters(
+            final IdempotencyKeyGateway idempotencyKeyGateway,
+            final boolean enabled,
+            final Duration maxWait,
+            final Duration pollInterval
+    ) {
+        this.idempotencyKeyGateway = Objects.requireNonNull(idempotencyKeyGateway);
+        this.enabled = enabled;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.pollIntervalNanos = pollInterval.toNanos();
+    }
+
+    public static IdempotencyKeyWaiters disabled(final IdempotencyKeyGateway idempotencyKeyGateway) {
+        return new IdempotencyKeyWaiters(idempotencyKeyGateway, false, Duration.ZERO, Duration.ZERO);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Waits until the key leaves {@code IN_PROGRESS}. When the key is gone (the owner failed and released it
+     * or it expired) the key is claimed again and the returned claim may be acquired by the caller.
+     */
+    public IdempotencyKeyClaim await(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) throws InterruptedException {
+        final var aDeadline = System.nanoTime() + this.maxWaitNanos;
+
+        while (true) {
+            // registered before reading the storage so a signal sent in between is not lost
+            final var aWaiter = register(idempotencyKey);
+
+            try {
+                final var aClaim = this.idempotencyKeyGateway.claim(idempotencyKey, ttl, timeUnit);
+                final var aRemaining = aDeadline - System.nanoTime();
+
+                if (!aClaim.isInProgress() || aRemaining <= 0) {
+                    return aClaim;
+                }
+
+                try {
+                    aWaiter.signal().get(Math.min(aRemaining, this.pollIntervalNanos), TimeUnit.NANOSECONDS);
+                } catch (final TimeoutException e) {
+                    log.trace("Idempotency key still in progress, checking the storage again [key:{}]", idempotencyKey);
+                } catch (final ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            } finally {
+                unregister(idempotencyKey, aWaiter);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #await} without blocking the caller, the returned stage completes with the claim once the key
+     * leaves {@code IN_PROGRESS} or the wait gives up.
+     */
+    public CompletableFuture<IdempotencyKeyClaim> awaitAsync(
+            final AsyncIdempotencyKeyGateway asyncIdempotencyKeyGateway,
+            final String idempotencyKey,
+            final long ttl,
+            final TimeUnit timeUnit
+    ) {
+        return awaitAsync(asyncIdempotencyKeyGateway, idempotencyKey, ttl, timeUnit, System.nanoTime() + this.maxWaitNanos);
+    }
+
+    private CompletableFuture<IdempotencyKeyClaim> awaitAsync(
+            final AsyncIdempotencyKeyGateway asyncIdempotencyKeyGateway,
+            final String idempotencyKey,
+            final long ttl,
+            final TimeUnit timeUnit,
+            final long deadline
+    ) {
+        // registered before reading the storage so a signal sent in between is not lost
+        final var aWaiter = register(idempotencyKey);
+        final var aClaim = asyncIdempotencyKeyGateway.claim(idempotencyKey, ttl, timeUnit).toCompletableFuture();
+
+        final var aCheckAgain = aClaim.thenCompose(claim -> {
+            final var aRemaining = deadline - System.nanoTime();
+
+            if (!claim.isInProgress() || aRemaining <= 0) {
+                return CompletableFuture.completedFuture(false);
+            }
+
+            // a copy, the timeout must not complete the signal shared with the other waiters of the key
+            return aWaiter.signal().copy()
+                    .thenApply(ignored -> true)
+                    .completeOnTimeout(true, Math.min(aRemaining, this.pollIntervalNanos), TimeUnit.NANOSECONDS);
+        });
+
+        return aCheckAgain
+                .whenComplete((again, error) -> unregister(idempotencyKey, aWaiter))
+                .thenCompose(again -> again
+                        ? awaitAsync(asyncIdempotencyKeyGateway, idempotencyKey, ttl, timeUnit, deadline)
+                        : aClaim);
+    }
+
+    /**
+     * Wakes the requests waiting for the key on this instance.
+     */
+    public void signal(final String idempotencyKey) {
+        if (!this.enabled) {
+            return;
+        }
+
+        final var aWaiter = this.waiters.remove(idempotencyKey);
+
+        if (aWaiter != null) {
+            aWaiter.signal().complete(null);
+        }
+    }
+
+    public int size() {
+        return this.waiters.size();
+    }
+
+    private Waiter register(final String idempotencyKey) {
+        return this.waiters.compute(idempotencyKey, (key, current) -> {
+            final var aWaiter = current != null ? current : new Waiter(new CompletableFuture<>());
+            aWaiter.count++;
+            return aWaiter;
+        });
+    }
+
+    private void unregister(final String idempotencyKey, final Waiter waiter) {
+        // a signaled waiter was already removed and may have been replaced by a new one
+        this.waiters.computeIfPresent(idempotencyKey, (key, current) ->
+                current != waiter || --current.count > 0 ? current : null);
+    }
+
+    private static final class Waiter {
+
+        private final CompletableFuture<Void> signal;
+        // guarded by the map compute of the key
+        private int count;
+
+        private Waiter(final CompletableFuture<Void> signal) {
+            this.signal = signal;
+        }
+
+        CompletableFuture<Void> signal() {
+            return signal;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking variant of {@link IdempotencyKeyGateway} with the operations of the request path, the stages
+ * complete on the threads of the store client, so the callers must not block inside their callbacks.
+ */
+public interface AsyncIdempotencyKeyGateway {
+
+    CompletionStage<Optional<IdempotencyKeyDTO>> find(String idempotencyKey);
+
+    /**
+     * @see IdempotencyKeyGateway#claim(String, long, TimeUnit)
+     */
+    CompletionStage<IdempotencyKeyClaim> claim(String idempotencyKey, long ttl, TimeUnit timeUnit);
+
+    /**
+     * @see IdempotencyKeyGateway#complete(String, IdempotencyKeyInput, long, TimeUnit)
+     */
+    CompletionStage<Void> complete(String idempotencyKey, IdempotencyKeyInput body, long ttl, TimeUnit timeUnit);
+
+    /**
+     * @see IdempotencyKeyGateway#markNotReplayable(String, int, long, TimeUnit)
+     */
+    CompletionStage<Void> markNotReplayable(String idempotencyKey, int statusCode, long ttl, TimeUnit timeUnit);
+
+    /**
+     * @see IdempotencyKeyGateway#release(String)
+     */
+    CompletionStage<Void> release(String idempotencyKey);
+}
@@ -0,0 +1,399 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyAlreadyExistsException;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyStoreUnavailableException;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompletion;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Protects the request threads from a slow or unavailable store (usually Redis). Every call to the delegate
+ * is bounded by a timeout, reads ({@code find} and {@code claim}) and writes have their own, and after
+ * {@code failureThreshold} consecutive failures the circuit opens: the delegate is not called for
+ * {@code openDuration}, then a single trial call decides if it closes again.
+ * <p>
+ * While the circuit is open, or when a call fails, the operation goes to the {@code fallback} store when there
+ * is one, so the keys are still deduplicated by this instance during the outage. Without a fallback an
+ * {@link IdempotencyKeyStoreUnavailableException} is thrown and the caller decides whether the request is
+ * processed without the key or rejected. A key claimed or written in the fallback is remembered for its ttl, its
+ * next claims and writes keep going to the fallback even after the circuit closes, so a retry replays the response
+ * of the fallback instead of claiming the key again in the delegate.
+ * <p>
+ * A claim that times out is not cancelled in the delegate (e.g. the Lua script keeps running in Redis), when it
+ * lands afterwards and acquires the key, the key is released there, otherwise it would stay in progress for its
+ * whole ttl while the request completes it in the fallback.
+ */
+public class CircuitBreakerIdempotencyKeyGateway implements IdempotencyKeyGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreakerIdempotencyKeyGateway.class);
+
+    // the caller stops waiting on timeout, the call itself finishes in its own virtual thread
+    private static final Executor CALL_EXECUTOR = task -> Thread.ofVirtual().name("idempotency-key-call").start(task);
+    private static final long DEFAULT_FALLBACK_MAX_ENTRIES = 10_000;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final IdempotencyKeyGateway delegate;
+    private final IdempotencyKeyGateway fallback;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final Duration readTimeout;
+    private final Duration writeTimeout;
+    // keys claimed or written in the fallback, with their ttl in nanos
+    private final Cache<String, Long> fallbackKeys;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder fallbackCount = new LongAdder();
+
+    private volatile long openedAt;
+
+    public CircuitBreakerIdempotencyKeyGateway(
+            final IdempotencyKeyGateway delegate,
+            final IdempotencyKeyGateway fallback,
+            final int failureThreshold,
+            final Duration openDuration,
+            final Duration readTimeout,
+            final Duration writeTimeout
+    ) {
+        this(delegate, fallback, failureThreshold, openDuration, readTimeout, writeTimeout, DEFAULT_FALLBACK_MAX_ENTRIES);
+    }
+
+    /**
+     * @param fallback           store used while the delegate is unavailable, {@code null} to fail the calls instead
+     * @param readTimeout        maximum wait of {@code find} and {@code claim}, zero waits for the delegate
+     * @param writeTimeout       maximum wait of the other operations, zero waits for the delegate
+     * @param fallbackMaxEntries maximum number of keys remembered as held by the fallback
+     */
+    public CircuitBreakerIdempotencyKeyGateway(
+            final IdempotencyKeyGateway delegate,
+            final IdempotencyKeyGateway fallback,
+            final int failureThreshold,
+            final Duration openDuration,
+            final Duration readTimeout,
+            final Duration writeTimeout,
+            final long fallbackMaxEntries
+    ) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("The failure threshold must be positive");
+        }
+
+        this.delegate = Objects.requireNonNull(delegate);
+        this.fallback = fallback;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.readTimeout = Objects.requireNonNull(readTimeout);
+        this.writeTimeout = Objects.requireNonNull(writeTimeout);
+        this.fallbackKeys = Caffeine.newBuilder()
+                .maximumSize(fallbackMaxEntries)
+                .expireAfter(new FallbackKeyExpiry())
+                .build();
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        write(idempotencyKey, ttl, timeUnit, gateway -> {
+            gateway.save(idempotencyKey, ttl, timeUnit);
+            return null;
+        });
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        write(idempotencyKey, ttl, timeUnit, gateway -> {
+            gateway.save(idempotencyKey, body, ttl, timeUnit);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<IdempotencyKeyDTO> find(final String idempotencyKey) {
+        return call(this.readTimeout, gateway -> gateway.find(idempotencyKey), null);
+    }
+
+    @Override
+    public IdempotencyKeyClaim claim(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        if (heldByFallback(idempotencyKey)) {
+            // the delegate never saw this key, claiming it there would process the request again
+            final var aClaim = this.fallback.claim(idempotencyKey, ttl, timeUnit);
+            if (aClaim.acquired()) {
+                holdInFallback(idempotencyKey, ttl, timeUnit);
+            }
+            return aClaim;
+        }
+
+        return call(
+                this.readTimeout,
+                gateway -> {
+                    final var aClaim = gateway.claim(idempotencyKey, ttl, timeUnit);
+                    if (gateway == this.fallback && aClaim.acquired()) {
+                        holdInFallback(idempotencyKey, ttl, timeUnit);
+                    }
+                    return aClaim;
+                },
+                claim -> {
+                    if (claim.acquired()) {
+                        releaseLateClaim(idempotencyKey);
+                    }
+                }
+        );
+    }
+
+    @Override
+    public void complete(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        write(idempotencyKey, ttl, timeUnit, gateway -> {
+            gateway.complete(idempotencyKey, body, ttl, timeUnit);
+            return null;
+        });
+    }
+
+    @Override
+    public void markNotReplayable(final String idempotencyKey, final int statusCode, final long ttl, final TimeUnit timeUnit) {
+        write(idempotencyKey, ttl, timeUnit, gateway -> {
+            gateway.markNotReplayable(idempotencyKey, statusCode, ttl, timeUnit);
+            return null;
+        });
+    }
+
+    @Override
+    public void release(final String idempotencyKey) {
+        if (this.fallbackKeys.asMap().remove(idempotencyKey) != null) {
+            this.fallback.release(idempotencyKey);
+            return;
+        }
+
+        call(this.writeTimeout, gateway -> {
+            gateway.release(idempotencyKey);
+            return null;
+        }, null);
+    }
+
+    @Override
+    public void completeAll(final List<IdempotencyKeyCompletion> completions) {
+        // the keys claimed in the fallback are completed there, the batch keeps only the delegate ones
+        final var aByStore = completions.stream()
+                .collect(Collectors.partitioningBy(completion -> heldByFallback(completion.idempotencyKey())));
+
+        aByStore.get(true).forEach(completion -> {
+            completion.applyTo(this.fallback);
+            holdInFallback(completion.idempotencyKey(), completion.ttl(), completion.timeUnit());
+        });
+
+        if (!aByStore.get(false).isEmpty()) {
+            call(this.writeTimeout, gateway -> {
+                gateway.completeAll(aByStore.get(false));
+                if (gateway == this.fallback) {
+                    aByStore.get(false).forEach(completion ->
+                            holdInFallback(completion.idempotencyKey(), completion.ttl(), completion.timeUnit()));
+                }
+                return null;
+            }, null);
+        }
+    }
+
+    public State getState() {
+        return this.state.get();
+    }
+
+    public long getRejectedCount() {
+        return this.rejectedCount.sum();
+    }
+
+    public long getFallbackCount() {
+        return this.fallbackCount.sum();
+    }
+
+    private void write(
+            final String idempotencyKey,
+            final long ttl,
+            final TimeUnit timeUnit,
+            final Function<IdempotencyKeyGateway, Void> operation
+    ) {
+        if (heldByFallback(idempotencyKey)) {
+            operation.apply(this.fallback);
+            holdInFallback(idempotencyKey, ttl, timeUnit);
+            return;
+        }
+
+        call(this.writeTimeout, gateway -> {
+            operation.apply(gateway);
+            if (gateway == this.fallback) {
+                holdInFallback(idempotencyKey, ttl, timeUnit);
+            }
+            return null;
+        }, null);
+    }
+
+    private boolean heldByFallback(final String idempotencyKey) {
+        return this.fallback != null && this.fallbackKeys.getIfPresent(idempotencyKey) != null;
+    }
+
+    private void holdInFallback(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        this.fallbackKeys.put(idempotencyKey, timeUnit.toNanos(ttl));
+    }
+
+    /**
+     * @param lateResult receives the result of a call that completes after its timeout, {@code null} when a late
+     *                   result needs no handling
+     */
+    private <T> T call(
+            final Duration timeout,
+            final Function<IdempotencyKeyGateway, T> operation,
+            final Consumer<T> lateResult
+    ) {
+        if (!tryAcquirePermission()) {
+            this.rejectedCount.increment();
+            return onUnavailable(operation, null);
+        }
+
+        try {
+            final var aResult = invoke(timeout, operation, lateResult);
+            onSuccess();
+            return aResult;
+        } catch (final IdempotencyKeyAlreadyExistsException e) {
+            // an answer of the store, not a failure of it
+            onSuccess();
+            throw e;
+        } catch (final RuntimeException | TimeoutException e) {
+            onFailure(e);
+            return onUnavailable(operation, e);
+        }
+    }
+
+    private <T> T invoke(
+            final Duration timeout,
+            final Function<IdempotencyKeyGateway, T> operation,
+            final Consumer<T> lateResult
+    ) throws TimeoutException {
+        if (timeout.isZero() || timeout.isNegative()) {
+            return operation.apply(this.delegate);
+        }
+
+        final var aCall = CompletableFuture.supplyAsync(() -> operation.apply(this.delegate), CALL_EXECUTOR);
+        try {
+            return aCall.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (final ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException aFailure ? aFailure : new IllegalStateException(e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            aCall.cancel(true);
+            throw new IllegalStateException(e);
+        } catch (final TimeoutException e) {
+            if (lateResult != null) {
+                aCall.thenAccept(lateResult);
+            } else {
+                aCall.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    // runs in the virtual thread of the late call, the caller already went on without the delegate
+    private void releaseLateClaim(final String idempotencyKey) {
+        try {
+            this.delegate.release(idempotencyKey);
+            log.debug("Idempotency key claimed after the timeout, released in the store [key:{}]", idempotencyKey);
+        } catch (final RuntimeException e) {
+            log.warn("Failed to release an idempotency key claimed after the timeout, it stays until its ttl [key:{}]",
+                    idempotencyKey, e);
+        }
+    }
+
+    private <T> T onUnavailable(final Function<IdempotencyKeyGateway, T> operation, final Exception cause) {
+        if (this.fallback == null) {
+            throw new IdempotencyKeyStoreUnavailableException(cause);
+        }
+
+        this.fallbackCount.increment();
+        return operation.apply(this.fallback);
+    }
+
+    private boolean tryAcquirePermission() {
+        final var aState = this.state.get();
+
+        if (aState == State.CLOSED) {
+            return true;
+        }
+
+        // only the caller that moves the circuit to half open makes the trial call
+        return aState == State.OPEN
+                && System.nanoTime() - this.openedAt >= this.openDurationNanos
+                && this.state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    private void onSuccess() {
+        this.consecutiveFailures.set(0);
+
+        if (this.state.get() != State.CLOSED && this.state.getAndSet(State.CLOSED) != State.CLOSED) {
+            log.info("Idempotency key store available again, circuit closed");
+        }
+    }
+
+    private void onFailure(final Exception cause) {
+        if (this.state.get() == State.HALF_OPEN) {
+            open(cause);
+            return;
+        }
+
+        if (this.consecutiveFailures.incrementAndGet() >= this.failureThreshold && this.state.get() == State.CLOSED) {
+            open(cause);
+            return;
+        }
+
+        log.debug("Idempotency key store call failed [failures:{}]", this.consecutiveFailures.get(), cause);
+    }
+
+    private void open(final Exception cause) {
+        // the open time is visible before the state, so no caller reads a stale one after the switch
+        this.openedAt = System.nanoTime();
+        if (this.state.getAndSet(State.OPEN) != State.OPEN) {
+            log.warn("Idempotency key store unavailable, circuit opened for {}ms [failures:{}]",
+                    TimeUnit.NANOSECONDS.toMillis(this.openDurationNanos), this.consecutiveFailures.get(), cause);
+        }
+    }
+
+    private static class FallbackKeyExpiry implements Expiry<String, Long> {
+
+        @Override
+        public long expireAfterCreate(final String key, final Long ttlNanos, final long currentTime) {
+            return ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(final String key, final Long ttlNanos, final long currentTime, final long currentDuration) {
+            return ttlNanos;
+        }
+
+        @Override
+        public long expireAfterRead(final String key, final Long ttlNanos, final long currentTime, final long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts a blocking gateway to {@link AsyncIdempotencyKeyGateway} by running its operations on an executor.
+ * Stores that never wait on I/O (the in-memory one) run in the caller thread, the others run on virtual
+ * threads, so the wait parks a virtual thread instead of a request thread.
+ */
+public class ExecutorAsyncIdempotencyKeyGateway implements AsyncIdempotencyKeyGateway, AutoCloseable {
+
+    private final IdempotencyKeyGateway delegate;
+    private final Executor executor;
+
+    public ExecutorAsyncIdempotencyKeyGateway(final IdempotencyKeyGateway delegate, final Executor executor) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Runs the operations in the caller thread, the returned stages are already completed.
+     */
+    public static ExecutorAsyncIdempotencyKeyGateway direct(final IdempotencyKeyGateway delegate) {
+        return new ExecutorAsyncIdempotencyKeyGateway(delegate, Runnable::run);
+    }
+
+    public static ExecutorAsyncIdempotencyKeyGateway virtualThreads(final IdempotencyKeyGateway delegate) {
+        return new ExecutorAsyncIdempotencyKeyGateway(delegate, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Override
+    public CompletionStage<Optional<IdempotencyKeyDTO>> find(final String idempotencyKey) {
+        return CompletableFuture.supplyAsync(() -> this.delegate.find(idempotencyKey), this.executor);
+    }
+
+    @Override
+    public CompletionStage<IdempotencyKeyClaim> claim(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        return CompletableFuture.supplyAsync(() -> this.delegate.claim(idempotencyKey, ttl, timeUnit), this.executor);
+    }
+
+    @Override
+    public CompletionStage<Void> complete(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        return CompletableFuture.runAsync(() -> this.delegate.complete(idempotencyKey, body, ttl, timeUnit), this.executor);
+    }
+
+    @Override
+    public CompletionStage<Void> markNotReplayable(final String idempotencyKey, final int statusCode, final long ttl, final TimeUnit timeUnit) {
+        return CompletableFuture.runAsync(() -> this.delegate.markNotReplayable(idempotencyKey, statusCode, ttl, timeUnit), this.executor);
+    }
+
+    @Override
+    public CompletionStage<Void> release(final String idempotencyKey) {
+        return CompletableFuture.runAsync(() -> this.delegate.release(idempotencyKey), this.executor);
+    }
+
+    /**
+     * Waits for the operations still running when the executor is owned by this adapter.
+     */
+    @Override
+    public void close() {
+        if (this.executor instanceof ExecutorService aExecutorService) {
+            aExecutorService.close();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.kaua.template.infrastructure.idempotency.gateways;
 
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompletion;
 import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
 import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
@@ -13,4 +16,34 @@ public interface IdempotencyKeyGateway {
     void save(String idempotencyKey, IdempotencyKeyInput body, long ttl, TimeUnit timeUnit);
 
     Optional<IdempotencyKeyDTO> find(String idempotencyKey);
+
+    /**
+     * Atomically marks the key as {@code IN_PROGRESS} if it does not exist yet, otherwise
+     * returns the stored entry, in a single store operation.
+     */
+    IdempotencyKeyClaim claim(String idempotencyKey, long ttl, TimeUnit timeUnit);
+
+    /**
+     * Replaces a claimed key with the final response, marking it as {@code COMPLETED}.
+     */
+    void complete(String idempotencyKey, IdempotencyKeyInput body, long ttl, TimeUnit timeUnit);
+
+    /**
+     * Replaces a claimed key with a marker telling that the request was processed but its response
+     * was not stored (e.g. too large), so duplicates are rejected instead of processed again.
+     */
+    void markNotReplayable(String idempotencyKey, int statusCode, long ttl, TimeUnit timeUnit);
+
+    /**
+     * Removes a claimed key whose response must not be stored (e.g. a server error), so a retry with the same
+     * key processes the request again instead of waiting for the ttl.
+     */
+    void release(String idempotencyKey);
+
+    /**
+     * Stores the final state of many claimed keys, stores that support it send them in a single round trip.
+     */
+    default void completeAll(final List<IdempotencyKeyCompletion> completions) {
+        completions.forEach(completion -> completion.applyTo(this));
+    }
 }
@@ -1,28 +1,78 @@
 package com.kaua.template.infrastructure.idempotency.gateways;
 
-import com.kaua.template.infrastructure.configurations.json.Json;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyAlreadyExistsException;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCodec;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompressor;
 import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
 import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
 import com.kaua.template.infrastructure.utils.ObservationHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class InMemoryIdempotencyKeyGateway implements IdempotencyKeyGateway {
 
     private static final Logger log = LoggerFactory.getLogger(InMemoryIdempotencyKeyGateway.class);
     private static final String IDEMPOTENCY_SPAN_NAME = "cache.idempotency_key";
 
-    private final ConcurrentHashMap<String, String> idempotencyKeyMap;
+    public static final long DEFAULT_MAX_ENTRIES = 10_000;
 
+    private final Cache<String, Entry> idempotencyKeyCache;
+
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    private final IdempotencyKeyCompressor compressor;
     private final ObservationHelper observationHelper;
 
-    public InMemoryIdempotencyKeyGateway(ObservationHelper observationHelper) {
-        this.idempotencyKeyMap = new ConcurrentHashMap<>();
+    public InMemoryIdempotencyKeyGateway(final ObservationHelper observationHelper) {
+        this(observationHelper, DEFAULT_MAX_ENTRIES, 0);
+    }
+
+    public InMemoryIdempotencyKeyGateway(
+            final ObservationHelper observationHelper,
+            final long maxEntries,
+            final long maxBytes
+    ) {
+        this(observationHelper, maxEntries, maxBytes, IdempotencyKeyCompressor.none());
+    }
+
+    /**
+     * @param maxEntries maximum number of keys kept, used when {@code maxBytes} is not positive
+     * @param maxBytes   approximate byte budget for keys and stored responses, ignored when not positive
+     */
+    public InMemoryIdempotencyKeyGateway(
+            final ObservationHelper observationHelper,
+            final long maxEntries,
+            final long maxBytes,
+            final IdempotencyKeyCompressor compressor
+    ) {
+        final var aBuilder = Caffeine.newBuilder()
+                .expireAfter(new EntryExpiry())
+                // expired entries are swept in background instead of waiting for the next access
+                .scheduler(Scheduler.systemScheduler())
+                .executor(Runnable::run)
+                .evictionListener(this::onEviction);
+
+        if (maxBytes > 0) {
+            aBuilder.maximumWeight(maxBytes)
+                    .weigher((String key, Entry entry) -> key.length() + entry.value().length);
+        } else {
+            aBuilder.maximumSize(maxEntries);
+        }
+
+        this.idempotencyKeyCache = aBuilder.build();
+        this.compressor = Objects.requireNonNull(compressor);
         this.observationHelper = observationHelper;
     }
 
@@ -38,9 +88,14 @@ public class InMemoryIdempotencyKeyGateway implements IdempotencyKeyGateway {
 
                     log.debug("Saving idempotency key: {}", idempotencyKey);
 
-                    this.idempotencyKeyMap.put(idempotencyKey, Json.writeValueAsString(
-                            new IdempotencyKeyDTO(0, "", Map.of())
-                    ));
+                    final var aCurrent = this.idempotencyKeyCache.asMap().putIfAbsent(idempotencyKey, Entry.of(IdempotencyKeyCodec.encode(
+                            IdempotencyKeyDTO.inProgress()
+                    ), ttl, timeUnit));
+
+                    if (aCurrent != null) {
+                        log.debug("Idempotency key already exists: {}", idempotencyKey);
+                        throw new IdempotencyKeyAlreadyExistsException();
+                    }
 
                     log.info("Idempotency key saved: {}", idempotencyKey);
                 }
@@ -58,7 +113,13 @@ public class InMemoryIdempotencyKeyGateway implements IdempotencyKeyGateway {
                     span.setAttribute("storage_type", "IN_MEMORY");
 
                     log.debug("Saving idempotency key with body: {}", idempotencyKey);
-                    this.idempotencyKeyMap.put(idempotencyKey, Json.writeValueAsString(body));
+                    final var aCurrent = this.idempotencyKeyCache.asMap().putIfAbsent(idempotencyKey, Entry.of(IdempotencyKeyCodec.encode(body, this.compressor), ttl, timeUnit));
+
+                    if (aCurrent != null) {
+                        log.debug("Idempotency key already exists: {}", idempotencyKey);
+                        throw new IdempotencyKeyAlreadyExistsException();
+                    }
+
                     log.info("Idempotency key saved with body: {}", idempotencyKey);
                 }
         );
@@ -72,9 +133,133 @@ public class InMemoryIdempotencyKeyGateway implements IdempotencyKeyGateway {
                     span.setAttribute("idempotency", idempotencyKey);
                     span.setAttribute("storage_type", "IN_MEMORY");
 
-                    return Optional.ofNullable(this.idempotencyKeyMap.get(idempotencyKey))
-                            .map(body -> Json.readValue(body, IdempotencyKeyDTO.class));
+                    return Optional.ofNullable(this.idempotencyKeyCache.getIfPresent(idempotencyKey))
+                            .map(entry -> IdempotencyKeyCodec.decode(entry.value()));
+                }
+        );
+    }
+
+    @Override
+    public IdempotencyKeyClaim claim(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        return this.observationHelper.observationWithReturn(
+                IDEMPOTENCY_SPAN_NAME.concat(".claim_key"),
+                (span) -> {
+                    span.setAttribute("idempotency", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "IN_MEMORY");
+
+                    final var aCurrent = this.idempotencyKeyCache.asMap().putIfAbsent(
+                            idempotencyKey,
+                            Entry.of(IdempotencyKeyCodec.encode(IdempotencyKeyDTO.inProgress()), ttl, timeUnit)
+                    );
+
+                    if (aCurrent == null) {
+                        log.debug("Idempotency key claimed: {}", idempotencyKey);
+                        return IdempotencyKeyClaim.acquire();
+                    }
+
+                    return IdempotencyKeyClaim.existing(IdempotencyKeyCodec.decode(aCurrent.value()));
                 }
         );
     }
+
+    @Override
+    public void complete(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".complete_key"),
+                (span) -> {
+                    span.setAttribute("idempotency", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "IN_MEMORY");
+
+                    this.idempotencyKeyCache.put(
+                            idempotencyKey,
+                            Entry.of(IdempotencyKeyCodec.encode(body, this.compressor), ttl, timeUnit)
+                    );
+                    log.info("Idempotency key completed: {}", idempotencyKey);
+                }
+        );
+    }
+
+    @Override
+    public void markNotReplayable(final String idempotencyKey, final int statusCode, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".mark_not_replayable_key"),
+                (span) -> {
+                    span.setAttribute("idempotency", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "IN_MEMORY");
+
+                    this.idempotencyKeyCache.put(
+                            idempotencyKey,
+                            Entry.of(IdempotencyKeyCodec.encode(IdempotencyKeyDTO.notReplayable(statusCode)), ttl, timeUnit)
+                    );
+                    log.info("Idempotency key marked as not replayable: {}", idempotencyKey);
+                }
+        );
+    }
+
+    @Override
+    public void release(final String idempotencyKey) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".release_key"),
+                (span) -> {
+                    span.setAttribute("idempotency", idempotencyKey);
+                    span.setAttribute("storage_type", "IN_MEMORY");
+
+                    this.idempotencyKeyCache.invalidate(idempotencyKey);
+                    log.info("Idempotency key released: {}", idempotencyKey);
+                }
+        );
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount.sum();
+    }
+
+    public long getExpirationCount() {
+        return this.expirationCount.sum();
+    }
+
+    public long size() {
+        this.idempotencyKeyCache.cleanUp();
+        return this.idempotencyKeyCache.estimatedSize();
+    }
+
+    private void onEviction(final String idempotencyKey, final Entry entry, final RemovalCause cause) {
+        if (cause == RemovalCause.EXPIRED) {
+            this.expirationCount.increment();
+        } else {
+            this.evictionCount.increment();
+            log.debug("Idempotency key evicted before its ttl [key:{}] [cause:{}]", idempotencyKey, cause);
+        }
+    }
+
+    private record Entry(byte[] value, long ttlNanos) {
+
+        static Entry of(final byte[] value, final long ttl, final TimeUnit timeUnit) {
+            return new Entry(value, timeUnit.toNanos(ttl));
+        }
+    }
+
+    private static class EntryExpiry implements Expiry<String, Entry> {
+
+        @Override
+        public long expireAfterCreate(final String key, final Entry value, final long currentTime) {
+            return value.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(final String key, final Entry value, final long currentTime, final long currentDuration) {
+            return value.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterRead(final String key, final Entry value, final long currentTime, final long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,245 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import com.kaua.template.domain.utils.InstantUtils;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyAlreadyExistsException;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCodec;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompressor;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores the idempotency keys in the {@code idempotency_keys} table, created by the flyway migrations.
+ * <p>
+ * The claim inserts the key with {@code ON CONFLICT DO NOTHING}, so concurrent requests are serialized by the
+ * primary key and only one of them inserts the row. Expired rows are ignored by the reads and replaced by the
+ * next claim, they are deleted in background by {@link JdbcIdempotencyKeyPurger}.
+ */
+public class JdbcIdempotencyKeyGateway implements IdempotencyKeyGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcIdempotencyKeyGateway.class);
+    private static final String IDEMPOTENCY_SPAN_NAME = "cache.idempotency_key";
+    private static final int CLAIM_ATTEMPTS = 3;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO idempotency_keys (idempotency_key, payload, expires_at) VALUES (?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+    private static final String UPDATE_SQL = """
+            UPDATE idempotency_keys SET payload = ?, expires_at = ? WHERE idempotency_key = ?
+            """;
+    private static final String DELETE_EXPIRED_SQL = """
+            DELETE FROM idempotency_keys WHERE idempotency_key = ? AND expires_at <= ?
+            """;
+    private static final String DELETE_SQL = """
+            DELETE FROM idempotency_keys WHERE idempotency_key = ?
+            """;
+    private static final String SELECT_SQL = """
+            SELECT payload FROM idempotency_keys WHERE idempotency_key = ? AND expires_at > ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyKeyCompressor compressor;
+    private final ObservationHelper observationHelper;
+
+    public JdbcIdempotencyKeyGateway(
+            final JdbcTemplate jdbcTemplate,
+            final TransactionTemplate transactionTemplate,
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyCompressor compressor
+    ) {
+        this.jdbcTemplate = Objects.requireNonNull(jdbcTemplate);
+        this.transactionTemplate = Objects.requireNonNull(transactionTemplate);
+        this.compressor = Objects.requireNonNull(compressor);
+        this.observationHelper = observationHelper;
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".save_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "JDBC");
+
+                    log.debug("Saving idempotency key: {}", idempotencyKey);
+
+                    if (!insertIfAbsent(idempotencyKey, IdempotencyKeyCodec.encode(IdempotencyKeyDTO.inProgress()), ttl, timeUnit)) {
+                        throw new IdempotencyKeyAlreadyExistsException();
+                    }
+
+                    log.info("Idempotency key saved: {}", idempotencyKey);
+                }
+        );
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".save_key_with_body"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "JDBC");
+
+                    log.debug("Saving idempotency key with body: {}", idempotencyKey);
+
+                    final var aPayload = IdempotencyKeyCodec.encode(body, this.compressor);
+
+                    if (!insertIfAbsent(idempotencyKey, aPayload, ttl, timeUnit)) {
+                        throw new IdempotencyKeyAlreadyExistsException();
+                    }
+
+                    log.info("Idempotency key saved with body: {}", idempotencyKey);
+                }
+        );
+    }
+
+    @Override
+    public Optional<IdempotencyKeyDTO> find(final String idempotencyKey) {
+        return this.observationHelper.observationWithReturn(
+                IDEMPOTENCY_SPAN_NAME.concat(".find_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("storage_type", "JDBC");
+
+                    return this.transactionTemplate.execute(status -> selectPayload(idempotencyKey))
+                            .map(IdempotencyKeyCodec::decode);
+                }
+        );
+    }
+
+    @Override
+    public IdempotencyKeyClaim claim(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        return this.observationHelper.observationWithReturn(
+                IDEMPOTENCY_SPAN_NAME.concat(".claim_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "JDBC");
+
+                    final var aPayload = IdempotencyKeyCodec.encode(IdempotencyKeyDTO.inProgress());
+
+                    // the row can expire or still be uncommitted between the insert and the select, the claim is tried again
+                    for (int i = 0; i < CLAIM_ATTEMPTS; i++) {
+                        if (insertIfAbsent(idempotencyKey, aPayload, ttl, timeUnit)) {
+                            log.debug("Idempotency key claimed: {}", idempotencyKey);
+                            return IdempotencyKeyClaim.acquire();
+                        }
+
+                        final var aCurrent = this.transactionTemplate.execute(status -> selectPayload(idempotencyKey));
+
+                        if (aCurrent.isPresent()) {
+                            final var aIdempotencyKeyBody = IdempotencyKeyCodec.decode(aCurrent.get());
+                            log.debug("Idempotency key already claimed: {}", aIdempotencyKeyBody);
+                            return IdempotencyKeyClaim.existing(aIdempotencyKeyBody);
+                        }
+                    }
+
+                    throw new IllegalStateException("Could not claim the idempotency key: " + idempotencyKey);
+                }
+        );
+    }
+
+    @Override
+    public void complete(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".complete_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "JDBC");
+
+                    upsert(idempotencyKey, IdempotencyKeyCodec.encode(body, this.compressor), ttl, timeUnit);
+                    log.info("Idempotency key completed: {}", idempotencyKey);
+                }
+        );
+    }
+
+    @Override
+    public void markNotReplayable(final String idempotencyKey, final int statusCode, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".mark_not_replayable_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "JDBC");
+
+                    upsert(idempotencyKey, IdempotencyKeyCodec.encode(IdempotencyKeyDTO.notReplayable(statusCode)), ttl, timeUnit);
+                    log.info("Idempotency key marked as not replayable: {}", idempotencyKey);
+                }
+        );
+    }
+
+    @Override
+    public void release(final String idempotencyKey) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".release_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("storage_type", "JDBC");
+
+                    this.jdbcTemplate.update(DELETE_SQL, idempotencyKey);
+                    log.info("Idempotency key released: {}", idempotencyKey);
+                }
+        );
+    }
+
+    private boolean insertIfAbsent(final String idempotencyKey, final byte[] payload, final long ttl, final TimeUnit timeUnit) {
+        final var aNow = InstantUtils.now();
+
+        try {
+            return Boolean.TRUE.equals(this.transactionTemplate.execute(status -> {
+                // an expired row still holds the primary key until the purger removes it
+                this.jdbcTemplate.update(DELETE_EXPIRED_SQL, idempotencyKey, Timestamp.from(aNow));
+                return this.jdbcTemplate.update(INSERT_SQL, idempotencyKey, payload, expiresAt(aNow, ttl, timeUnit)) == 1;
+            }));
+        } catch (final DuplicateKeyException e) {
+            // databases without ON CONFLICT semantics for rows of uncommitted transactions report the race as a violation
+            return false;
+        }
+    }
+
+    private void upsert(final String idempotencyKey, final byte[] payload, final long ttl, final TimeUnit timeUnit) {
+        final var aExpiresAt = expiresAt(InstantUtils.now(), ttl, timeUnit);
+
+        this.transactionTemplate.executeWithoutResult(status -> {
+            // the key is owned by this request since the claim, so the in-progress row is overwritten
+            if (this.jdbcTemplate.update(UPDATE_SQL, payload, aExpiresAt, idempotencyKey) == 0) {
+                this.jdbcTemplate.update(INSERT_SQL, idempotencyKey, payload, aExpiresAt);
+            }
+        });
+    }
+
+    private Optional<byte[]> selectPayload(final String idempotencyKey) {
+        return this.jdbcTemplate.query(
+                SELECT_SQL,
+                (rs, rowNum) -> rs.getBytes(1),
+                idempotencyKey,
+                Timestamp.from(InstantUtils.now())
+        ).stream().findFirst();
+    }
+
+    private static Timestamp expiresAt(final Instant now, final long ttl, final TimeUnit timeUnit) {
+        return Timestamp.from(now.plusNanos(timeUnit.toNanos(ttl)));
+    }
+}
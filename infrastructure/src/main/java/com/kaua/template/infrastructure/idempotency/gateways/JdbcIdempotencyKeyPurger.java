@@ -0,0 +1,86 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import com.kaua.template.domain.utils.InstantUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes the expired rows of the {@code idempotency_keys} table in background. Each batch is deleted in its own
+ * short transaction through the {@code expires_at} index, so the purge never locks a large part of the table.
+ */
+public class JdbcIdempotencyKeyPurger implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcIdempotencyKeyPurger.class);
+
+    private static final String DELETE_EXPIRED_BATCH_SQL = """
+            DELETE FROM idempotency_keys WHERE idempotency_key IN (
+                SELECT idempotency_key FROM idempotency_keys WHERE expires_at <= ? ORDER BY expires_at LIMIT ?
+            )
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration interval;
+    private final ScheduledExecutorService executor;
+
+    public JdbcIdempotencyKeyPurger(
+            final JdbcTemplate jdbcTemplate,
+            final TransactionTemplate transactionTemplate,
+            final int batchSize,
+            final Duration interval
+    ) {
+        this.jdbcTemplate = Objects.requireNonNull(jdbcTemplate);
+        this.transactionTemplate = Objects.requireNonNull(transactionTemplate);
+        this.batchSize = batchSize;
+        this.interval = Objects.requireNonNull(interval);
+        this.executor = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("idempotency-key-purger").factory());
+    }
+
+    public void start() {
+        this.executor.scheduleWithFixedDelay(this::purgeSafely, this.interval.toMillis(), this.interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deletes the expired keys until a batch comes back smaller than the batch size, returns how many were deleted.
+     */
+    public long purge() {
+        final var aNow = Timestamp.from(InstantUtils.now());
+        var aTotal = 0L;
+        int aDeleted;
+
+        do {
+            aDeleted = Objects.requireNonNull(this.transactionTemplate.execute(status ->
+                    this.jdbcTemplate.update(DELETE_EXPIRED_BATCH_SQL, aNow, this.batchSize)));
+            aTotal += aDeleted;
+        } while (aDeleted >= this.batchSize);
+
+        return aTotal;
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+    private void purgeSafely() {
+        try {
+            final var aDeleted = purge();
+            if (aDeleted > 0) {
+                log.debug("Expired idempotency keys purged [count:{}]", aDeleted);
+            }
+        } catch (final Exception e) {
+            // a failed run must not cancel the next ones
+            log.warn("Failed to purge the expired idempotency keys", e);
+        }
+    }
+}
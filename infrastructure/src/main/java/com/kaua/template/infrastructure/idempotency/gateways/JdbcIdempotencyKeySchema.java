@@ -0,0 +1,41 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.util.Objects;
+
+/**
+ * Creates the {@code idempotency_keys} table with the migrations of {@code db/idempotency-key}. They are tracked
+ * in their own history table, so they run only with the jdbc storage and never take a version of the migrations
+ * of the application.
+ */
+public class JdbcIdempotencyKeySchema {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcIdempotencyKeySchema.class);
+
+    private static final String LOCATION = "classpath:db/idempotency-key";
+    private static final String HISTORY_TABLE = "idempotency_key_schema_history";
+
+    private final DataSource dataSource;
+
+    public JdbcIdempotencyKeySchema(final DataSource dataSource) {
+        this.dataSource = Objects.requireNonNull(dataSource);
+    }
+
+    public void migrate() {
+        final var aResult = Flyway.configure()
+                .dataSource(this.dataSource)
+                .locations(LOCATION)
+                .table(HISTORY_TABLE)
+                // the schema usually holds the tables of the application already, this history starts before them
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+
+        log.info("Idempotency key schema migrated [executed:{}]", aResult.migrationsExecuted);
+    }
+}
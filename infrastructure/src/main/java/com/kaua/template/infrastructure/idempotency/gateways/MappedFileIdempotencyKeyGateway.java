@@ -0,0 +1,544 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import com.kaua.template.domain.utils.InstantUtils;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyAlreadyExistsException;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCodec;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompressor;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps the idempotency keys in append-only segment files mapped in memory, for single node deployments that
+ * need the keys to survive a restart without running Redis or a database.
+ * <p>
+ * Every write appends a record to the active segment and points the key to it in an off-heap
+ * {@link MappedFileIdempotencyKeyIndex}, the payloads never live on the heap. On startup the segments are
+ * replayed in order to rebuild the index, a record with a wrong checksum marks the end of a torn write.
+ * A sealed segment is deleted once every record in it has expired. A release appends an empty record that
+ * expires with the claim it hides, so the claim can not outlive it on disk.
+ * <p>
+ * The mapped pages are flushed by the operating system, so the keys survive a crash of the process, the
+ * segments are only forced to the disk on compaction and on close.
+ */
+public class MappedFileIdempotencyKeyGateway implements IdempotencyKeyGateway, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedFileIdempotencyKeyGateway.class);
+    private static final String IDEMPOTENCY_SPAN_NAME = "cache.idempotency_key";
+
+    private static final Pattern SEGMENT_FILE_NAME = Pattern.compile("segment-(\\d+)\\.log");
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    // record layout: key length, value length, expires at, key, value, crc32c of everything before it
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+    private static final int CHECKSUM_SIZE = 4;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Duration compactionInterval;
+    private final IdempotencyKeyCompressor compressor;
+    private final ObservationHelper observationHelper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final MappedFileIdempotencyKeyIndex index = new MappedFileIdempotencyKeyIndex(INITIAL_INDEX_CAPACITY);
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final ScheduledExecutorService executor;
+    private Segment active;
+
+    public MappedFileIdempotencyKeyGateway(
+            final Path directory,
+            final long segmentSize,
+            final Duration compactionInterval,
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyCompressor compressor
+    ) {
+        if (segmentSize <= HEADER_SIZE + CHECKSUM_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The segment size must be between %d bytes and 2GB".formatted(HEADER_SIZE + CHECKSUM_SIZE + 1));
+        }
+
+        this.directory = Objects.requireNonNull(directory);
+        this.segmentSize = segmentSize;
+        this.compactionInterval = Objects.requireNonNull(compactionInterval);
+        this.compressor = Objects.requireNonNull(compressor);
+        this.observationHelper = observationHelper;
+        this.executor = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("idempotency-key-compaction").factory());
+
+        recover();
+    }
+
+    public void start() {
+        this.executor.scheduleWithFixedDelay(this::compactSafely, this.compactionInterval.toMillis(), this.compactionInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".save_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "MAPPED_FILE");
+
+                    log.debug("Saving idempotency key: {}", idempotencyKey);
+
+                    if (putIfAbsent(idempotencyKey, IdempotencyKeyCodec.encode(IdempotencyKeyDTO.inProgress()), ttl, timeUnit) != null) {
+                        throw new IdempotencyKeyAlreadyExistsException();
+                    }
+
+                    log.info("Idempotency key saved: {}", idempotencyKey);
+                }
+        );
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".save_key_with_body"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "MAPPED_FILE");
+
+                    log.debug("Saving idempotency key with body: {}", idempotencyKey);
+
+                    final var aPayload = IdempotencyKeyCodec.encode(body, this.compressor);
+
+                    if (putIfAbsent(idempotencyKey, aPayload, ttl, timeUnit) != null) {
+                        throw new IdempotencyKeyAlreadyExistsException();
+                    }
+
+                    log.info("Idempotency key saved with body: {}", idempotencyKey);
+                }
+        );
+    }
+
+    @Override
+    public Optional<IdempotencyKeyDTO> find(final String idempotencyKey) {
+        return this.observationHelper.observationWithReturn(
+                IDEMPOTENCY_SPAN_NAME.concat(".find_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("storage_type", "MAPPED_FILE");
+
+                    final var aKey = idempotencyKey.getBytes(StandardCharsets.UTF_8);
+
+                    this.lock.readLock().lock();
+                    try {
+                        return Optional.ofNullable(readLive(aKey, InstantUtils.now().toEpochMilli()))
+                                .map(IdempotencyKeyCodec::decode);
+                    } finally {
+                        this.lock.readLock().unlock();
+                    }
+                }
+        );
+    }
+
+    @Override
+    public IdempotencyKeyClaim claim(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        return this.observationHelper.observationWithReturn(
+                IDEMPOTENCY_SPAN_NAME.concat(".claim_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "MAPPED_FILE");
+
+                    final var aCurrent = putIfAbsent(idempotencyKey, IdempotencyKeyCodec.encode(IdempotencyKeyDTO.inProgress()), ttl, timeUnit);
+
+                    if (aCurrent == null) {
+                        log.debug("Idempotency key claimed: {}", idempotencyKey);
+                        return IdempotencyKeyClaim.acquire();
+                    }
+
+                    return IdempotencyKeyClaim.existing(IdempotencyKeyCodec.decode(aCurrent));
+                }
+        );
+    }
+
+    @Override
+    public void complete(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".complete_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "MAPPED_FILE");
+
+                    put(idempotencyKey, IdempotencyKeyCodec.encode(body, this.compressor), ttl, timeUnit);
+                    log.info("Idempotency key completed: {}", idempotencyKey);
+                }
+        );
+    }
+
+    @Override
+    public void markNotReplayable(final String idempotencyKey, final int statusCode, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".mark_not_replayable_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "MAPPED_FILE");
+
+                    put(idempotencyKey, IdempotencyKeyCodec.encode(IdempotencyKeyDTO.notReplayable(statusCode)), ttl, timeUnit);
+                    log.info("Idempotency key marked as not replayable: {}", idempotencyKey);
+                }
+        );
+    }
+
+    @Override
+    public void release(final String idempotencyKey) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".release_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("storage_type", "MAPPED_FILE");
+
+                    final var aKey = idempotencyKey.getBytes(StandardCharsets.UTF_8);
+
+                    this.lock.writeLock().lock();
+                    try {
+                        // the empty record hides the claim now and when the log is replayed, it expires with the
+                        // claim so its segment is never deleted while the claim could come back on a restart
+                        final var aSlot = this.index.find(hash(aKey), location -> holdsKey(location, aKey));
+                        append(aKey, new byte[0], aSlot < 0 ? 0 : this.index.expiresAtAt(aSlot));
+                    } finally {
+                        this.lock.writeLock().unlock();
+                    }
+                    log.info("Idempotency key released: {}", idempotencyKey);
+                }
+        );
+    }
+
+    /**
+     * Deletes the sealed segments whose records have all expired and drops the expired keys from the index,
+     * returns how many segments were deleted.
+     */
+    public int compact() {
+        this.lock.writeLock().lock();
+        try {
+            final var aNow = InstantUtils.now().toEpochMilli();
+            var aDeleted = 0;
+
+            final var aIterator = this.segments.values().iterator();
+            while (aIterator.hasNext()) {
+                final var aSegment = aIterator.next();
+                if (aSegment != this.active && aSegment.maxExpiresAt <= aNow) {
+                    aIterator.remove();
+                    // the mapping is released by the gc, the file can already be unlinked
+                    Files.deleteIfExists(aSegment.path);
+                    aDeleted++;
+                }
+            }
+
+            this.index.removeExpired(aNow);
+            this.active.buffer.force();
+
+            return aDeleted;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.index.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int segmentCount() {
+        this.lock.readLock().lock();
+        try {
+            return this.segments.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+
+        this.lock.writeLock().lock();
+        try {
+            this.segments.values().forEach(segment -> segment.buffer.force());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends the value when the key has no live record, otherwise returns the current value.
+     */
+    private byte[] putIfAbsent(final String idempotencyKey, final byte[] value, final long ttl, final TimeUnit timeUnit) {
+        final var aKey = idempotencyKey.getBytes(StandardCharsets.UTF_8);
+
+        this.lock.writeLock().lock();
+        try {
+            final var aNow = InstantUtils.now().toEpochMilli();
+            final var aCurrent = readLive(aKey, aNow);
+
+            if (aCurrent != null) {
+                return aCurrent;
+            }
+
+            append(aKey, value, expiresAt(aNow, ttl, timeUnit));
+            return null;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void put(final String idempotencyKey, final byte[] value, final long ttl, final TimeUnit timeUnit) {
+        final var aKey = idempotencyKey.getBytes(StandardCharsets.UTF_8);
+
+        this.lock.writeLock().lock();
+        try {
+            append(aKey, value, expiresAt(InstantUtils.now().toEpochMilli(), ttl, timeUnit));
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private byte[] readLive(final byte[] key, final long now) {
+        final var aSlot = this.index.find(hash(key), location -> holdsKey(location, key));
+
+        if (aSlot < 0 || this.index.expiresAtAt(aSlot) <= now) {
+            return null;
+        }
+
+        final var aLocation = this.index.locationAt(aSlot);
+        final var aBuffer = this.segments.get(segmentId(aLocation)).buffer;
+        final var aOffset = offset(aLocation);
+
+        final var aValueLength = aBuffer.getInt(aOffset + 4);
+
+        if (aValueLength == 0) {
+            // a release tombstone, the encoded records are never empty
+            return null;
+        }
+
+        final var aValue = new byte[aValueLength];
+        aBuffer.get(aOffset + HEADER_SIZE + aBuffer.getInt(aOffset), aValue);
+        return aValue;
+    }
+
+    private void append(final byte[] key, final byte[] value, final long expiresAt) {
+        final var aRecordSize = HEADER_SIZE + key.length + value.length + CHECKSUM_SIZE;
+
+        if (this.active.position + aRecordSize > this.active.buffer.capacity()) {
+            this.active = createSegment(this.active.id + 1, Math.max(this.segmentSize, aRecordSize));
+        }
+
+        final var aSegment = this.active;
+        final var aOffset = aSegment.position;
+        writeRecord(aSegment.buffer, aOffset, key, value, expiresAt);
+
+        aSegment.position += aRecordSize;
+        aSegment.maxExpiresAt = Math.max(aSegment.maxExpiresAt, expiresAt);
+
+        this.index.put(hash(key), location(aSegment.id, aOffset), expiresAt, location -> holdsKey(location, key));
+    }
+
+    private boolean holdsKey(final long location, final byte[] key) {
+        final var aSegment = this.segments.get(segmentId(location));
+        if (aSegment == null) {
+            return false;
+        }
+
+        final var aOffset = offset(location);
+        final var aKeyLength = aSegment.buffer.getInt(aOffset);
+        return aKeyLength == key.length
+                && aSegment.buffer.slice(aOffset + HEADER_SIZE, aKeyLength).equals(ByteBuffer.wrap(key));
+    }
+
+    private void recover() {
+        try {
+            Files.createDirectories(this.directory);
+
+            final var aIds = new TreeMap<Integer, Path>();
+            try (final var aFiles = Files.list(this.directory)) {
+                aFiles.forEach(path -> {
+                    final var aMatcher = SEGMENT_FILE_NAME.matcher(path.getFileName().toString());
+                    if (aMatcher.matches()) {
+                        aIds.put(Integer.parseInt(aMatcher.group(1)), path);
+                    }
+                });
+            }
+
+            var aRecords = 0;
+            for (final Map.Entry<Integer, Path> aEntry : aIds.entrySet()) {
+                final var aSegment = openSegment(aEntry.getKey(), aEntry.getValue(), Files.size(aEntry.getValue()));
+                this.segments.put(aSegment.id, aSegment);
+                aRecords += replay(aSegment);
+                this.active = aSegment;
+            }
+
+            if (this.active == null) {
+                this.active = createSegment(1, this.segmentSize);
+            }
+
+            log.info("Idempotency key log recovered [segments:{}] [records:{}] [keys:{}]", this.segments.size(), aRecords, this.index.size());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        compact();
+    }
+
+    /**
+     * Indexes the records of the segment, a later record of the same key replaces the earlier one.
+     */
+    private int replay(final Segment segment) {
+        final var aBuffer = segment.buffer;
+        final var aChecksum = new CRC32C();
+        var aOffset = 0;
+        var aRecords = 0;
+
+        while (aOffset + HEADER_SIZE <= aBuffer.capacity()) {
+            final var aKeyLength = aBuffer.getInt(aOffset);
+            final var aValueLength = aBuffer.getInt(aOffset + 4);
+            final var aDataSize = (long) HEADER_SIZE + aKeyLength + aValueLength;
+
+            if (aKeyLength <= 0 || aValueLength < 0 || aOffset + aDataSize + CHECKSUM_SIZE > aBuffer.capacity()) {
+                break;
+            }
+
+            aChecksum.reset();
+            aChecksum.update(aBuffer.slice(aOffset, (int) aDataSize));
+            if ((int) aChecksum.getValue() != aBuffer.getInt(aOffset + (int) aDataSize)) {
+                log.warn("Idempotency key log truncated at a torn record [segment:{}] [offset:{}]", segment.path, aOffset);
+                break;
+            }
+
+            final var aKey = new byte[aKeyLength];
+            aBuffer.get(aOffset + HEADER_SIZE, aKey);
+            final var aExpiresAt = aBuffer.getLong(aOffset + 8);
+
+            this.index.put(hash(aKey), location(segment.id, aOffset), aExpiresAt, location -> holdsKey(location, aKey));
+            segment.maxExpiresAt = Math.max(segment.maxExpiresAt, aExpiresAt);
+
+            aOffset += (int) aDataSize + CHECKSUM_SIZE;
+            aRecords++;
+        }
+
+        segment.position = aOffset;
+        return aRecords;
+    }
+
+    private Segment createSegment(final int id, final long size) {
+        final var aSegment = openSegment(id, this.directory.resolve("segment-%d.log".formatted(id)), size);
+        this.segments.put(id, aSegment);
+        log.debug("Idempotency key log segment created: {}", aSegment.path);
+        return aSegment;
+    }
+
+    private static Segment openSegment(final int id, final Path path, final long size) {
+        try (final var aChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            return new Segment(id, path, aChannel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeRecord(final MappedByteBuffer buffer, final int offset, final byte[] key, final byte[] value, final long expiresAt) {
+        buffer.putInt(offset, key.length);
+        buffer.putInt(offset + 4, value.length);
+        buffer.putLong(offset + 8, expiresAt);
+        buffer.put(offset + HEADER_SIZE, key);
+        buffer.put(offset + HEADER_SIZE + key.length, value);
+
+        final var aDataSize = HEADER_SIZE + key.length + value.length;
+        final var aChecksum = new CRC32C();
+        aChecksum.update(buffer.slice(offset, aDataSize));
+        buffer.putInt(offset + aDataSize, (int) aChecksum.getValue());
+    }
+
+    private void compactSafely() {
+        try {
+            final var aDeleted = compact();
+            if (aDeleted > 0) {
+                log.debug("Expired idempotency key segments deleted [count:{}]", aDeleted);
+            }
+        } catch (final Exception e) {
+            // a failed run must not cancel the next ones
+            log.warn("Failed to compact the idempotency key log", e);
+        }
+    }
+
+    /**
+     * FNV-1a of the key bytes, zero marks an empty slot in the index so it is never returned.
+     */
+    private static long hash(final byte[] key) {
+        var aHash = 0xcbf29ce484222325L;
+        for (final byte b : key) {
+            aHash ^= b & 0xff;
+            aHash *= 0x100000001b3L;
+        }
+        return aHash == 0 ? 1 : aHash;
+    }
+
+    private static long expiresAt(final long now, final long ttl, final TimeUnit timeUnit) {
+        return now + timeUnit.toMillis(ttl);
+    }
+
+    private static long location(final int segmentId, final int offset) {
+        return ((long) segmentId << 32) | (offset & 0xffffffffL);
+    }
+
+    private static int segmentId(final long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offset(final long location) {
+        return (int) location;
+    }
+
+    private static final class Segment {
+
+        private final int id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private long maxExpiresAt;
+
+        private Segment(final int id, final Path path, final MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
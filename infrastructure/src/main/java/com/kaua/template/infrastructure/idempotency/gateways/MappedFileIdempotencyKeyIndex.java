@@ -0,0 +1,127 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongPredicate;
+
+/**
+ * Open addressing hash table kept in a direct buffer, each slot holds the hash of the key, the location of its
+ * latest record in the log and when it expires. Only the hash is stored, so a slot is confirmed by comparing the
+ * key of the record it points to.
+ * <p>
+ * Not thread safe, {@link MappedFileIdempotencyKeyGateway} guards it with its read/write lock.
+ */
+final class MappedFileIdempotencyKeyIndex {
+
+    private static final int SLOT_SIZE = 24;
+    private static final int HASH_OFFSET = 0;
+    private static final int LOCATION_OFFSET = 8;
+    private static final int EXPIRES_AT_OFFSET = 16;
+    private static final double MAX_LOAD_FACTOR = 0.6;
+    private static final long EMPTY = 0;
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int size;
+
+    MappedFileIdempotencyKeyIndex(final int initialCapacity) {
+        this.capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        this.slots = ByteBuffer.allocateDirect(this.capacity * SLOT_SIZE);
+    }
+
+    /**
+     * Returns the slot of the key, or {@code -1} when it is not indexed.
+     */
+    int find(final long hash, final LongPredicate locationHoldsKey) {
+        final var aMask = this.capacity - 1;
+        var aSlot = (int) (hash & aMask);
+
+        while (true) {
+            final var aHash = hashAt(aSlot);
+            if (aHash == EMPTY) {
+                return -1;
+            }
+            if (aHash == hash && locationHoldsKey.test(locationAt(aSlot))) {
+                return aSlot;
+            }
+            aSlot = (aSlot + 1) & aMask;
+        }
+    }
+
+    /**
+     * Points the key to a new record, replacing the slot it already had.
+     */
+    void put(final long hash, final long location, final long expiresAt, final LongPredicate locationHoldsKey) {
+        final var aSlot = find(hash, locationHoldsKey);
+        if (aSlot >= 0) {
+            write(aSlot, hash, location, expiresAt);
+            return;
+        }
+
+        if (this.size + 1 > this.capacity * MAX_LOAD_FACTOR) {
+            rehash(this.capacity << 1, expires -> false);
+        }
+        insert(hash, location, expiresAt);
+    }
+
+    long locationAt(final int slot) {
+        return this.slots.getLong(slot * SLOT_SIZE + LOCATION_OFFSET);
+    }
+
+    long expiresAtAt(final int slot) {
+        return this.slots.getLong(slot * SLOT_SIZE + EXPIRES_AT_OFFSET);
+    }
+
+    /**
+     * Drops the slots that expired before {@code now}, their records may point to segments already deleted.
+     */
+    void removeExpired(final long now) {
+        rehash(this.capacity, expiresAt -> expiresAt <= now);
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    private void rehash(final int newCapacity, final LongPredicate dropByExpiresAt) {
+        final var aOldSlots = this.slots;
+        final var aOldCapacity = this.capacity;
+
+        this.capacity = newCapacity;
+        this.slots = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+        this.size = 0;
+
+        for (int i = 0; i < aOldCapacity; i++) {
+            final var aBase = i * SLOT_SIZE;
+            final var aHash = aOldSlots.getLong(aBase + HASH_OFFSET);
+            final var aExpiresAt = aOldSlots.getLong(aBase + EXPIRES_AT_OFFSET);
+
+            // each key owns a single slot, so the moved slots never need the key comparison
+            if (aHash != EMPTY && !dropByExpiresAt.test(aExpiresAt)) {
+                insert(aHash, aOldSlots.getLong(aBase + LOCATION_OFFSET), aExpiresAt);
+            }
+        }
+    }
+
+    private void insert(final long hash, final long location, final long expiresAt) {
+        final var aMask = this.capacity - 1;
+        var aSlot = (int) (hash & aMask);
+
+        while (hashAt(aSlot) != EMPTY) {
+            aSlot = (aSlot + 1) & aMask;
+        }
+
+        write(aSlot, hash, location, expiresAt);
+        this.size++;
+    }
+
+    private long hashAt(final int slot) {
+        return this.slots.getLong(slot * SLOT_SIZE + HASH_OFFSET);
+    }
+
+    private void write(final int slot, final long hash, final long location, final long expiresAt) {
+        final var aBase = slot * SLOT_SIZE;
+        this.slots.putLong(aBase + HASH_OFFSET, hash);
+        this.slots.putLong(aBase + LOCATION_OFFSET, location);
+        this.slots.putLong(aBase + EXPIRES_AT_OFFSET, expiresAt);
+    }
+}
@@ -0,0 +1,220 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCodec;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompressor;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking Redis gateway over the Lettuce async API, it keeps the same keys, scripts and encoding of
+ * {@link RedisIdempotencyKeyGateway}, so both can serve the same keys side by side.
+ * <p>
+ * It opens its own multiplexed connection from the client of the connection factory, the commands of every
+ * request are pipelined on it and no thread waits for the replies.
+ */
+public class RedisAsyncIdempotencyKeyGateway implements AsyncIdempotencyKeyGateway, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisAsyncIdempotencyKeyGateway.class);
+
+    private static final String IDEMPOTENCY_SPAN_NAME = "cache.idempotency_key";
+    private static final byte[] COMPLETION_CHANNEL = RedisIdempotencyKeyGateway.COMPLETION_CHANNEL.getBytes(StandardCharsets.UTF_8);
+
+    private final StatefulConnection<byte[], byte[]> connection;
+    private final RedisClusterAsyncCommands<byte[], byte[]> commands;
+    private final IdempotencyKeyCompressor compressor;
+    private final ObservationHelper observationHelper;
+
+    public RedisAsyncIdempotencyKeyGateway(
+            final LettuceConnectionFactory connectionFactory,
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyCompressor compressor
+    ) {
+        final var aClient = connectionFactory.getRequiredNativeClient();
+
+        if (aClient instanceof RedisClusterClient aClusterClient) {
+            final var aConnection = aClusterClient.connect(ByteArrayCodec.INSTANCE);
+            this.connection = aConnection;
+            this.commands = aConnection.async();
+        } else if (aClient instanceof RedisClient aRedisClient) {
+            final var aConnection = aRedisClient.connect(ByteArrayCodec.INSTANCE);
+            this.connection = aConnection;
+            this.commands = aConnection.async();
+        } else {
+            throw new IllegalArgumentException("Unsupported redis client: " + aClient.getClass().getName());
+        }
+
+        this.compressor = Objects.requireNonNull(compressor);
+        this.observationHelper = Objects.requireNonNull(observationHelper);
+    }
+
+    @Override
+    public CompletionStage<Optional<IdempotencyKeyDTO>> find(final String idempotencyKey) {
+        return this.observationHelper.observationAsync(
+                IDEMPOTENCY_SPAN_NAME.concat(".find_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("storage_type", "REDIS");
+
+                    return this.commands.get(rawKey(idempotencyKey))
+                            .thenApply(result -> Optional.ofNullable(result).map(IdempotencyKeyCodec::decode));
+                }
+        );
+    }
+
+    @Override
+    public CompletionStage<IdempotencyKeyClaim> claim(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        return this.observationHelper.observationAsync(
+                IDEMPOTENCY_SPAN_NAME.concat(".claim_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "REDIS");
+
+                    return this.<byte[]>eval(
+                            RedisIdempotencyKeyGateway.CLAIM_SCRIPT,
+                            ScriptOutputType.VALUE,
+                            rawKey(idempotencyKey),
+                            IdempotencyKeyCodec.encode(IdempotencyKeyDTO.inProgress()),
+                            millis(ttl, timeUnit)
+                    ).thenApply(result -> {
+                        if (result == null) {
+                            log.debug("Idempotency key claimed: {}", idempotencyKey);
+                            return IdempotencyKeyClaim.acquire();
+                        }
+                        return IdempotencyKeyClaim.existing(IdempotencyKeyCodec.decode(result));
+                    });
+                }
+        );
+    }
+
+    @Override
+    public CompletionStage<Void> complete(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        return this.observationHelper.observationAsync(
+                IDEMPOTENCY_SPAN_NAME.concat(".complete_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "REDIS");
+
+                    return setValueAndNotify(
+                            idempotencyKey,
+                            IdempotencyKeyCodec.encode(body, this.compressor),
+                            ttl,
+                            timeUnit
+                    );
+                }
+        );
+    }
+
+    @Override
+    public CompletionStage<Void> markNotReplayable(final String idempotencyKey, final int statusCode, final long ttl, final TimeUnit timeUnit) {
+        return this.observationHelper.observationAsync(
+                IDEMPOTENCY_SPAN_NAME.concat(".mark_not_replayable_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "REDIS");
+
+                    return setValueAndNotify(
+                            idempotencyKey,
+                            IdempotencyKeyCodec.encode(IdempotencyKeyDTO.notReplayable(statusCode)),
+                            ttl,
+                            timeUnit
+                    );
+                }
+        );
+    }
+
+    @Override
+    public CompletionStage<Void> release(final String idempotencyKey) {
+        return this.observationHelper.observationAsync(
+                IDEMPOTENCY_SPAN_NAME.concat(".release_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("storage_type", "REDIS");
+
+                    return this.<Long>eval(
+                            RedisIdempotencyKeyGateway.RELEASE_SCRIPT,
+                            ScriptOutputType.INTEGER,
+                            rawKey(idempotencyKey),
+                            COMPLETION_CHANNEL,
+                            idempotencyKey.getBytes(StandardCharsets.UTF_8)
+                    ).thenAccept(receivers -> log.debug("Idempotency key released [key:{}]", idempotencyKey));
+                }
+        );
+    }
+
+    @Override
+    public void close() {
+        this.connection.close();
+    }
+
+    private CompletionStage<Void> setValueAndNotify(
+            final String idempotencyKey,
+            final byte[] value,
+            final long ttl,
+            final TimeUnit timeUnit
+    ) {
+        return this.<Long>eval(
+                RedisIdempotencyKeyGateway.COMPLETE_SCRIPT,
+                ScriptOutputType.INTEGER,
+                rawKey(idempotencyKey),
+                value,
+                millis(ttl, timeUnit),
+                COMPLETION_CHANNEL,
+                idempotencyKey.getBytes(StandardCharsets.UTF_8)
+        ).thenAccept(receivers ->
+                log.debug("Idempotency key completion published [key:{}] [receivers:{}]", idempotencyKey, receivers));
+    }
+
+    // the script is sent by its sha, the body is only sent again when the server does not know it yet
+    private <T> CompletionStage<T> eval(
+            final RedisScript<?> script,
+            final ScriptOutputType outputType,
+            final byte[] key,
+            final byte[]... args
+    ) {
+        final var aKeys = new byte[][]{key};
+
+        return this.commands.<T>evalsha(script.getSha1(), outputType, aKeys, args)
+                .exceptionallyCompose(error -> unwrap(error) instanceof RedisNoScriptException
+                        ? this.commands.<T>eval(script.getScriptAsString(), outputType, aKeys, args)
+                        : CompletableFuture.failedStage(error));
+    }
+
+    private static Throwable unwrap(final Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static byte[] rawKey(final String idempotencyKey) {
+        return RedisIdempotencyKeyGateway.redisKey(idempotencyKey).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] millis(final long ttl, final TimeUnit timeUnit) {
+        return String.valueOf(timeUnit.toMillis(ttl)).getBytes(StandardCharsets.UTF_8);
+    }
+}
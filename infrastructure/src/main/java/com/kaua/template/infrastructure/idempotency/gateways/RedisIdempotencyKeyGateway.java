@@ -1,31 +1,103 @@
 package com.kaua.template.infrastructure.idempotency.gateways;
 
-import com.kaua.template.infrastructure.configurations.json.Json;
 import com.kaua.template.infrastructure.exceptions.IdempotencyKeyAlreadyExistsException;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCodec;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompletion;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompressor;
 import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
 import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
 import com.kaua.template.infrastructure.utils.ObservationHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
 public class RedisIdempotencyKeyGateway implements IdempotencyKeyGateway {
 
+    /**
+     * Channel where the keys are published when their final response is stored, so the requests waiting
+     * for them on other instances are woken up.
+     */
+    public static final String COMPLETION_CHANNEL = "idempotency:completed";
+
     private static final String IDEMPOTENCY_KEY_PREFIX = "idempotency:";
     private static final String IDEMPOTENCY_SPAN_NAME = "cache.idempotency_key";
 
+    // returns the stored entry when the key exists, otherwise claims it and returns nil
+    static final RedisScript<byte[]> CLAIM_SCRIPT = RedisScript.of("""
+            local current = redis.call('GET', KEYS[1])
+            if current then
+                return current
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            return false
+            """, byte[].class);
+
+    // stores the final entry and notifies the waiters in the same round trip, returns how many instances received it
+    static final RedisScript<Long> COMPLETE_SCRIPT = RedisScript.of("""
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            return redis.call('PUBLISH', ARGV[3], ARGV[4])
+            """, Long.class);
+
+    // removes the key and wakes the waiters, they claim it again instead of waiting for the ttl
+    static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of("""
+            redis.call('DEL', KEYS[1])
+            return redis.call('PUBLISH', ARGV[1], ARGV[2])
+            """, Long.class);
+
     private static final Logger log = LoggerFactory.getLogger(RedisIdempotencyKeyGateway.class);
 
     private final RedisTemplate<String, byte[]> redisTemplate;
+    private final RedisTemplate<String, byte[]> readTemplate;
+    private final boolean pipelineSupported;
+    private final IdempotencyKeyCompressor compressor;
     private final ObservationHelper observationHelper;
 
     public RedisIdempotencyKeyGateway(final RedisTemplate<String, byte[]> redisTemplate, ObservationHelper observationHelper) {
-        this.redisTemplate = Objects.requireNonNull(redisTemplate);
+        this(redisTemplate, observationHelper, IdempotencyKeyCompressor.none());
+    }
+
+    public RedisIdempotencyKeyGateway(
+            final RedisTemplate<String, byte[]> redisTemplate,
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyCompressor compressor
+    ) {
+        this(redisTemplate, redisTemplate, observationHelper, compressor);
+    }
+
+    /**
+     * @param readTemplate template used only by {@link #find(String)}, e.g. one that reads from the replicas. The
+     *                     claims, completions and releases always go through the {@code redisTemplate}.
+     */
+    public RedisIdempotencyKeyGateway(
+            final RedisTemplate<String, byte[]> redisTemplate,
+            final RedisTemplate<String, byte[]> readTemplate,
+            final ObservationHelper observationHelper,
+            final IdempotencyKeyCompressor compressor
+    ) {
+        if (redisTemplate.getValueSerializer() != RedisSerializer.byteArray()
+                || readTemplate.getValueSerializer() != RedisSerializer.byteArray()) {
+            throw new IllegalArgumentException("The idempotency key values are stored as raw bytes, the template must use the byte array value serializer");
+        }
+
+        this.redisTemplate = redisTemplate;
+        this.readTemplate = readTemplate;
+        // cluster connections can not pipeline commands that go to different nodes
+        this.pipelineSupported = !(redisTemplate.getConnectionFactory() instanceof LettuceConnectionFactory aFactory && aFactory.isClusterAware());
+        this.compressor = Objects.requireNonNull(compressor);
         this.observationHelper = observationHelper;
     }
 
@@ -39,13 +111,13 @@ public class RedisIdempotencyKeyGateway implements IdempotencyKeyGateway {
                     span.setAttribute("time_unit", timeUnit.name());
                     span.setAttribute("storage_type", "REDIS");
 
-                    final var aKey = IDEMPOTENCY_KEY_PREFIX.concat(idempotencyKey);
+                    final var aKey = redisKey(idempotencyKey);
 
                     log.debug("Saving idempotency key: {}", aKey);
 
                     final var aSetResult = this.redisTemplate.opsForValue().setIfAbsent(
                             aKey,
-                            Json.writeValueAsBytes(new IdempotencyKeyDTO(0, "", Map.of())),
+                            IdempotencyKeyCodec.encode(IdempotencyKeyDTO.inProgress()),
                             ttl,
                             timeUnit
                     );
@@ -68,19 +140,13 @@ public class RedisIdempotencyKeyGateway implements IdempotencyKeyGateway {
                     span.setAttribute("time_unit", timeUnit.name());
                     span.setAttribute("storage_type", "REDIS");
 
-                    final var aKey = IDEMPOTENCY_KEY_PREFIX.concat(idempotencyKey);
+                    final var aKey = redisKey(idempotencyKey);
 
                     log.debug("Saving idempotency key with body {}", aKey);
 
-                    final var aDTO = new IdempotencyKeyDTO(
-                            body.statusCode(),
-                            Json.writeValueAsString(body.body()),
-                            body.headers()
-                    );
-
                     final var aSetResult = this.redisTemplate.opsForValue().setIfAbsent(
                             aKey,
-                            Json.writeValueAsBytes(aDTO),
+                            IdempotencyKeyCodec.encode(body, this.compressor),
                             ttl,
                             timeUnit
                     );
@@ -102,19 +168,196 @@ public class RedisIdempotencyKeyGateway implements IdempotencyKeyGateway {
                     span.setAttribute("idempotency_key", idempotencyKey);
                     span.setAttribute("storage_type", "REDIS");
 
-                    final var aKey = IDEMPOTENCY_KEY_PREFIX.concat(idempotencyKey);
+                    final var aKey = redisKey(idempotencyKey);
 
-                    final var aResult = this.redisTemplate.opsForValue().get(aKey);
+                    final var aResult = this.readTemplate.opsForValue().get(aKey);
 
                     if (aResult == null) {
                         return Optional.empty();
                     }
 
-                    final var aIdempotencyKeyBody = Json.readValue(aResult, IdempotencyKeyDTO.class);
+                    final var aIdempotencyKeyBody = IdempotencyKeyCodec.decode(aResult);
 
                     log.debug("Idempotency key found: {}", aIdempotencyKeyBody);
                     return Optional.of(aIdempotencyKeyBody);
                 }
         );
     }
+
+    @Override
+    public IdempotencyKeyClaim claim(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        return this.observationHelper.observationWithReturn(
+                IDEMPOTENCY_SPAN_NAME.concat(".claim_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "REDIS");
+
+                    final var aKey = redisKey(idempotencyKey);
+
+                    final var aResult = this.redisTemplate.execute(
+                            CLAIM_SCRIPT,
+                            RedisSerializer.byteArray(),
+                            RedisSerializer.byteArray(),
+                            List.of(aKey),
+                            IdempotencyKeyCodec.encode(IdempotencyKeyDTO.inProgress()),
+                            String.valueOf(timeUnit.toMillis(ttl)).getBytes(StandardCharsets.UTF_8)
+                    );
+
+                    if (aResult == null) {
+                        log.debug("Idempotency key claimed: {}", aKey);
+                        return IdempotencyKeyClaim.acquire();
+                    }
+
+                    final var aIdempotencyKeyBody = IdempotencyKeyCodec.decode(aResult);
+
+                    log.debug("Idempotency key already claimed: {}", aIdempotencyKeyBody);
+                    return IdempotencyKeyClaim.existing(aIdempotencyKeyBody);
+                }
+        );
+    }
+
+    @Override
+    public void complete(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".complete_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "REDIS");
+
+                    final var aKey = redisKey(idempotencyKey);
+
+                    // the key is owned by this request since the claim, so the in-progress entry is overwritten
+                    setValueAndNotify(
+                            aKey,
+                            idempotencyKey,
+                            IdempotencyKeyCodec.encode(body, this.compressor),
+                            ttl,
+                            timeUnit
+                    );
+
+                    log.info("Idempotency key completed {}", aKey);
+                }
+        );
+    }
+
+    @Override
+    public void markNotReplayable(final String idempotencyKey, final int statusCode, final long ttl, final TimeUnit timeUnit) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".mark_not_replayable_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("ttl", ttl);
+                    span.setAttribute("time_unit", timeUnit.name());
+                    span.setAttribute("storage_type", "REDIS");
+
+                    final var aKey = redisKey(idempotencyKey);
+
+                    setValueAndNotify(
+                            aKey,
+                            idempotencyKey,
+                            IdempotencyKeyCodec.encode(IdempotencyKeyDTO.notReplayable(statusCode)),
+                            ttl,
+                            timeUnit
+                    );
+
+                    log.info("Idempotency key marked as not replayable {}", aKey);
+                }
+        );
+    }
+
+    @Override
+    public void release(final String idempotencyKey) {
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".release_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("storage_type", "REDIS");
+
+                    final var aKey = redisKey(idempotencyKey);
+
+                    this.redisTemplate.execute(
+                            RELEASE_SCRIPT,
+                            RedisSerializer.byteArray(),
+                            new GenericToStringSerializer<>(Long.class),
+                            List.of(aKey),
+                            COMPLETION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                            idempotencyKey.getBytes(StandardCharsets.UTF_8)
+                    );
+
+                    log.info("Idempotency key released {}", aKey);
+                }
+        );
+    }
+
+    @Override
+    public void completeAll(final List<IdempotencyKeyCompletion> completions) {
+        if (!this.pipelineSupported) {
+            IdempotencyKeyGateway.super.completeAll(completions);
+            return;
+        }
+
+        this.observationHelper.observation(
+                IDEMPOTENCY_SPAN_NAME.concat(".complete_keys"),
+                (span) -> {
+                    span.setAttribute("batch_size", completions.size());
+                    span.setAttribute("storage_type", "REDIS");
+
+                    final var aChannel = COMPLETION_CHANNEL.getBytes(StandardCharsets.UTF_8);
+
+                    // every SET and PUBLISH of the batch is sent in a single round trip
+                    this.redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                        for (final var aCompletion : completions) {
+                            final var aValue = aCompletion.isReplayable()
+                                    ? IdempotencyKeyCodec.encode(this.compressor.compress(aCompletion.toDTO()))
+                                    : IdempotencyKeyCodec.encode(aCompletion.toDTO());
+
+                            connection.stringCommands().set(
+                                    rawKey(redisKey(aCompletion.idempotencyKey())),
+                                    aValue,
+                                    Expiration.from(aCompletion.ttl(), aCompletion.timeUnit()),
+                                    RedisStringCommands.SetOption.upsert()
+                            );
+                            connection.publish(aChannel, aCompletion.idempotencyKey().getBytes(StandardCharsets.UTF_8));
+                        }
+                        return null;
+                    });
+
+                    log.info("Idempotency keys completed in batch [count:{}]", completions.size());
+                }
+        );
+    }
+
+    private void setValueAndNotify(
+            final String key,
+            final String idempotencyKey,
+            final byte[] value,
+            final long ttl,
+            final TimeUnit timeUnit
+    ) {
+        final var aReceivers = this.redisTemplate.execute(
+                COMPLETE_SCRIPT,
+                RedisSerializer.byteArray(),
+                new GenericToStringSerializer<>(Long.class),
+                List.of(key),
+                value,
+                String.valueOf(timeUnit.toMillis(ttl)).getBytes(StandardCharsets.UTF_8),
+                COMPLETION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                idempotencyKey.getBytes(StandardCharsets.UTF_8)
+        );
+
+        log.debug("Idempotency key completion published [key:{}] [receivers:{}]", key, aReceivers);
+    }
+
+    // the idempotency key is the hash tag, so any entry derived from the same key lands on the same cluster slot
+    static String redisKey(final String idempotencyKey) {
+        return IDEMPOTENCY_KEY_PREFIX + "{" + idempotencyKey + "}";
+    }
+
+    private static byte[] rawKey(final String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
 }
@@ -0,0 +1,98 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Owns one connection factory and template per standalone Redis node used as an idempotency key shard,
+ * the nodes are given as {@code host:port} and use the same client settings, credentials and database as the
+ * main connection ({@code spring.data.redis}).
+ * The connections, and the pub/sub subscriptions made on them, are closed with the application context.
+ */
+public class RedisIdempotencyKeyShards implements DisposableBean {
+
+    private final Map<String, LettuceConnectionFactory> connectionFactories = new LinkedHashMap<>();
+    private final Map<String, RedisTemplate<String, byte[]>> templates = new LinkedHashMap<>();
+    private final List<RedisMessageListenerContainer> listenerContainers = new ArrayList<>();
+
+    public RedisIdempotencyKeyShards(
+            final List<String> nodes,
+            final RedisProperties redisProperties,
+            final LettuceClientConfiguration clientConfiguration
+    ) {
+        for (final var aNode : nodes) {
+            final var aSeparator = aNode.lastIndexOf(':');
+            if (aSeparator <= 0) {
+                throw new IllegalArgumentException("Invalid idempotency key shard, expected host:port but was " + aNode);
+            }
+
+            final var aStandaloneConfiguration = new RedisStandaloneConfiguration(
+                    aNode.substring(0, aSeparator),
+                    Integer.parseInt(aNode.substring(aSeparator + 1))
+            );
+            aStandaloneConfiguration.setDatabase(redisProperties.getDatabase());
+            aStandaloneConfiguration.setUsername(redisProperties.getUsername());
+            aStandaloneConfiguration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+
+            final var aConnectionFactory = new LettuceConnectionFactory(aStandaloneConfiguration, clientConfiguration);
+            // same rule as the main connection factory, a pooled client never shares a connection
+            aConnectionFactory.setShareNativeConnection(!(clientConfiguration instanceof LettucePoolingClientConfiguration));
+            aConnectionFactory.afterPropertiesSet();
+            aConnectionFactory.start();
+
+            final var aTemplate = new RedisTemplate<String, byte[]>();
+            aTemplate.setConnectionFactory(aConnectionFactory);
+            aTemplate.setKeySerializer(RedisSerializer.string());
+            aTemplate.setValueSerializer(RedisSerializer.byteArray());
+            aTemplate.afterPropertiesSet();
+
+            this.connectionFactories.put(aNode, aConnectionFactory);
+            this.templates.put(aNode, aTemplate);
+        }
+    }
+
+    public Map<String, RedisTemplate<String, byte[]>> getTemplates() {
+        return templates;
+    }
+
+    public boolean isEmpty() {
+        return this.templates.isEmpty();
+    }
+
+    /**
+     * Subscribes the listener on every shard, a message is published on the node that owns the key it is about.
+     */
+    public void subscribe(final MessageListener listener, final Topic topic) {
+        for (final var aConnectionFactory : this.connectionFactories.values()) {
+            final var aContainer = new RedisMessageListenerContainer();
+            aContainer.setConnectionFactory(aConnectionFactory);
+            aContainer.addMessageListener(listener, topic);
+            aContainer.afterPropertiesSet();
+            aContainer.start();
+            this.listenerContainers.add(aContainer);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (final var aContainer : this.listenerContainers) {
+            aContainer.destroy();
+        }
+        this.connectionFactories.values().forEach(LettuceConnectionFactory::destroy);
+    }
+}
@@ -0,0 +1,127 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompletion;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads the idempotency keys over several independent stores (usually standalone Redis nodes) with a
+ * consistent hash ring, every operation of a key goes to the same shard. Each shard is placed on the ring
+ * {@code virtualNodes} times by its name, so adding or removing a shard only moves the keys of its own
+ * ranges instead of rehashing all of them.
+ */
+public class ShardedIdempotencyKeyGateway implements IdempotencyKeyGateway {
+
+    private static final MessageDigest MD5_PROTOTYPE = newMd5();
+
+    private final TreeMap<Long, IdempotencyKeyGateway> ring = new TreeMap<>();
+    private final Map<String, IdempotencyKeyGateway> shards;
+
+    /**
+     * @param shards       the stores by a stable name (e.g. {@code host:port}), the name decides the ring positions
+     * @param virtualNodes how many positions each shard takes on the ring, more positions spread the keys better
+     */
+    public ShardedIdempotencyKeyGateway(final Map<String, ? extends IdempotencyKeyGateway> shards, final int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+
+        this.shards = Map.copyOf(shards);
+        this.shards.forEach((name, gateway) -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                this.ring.put(hash(name + "#" + i), gateway);
+            }
+        });
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        shardFor(idempotencyKey).save(idempotencyKey, ttl, timeUnit);
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        shardFor(idempotencyKey).save(idempotencyKey, body, ttl, timeUnit);
+    }
+
+    @Override
+    public Optional<IdempotencyKeyDTO> find(final String idempotencyKey) {
+        return shardFor(idempotencyKey).find(idempotencyKey);
+    }
+
+    @Override
+    public IdempotencyKeyClaim claim(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        return shardFor(idempotencyKey).claim(idempotencyKey, ttl, timeUnit);
+    }
+
+    @Override
+    public void complete(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        shardFor(idempotencyKey).complete(idempotencyKey, body, ttl, timeUnit);
+    }
+
+    @Override
+    public void markNotReplayable(final String idempotencyKey, final int statusCode, final long ttl, final TimeUnit timeUnit) {
+        shardFor(idempotencyKey).markNotReplayable(idempotencyKey, statusCode, ttl, timeUnit);
+    }
+
+    @Override
+    public void release(final String idempotencyKey) {
+        shardFor(idempotencyKey).release(idempotencyKey);
+    }
+
+    @Override
+    public void completeAll(final List<IdempotencyKeyCompletion> completions) {
+        // one batch per shard, so each shard still receives its keys in a single round trip
+        completions.stream()
+                .collect(Collectors.groupingBy(
+                        completion -> shardFor(completion.idempotencyKey()),
+                        LinkedHashMap::new,
+                        Collectors.toList()
+                ))
+                .forEach(IdempotencyKeyGateway::completeAll);
+    }
+
+    public Map<String, IdempotencyKeyGateway> getShards() {
+        return shards;
+    }
+
+    public IdempotencyKeyGateway shardFor(final String idempotencyKey) {
+        final var aEntry = this.ring.ceilingEntry(hash(idempotencyKey));
+        return aEntry != null ? aEntry.getValue() : this.ring.firstEntry().getValue();
+    }
+
+    private static long hash(final String value) {
+        // md5 spreads close names like "host:port#1" and "host:port#2" evenly over the ring
+        final var aDigest = cloneDigest().digest(value.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(aDigest).getLong();
+    }
+
+    private static MessageDigest cloneDigest() {
+        try {
+            return (MessageDigest) MD5_PROTOTYPE.clone();
+        } catch (final CloneNotSupportedException e) {
+            return newMd5();
+        }
+    }
+
+    private static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompletion;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the completed responses in a small local cache in front of another gateway (usually Redis),
+ * so replays served by the same node do not need a network hop. Only the responses completed through this
+ * gateway are cached, a completed entry read from the delegate is not, since the time it still has left there
+ * is unknown and the copy could outlive it.
+ */
+public class TieredIdempotencyKeyGateway implements IdempotencyKeyGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(TieredIdempotencyKeyGateway.class);
+    private static final String IDEMPOTENCY_SPAN_NAME = "cache.idempotency_key";
+
+    private final IdempotencyKeyGateway delegate;
+    private final Cache<String, NearEntry> nearCache;
+    private final long maxTtlNanos;
+    private final ObservationHelper observationHelper;
+
+    public TieredIdempotencyKeyGateway(
+            final IdempotencyKeyGateway delegate,
+            final ObservationHelper observationHelper,
+            final long maxEntries,
+            final Duration maxTtl
+    ) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.observationHelper = Objects.requireNonNull(observationHelper);
+        this.maxTtlNanos = maxTtl.toNanos();
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new NearEntryExpiry())
+                .build();
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        this.delegate.save(idempotencyKey, ttl, timeUnit);
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        this.delegate.save(idempotencyKey, body, ttl, timeUnit);
+    }
+
+    @Override
+    public Optional<IdempotencyKeyDTO> find(final String idempotencyKey) {
+        final var aNearEntry = this.nearCache.getIfPresent(idempotencyKey);
+
+        if (aNearEntry != null) {
+            log.debug("Idempotency key found in near cache: {}", idempotencyKey);
+            return Optional.of(aNearEntry.response());
+        }
+
+        return this.delegate.find(idempotencyKey);
+    }
+
+    @Override
+    public IdempotencyKeyClaim claim(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        return this.observationHelper.observationWithReturn(
+                IDEMPOTENCY_SPAN_NAME.concat(".near_cache_claim_key"),
+                (span) -> {
+                    span.setAttribute("idempotency_key", idempotencyKey);
+                    span.setAttribute("storage_type", "TIERED");
+
+                    final var aNearEntry = this.nearCache.getIfPresent(idempotencyKey);
+
+                    if (aNearEntry != null) {
+                        span.setAttribute("near_cache_hit", true);
+                        log.debug("Idempotency key found in near cache: {}", idempotencyKey);
+                        return IdempotencyKeyClaim.existing(aNearEntry.response());
+                    }
+
+                    span.setAttribute("near_cache_hit", false);
+
+                    return this.delegate.claim(idempotencyKey, ttl, timeUnit);
+                }
+        );
+    }
+
+    @Override
+    public void complete(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        this.delegate.complete(idempotencyKey, body, ttl, timeUnit);
+        cache(idempotencyKey, IdempotencyKeyDTO.completed(body), ttl, timeUnit);
+    }
+
+    @Override
+    public void markNotReplayable(final String idempotencyKey, final int statusCode, final long ttl, final TimeUnit timeUnit) {
+        this.delegate.markNotReplayable(idempotencyKey, statusCode, ttl, timeUnit);
+    }
+
+    @Override
+    public void release(final String idempotencyKey) {
+        this.delegate.release(idempotencyKey);
+        this.nearCache.invalidate(idempotencyKey);
+    }
+
+    @Override
+    public void completeAll(final List<IdempotencyKeyCompletion> completions) {
+        this.delegate.completeAll(completions);
+        completions.stream()
+                .filter(IdempotencyKeyCompletion::isReplayable)
+                .forEach(completion -> cache(completion.idempotencyKey(), completion.toDTO(), completion.ttl(), completion.timeUnit()));
+    }
+
+    private void cache(final String idempotencyKey, final IdempotencyKeyDTO response, final long ttl, final TimeUnit timeUnit) {
+        // only called right after the delegate wrote the entry with this ttl, so the copy never outlives it
+        final var aTtlNanos = Math.min(timeUnit.toNanos(ttl), this.maxTtlNanos);
+        this.nearCache.put(idempotencyKey, new NearEntry(response, aTtlNanos));
+    }
+
+    private record NearEntry(IdempotencyKeyDTO response, long ttlNanos) {
+    }
+
+    private static class NearEntryExpiry implements Expiry<String, NearEntry> {
+
+        @Override
+        public long expireAfterCreate(final String key, final NearEntry value, final long currentTime) {
+            return value.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(final String key, final NearEntry value, final long currentTime, final long currentDuration) {
+            return value.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterRead(final String key, final NearEntry value, final long currentTime, final long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.kaua.template.infrastructure.idempotency.gateways;
+
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyClaim;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyCompletion;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyDTO;
+import com.kaua.template.infrastructure.idempotency.IdempotencyKeyInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stores the final state of the claimed keys in background, so the request thread returns the response
+ * without waiting for the store. The completions are queued and written in batches through
+ * {@link IdempotencyKeyGateway#completeAll(List)}, a batch is whatever accumulated while the previous one
+ * was being written.
+ * <p>
+ * Until its batch is written a completion is kept in a pending map, the claims and finds of this instance
+ * read it from there, so duplicates arriving in the meantime are replayed instead of seen as in progress.
+ * When the queue is full the completion is written synchronously by the request thread.
+ */
+public class WriteBehindIdempotencyKeyGateway implements IdempotencyKeyGateway, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindIdempotencyKeyGateway.class);
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final IdempotencyKeyGateway delegate;
+    private final BlockingQueue<IdempotencyKeyCompletion> queue;
+    private final ConcurrentHashMap<String, IdempotencyKeyCompletion> pending = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final Thread writer;
+
+    private final LongAdder synchronousWriteCount = new LongAdder();
+    private final LongAdder failedWriteCount = new LongAdder();
+
+    // enqueues hold the read lock from the running check to the offer, close waits for them before it drains
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+
+    public WriteBehindIdempotencyKeyGateway(
+            final IdempotencyKeyGateway delegate,
+            final int queueCapacity,
+            final int batchSize
+    ) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.writer = Thread.ofVirtual().name("idempotency-key-write-behind").start(this::writeLoop);
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        this.delegate.save(idempotencyKey, ttl, timeUnit);
+    }
+
+    @Override
+    public void save(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        this.delegate.save(idempotencyKey, body, ttl, timeUnit);
+    }
+
+    @Override
+    public Optional<IdempotencyKeyDTO> find(final String idempotencyKey) {
+        final var aPending = this.pending.get(idempotencyKey);
+
+        if (aPending != null) {
+            return Optional.of(aPending.toDTO());
+        }
+        return this.delegate.find(idempotencyKey);
+    }
+
+    @Override
+    public IdempotencyKeyClaim claim(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+        final var aPending = this.pending.get(idempotencyKey);
+
+        if (aPending != null) {
+            log.debug("Idempotency key answered from the pending writes: {}", idempotencyKey);
+            return IdempotencyKeyClaim.existing(aPending.toDTO());
+        }
+        return this.delegate.claim(idempotencyKey, ttl, timeUnit);
+    }
+
+    @Override
+    public void complete(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+        enqueue(IdempotencyKeyCompletion.completed(idempotencyKey, body, ttl, timeUnit));
+    }
+
+    @Override
+    public void markNotReplayable(final String idempotencyKey, final int statusCode, final long ttl, final TimeUnit timeUnit) {
+        enqueue(IdempotencyKeyCompletion.notReplayable(idempotencyKey, statusCode, ttl, timeUnit));
+    }
+
+    @Override
+    public void release(final String idempotencyKey) {
+        this.pending.remove(idempotencyKey);
+        this.delegate.release(idempotencyKey);
+    }
+
+    @Override
+    public void completeAll(final List<IdempotencyKeyCompletion> completions) {
+        this.delegate.completeAll(completions);
+    }
+
+    public int pendingCount() {
+        return this.pending.size();
+    }
+
+    public long getSynchronousWriteCount() {
+        return this.synchronousWriteCount.sum();
+    }
+
+    public long getFailedWriteCount() {
+        return this.failedWriteCount.sum();
+    }
+
+    /**
+     * Stops taking new completions in background and writes the ones still queued, the completions submitted
+     * after it are written synchronously by their request thread.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        this.lock.writeLock().lock();
+        try {
+            this.running = false;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        // the writer is not interrupted so a batch being written is not cut in half
+        this.writer.join();
+
+        final var aRemaining = new ArrayList<IdempotencyKeyCompletion>();
+        this.queue.drainTo(aRemaining);
+        if (!aRemaining.isEmpty()) {
+            write(aRemaining);
+        }
+    }
+
+    private void enqueue(final IdempotencyKeyCompletion completion) {
+        // visible to this instance before it is queued, so the writer never removes it before it is added
+        this.pending.put(completion.idempotencyKey(), completion);
+
+        this.lock.readLock().lock();
+        try {
+            if (this.running && this.queue.offer(completion)) {
+                return;
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        // the store is not keeping up or the gateway is closing, the request thread pays for its own write
+        this.synchronousWriteCount.increment();
+        try {
+            completion.applyTo(this.delegate);
+        } finally {
+            this.pending.remove(completion.idempotencyKey(), completion);
+        }
+    }
+
+    private void writeLoop() {
+        final var aBatch = new ArrayList<IdempotencyKeyCompletion>(this.batchSize);
+
+        while (this.running) {
+            try {
+                final var aFirst = this.queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (aFirst != null) {
+                    aBatch.add(aFirst);
+                    this.queue.drainTo(aBatch, this.batchSize - 1);
+                    write(aBatch);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                aBatch.clear();
+            }
+        }
+    }
+
+    private void write(final List<IdempotencyKeyCompletion> batch) {
+        try {
+            this.delegate.completeAll(batch);
+        } catch (final Exception e) {
+            log.warn("Failed to write a batch of idempotency keys, writing them one by one [count:{}]", batch.size(), e);
+            batch.forEach(this::writeOne);
+        } finally {
+            batch.forEach(completion -> this.pending.remove(completion.idempotencyKey(), completion));
+        }
+    }
+
+    private void writeOne(final IdempotencyKeyCompletion completion) {
+        try {
+            completion.applyTo(this.delegate);
+        } catch (final Exception e) {
+            // the key stays in progress in the store until its ttl elapses
+            this.failedWriteCount.increment();
+            log.error("Failed to write the idempotency key [key:{}]", completion.idempotencyKey(), e);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.boot.info.BuildProperties;
 import org.springframework.stereotype.Component;
 
 import java.util.Objects;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -72,4 +73,30 @@ public class ObservationHelper {
             span.end();
         }
     }
+
+    /**
+     * Same as {@link #observationWithReturn(String, Function)} for a non-blocking block, the span ends when
+     * the returned stage completes instead of when the block returns.
+     */
+    public <T> CompletionStage<T> observationAsync(String spanName, Function<Span, CompletionStage<T>> block) {
+        Tracer tracer = this.openTelemetry.getTracer(this.buildProperties.getName());
+        Span span = tracer.spanBuilder(spanName)
+                .setParent(Context.current()).startSpan();
+
+        final CompletionStage<T> stage;
+        try (Scope scope = span.makeCurrent()) {
+            stage = block.apply(span);
+        } catch (Exception e) {
+            span.recordException(e);
+            span.end();
+            throw e;
+        }
+
+        return stage.whenComplete((result, error) -> {
+            if (error != null) {
+                span.recordException(error);
+            }
+            span.end();
+        });
+    }
 }
@@ -0,0 +1,10 @@
+-- storage of the jdbc idempotency key gateway, payload is the binary record written by IdempotencyKeyCodec
+CREATE TABLE idempotency_keys (
+    idempotency_key VARCHAR(255) NOT NULL,
+    payload BYTEA NOT NULL,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    CONSTRAINT pk_idempotency_keys PRIMARY KEY (idempotency_key)
+);
+
+-- used by the purger to find the expired keys without scanning the table
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
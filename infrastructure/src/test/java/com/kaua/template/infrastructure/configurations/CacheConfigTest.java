@@ -0,0 +1,83 @@
+package com.kaua.template.infrastructure.configurations;
+
+import com.kaua.template.AbstractCacheConfig;
+import com.kaua.template.IntegrationTest;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.resource.ClientResources;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.Objects;
+
+@IntegrationTest
+@TestPropertySource(properties = {
+        "spring.data.redis.timeout=3s",
+        "spring.data.redis.client-name=template-test",
+        "spring.data.redis.lettuce.pool.enabled=true",
+        "spring.data.redis.lettuce.pool.max-active=4",
+        "cache.redis.read-from=replicaPreferred",
+        "cache.redis.pipeline-flush-size=64"
+})
+class CacheConfigTest extends AbstractCacheConfig {
+
+    @Autowired
+    private LettuceClientConfiguration redisClientConfiguration;
+
+    @Autowired
+    private LettuceConnectionFactory redisConnectionFactory;
+
+    @Autowired
+    private ClientResources clientResources;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    @Qualifier("replicaRedisConnectionFactory")
+    private LettuceConnectionFactory replicaRedisConnectionFactory;
+
+    @Autowired
+    @Qualifier("replicaByteArrayRedisTemplate")
+    private RedisTemplate<String, byte[]> replicaByteArrayRedisTemplate;
+
+    @Test
+    void givenRedisProperties_whenBuildClientConfiguration_thenApplyThem() {
+        final var aPooling = Assertions.assertInstanceOf(LettucePoolingClientConfiguration.class, this.redisClientConfiguration);
+
+        Assertions.assertEquals(4, aPooling.getPoolConfig().getMaxTotal());
+        Assertions.assertEquals(Duration.ofSeconds(3), this.redisClientConfiguration.getCommandTimeout());
+        Assertions.assertEquals("template-test", this.redisClientConfiguration.getClientName().orElseThrow());
+        Assertions.assertTrue(this.redisClientConfiguration.getReadFrom().isEmpty());
+        Assertions.assertSame(this.clientResources, this.redisClientConfiguration.getClientResources().orElseThrow());
+    }
+
+    @Test
+    void givenAPooledClient_whenCreateConnectionFactory_thenDoNotShareTheNativeConnection() {
+        Assertions.assertFalse(this.redisConnectionFactory.getShareNativeConnection());
+
+        final var aConnection = Objects.requireNonNull(this.redisTemplate.getConnectionFactory()).getConnection();
+        try {
+            Assertions.assertEquals("PONG", aConnection.ping());
+        } finally {
+            aConnection.close();
+        }
+    }
+
+    @Test
+    void givenAReadFrom_whenCreateConnectionFactories_thenOnlyTheReplicaFactoryReadsFromReplicas() {
+        Assertions.assertEquals(ReadFrom.REPLICA_PREFERRED, this.replicaRedisConnectionFactory.getClientConfiguration().getReadFrom().orElseThrow());
+        Assertions.assertTrue(this.redisConnectionFactory.getClientConfiguration().getReadFrom().isEmpty());
+        Assertions.assertSame(this.replicaRedisConnectionFactory, this.replicaByteArrayRedisTemplate.getConnectionFactory());
+
+        this.redisTemplate.opsForValue().set("cache-config:replica", "value");
+        Assertions.assertNotNull(this.replicaByteArrayRedisTemplate.opsForValue().get("cache-config:replica"));
+    }
+}
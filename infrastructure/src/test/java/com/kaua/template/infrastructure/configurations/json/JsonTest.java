@@ -0,0 +1,172 @@
+package com.kaua.template.infrastructure.configurations.json;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.kaua.template.domain.UnitTest;
+import com.kaua.template.infrastructure.exceptions.JsonProcessingFailure;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+class JsonTest extends UnitTest {
+
+    @Test
+    void givenTheSharedMapper_whenCallMapperTwice_thenReturnTheSameInstance() {
+        Assertions.assertSame(Json.mapper(), Json.mapper());
+    }
+
+    @Test
+    void givenAType_whenCallReaderAndWriterTwice_thenReturnTheCachedInstances() {
+        Assertions.assertSame(Json.reader(Sample.class), Json.reader(Sample.class));
+        Assertions.assertSame(Json.writer(Sample.class), Json.writer(Sample.class));
+        Assertions.assertSame(Json.reader(new TypeReference<List<Sample>>() {}), Json.reader(new TypeReference<List<Sample>>() {}));
+    }
+
+    @Test
+    void givenAValue_whenWriteAndRead_thenUseTheSharedSettings() {
+        final var aSample = new Sample("123", 10);
+
+        final var aJson = Json.writeValueAsString(aSample);
+
+        Assertions.assertEquals("{\"sample_id\":\"123\",\"total_items\":10}", aJson);
+        Assertions.assertEquals(aSample, Json.readValue(aJson, Sample.class));
+        Assertions.assertEquals(aSample, Json.readValue(Json.writeValueAsBytes(aSample), Sample.class));
+        Assertions.assertEquals(List.of(aSample), Json.readValue("[" + aJson + "]", new TypeReference<List<Sample>>() {}));
+        Assertions.assertEquals("null", Json.writeValueAsString(null));
+    }
+
+    @Test
+    void givenAStream_whenWriteToAndReadFrom_thenKeepTheStreamOpen() throws Exception {
+        final var aSample = new Sample("123", 10);
+        final var aOut = new TrackingOutputStream();
+
+        Json.writeTo(aSample, aOut);
+
+        Assertions.assertFalse(aOut.closed);
+        Assertions.assertEquals(Json.writeValueAsString(aSample), aOut.toString(StandardCharsets.UTF_8));
+
+        final var aIn = new ByteArrayInputStream(aOut.toByteArray());
+        Assertions.assertEquals(aSample, Json.readFrom(aIn, Sample.class));
+    }
+
+    @Test
+    void givenAByteBuffer_whenWriteToAndReadFrom_thenMoveThePositions() {
+        final var aSample = new Sample("123", 10);
+        final var aExpected = Json.writeValueAsBytes(aSample);
+
+        for (final var aBuffer : List.of(ByteBuffer.allocate(256), ByteBuffer.allocateDirect(256))) {
+            aBuffer.put((byte) ' ');
+            Json.writeTo(aSample, aBuffer);
+
+            Assertions.assertEquals(aExpected.length + 1, aBuffer.position());
+
+            aBuffer.flip().get();
+            Assertions.assertEquals(aSample, Json.readFrom(aBuffer, Sample.class));
+            Assertions.assertFalse(aBuffer.hasRemaining());
+        }
+
+        Assertions.assertThrows(BufferOverflowException.class, () -> Json.writeTo(aSample, ByteBuffer.allocate(4)));
+    }
+
+    @Test
+    void givenAGeneratorAndAParser_whenStreamTokens_thenRoundTripTheDocument() throws Exception {
+        final var aOut = new ByteArrayOutputStream();
+
+        try (final var aGenerator = Json.generator(aOut)) {
+            aGenerator.writeStartObject();
+            aGenerator.writeStringField("sample_id", "123");
+            aGenerator.writeNumberField("total_items", 10);
+            aGenerator.writeEndObject();
+        }
+
+        try (final var aParser = Json.parser(new ByteArrayInputStream(aOut.toByteArray()))) {
+            Assertions.assertEquals(JsonToken.START_OBJECT, aParser.nextToken());
+            Assertions.assertEquals("sample_id", aParser.nextFieldName());
+        }
+
+        Assertions.assertEquals(new Sample("123", 10), Json.readValue(aOut.toByteArray(), Sample.class));
+    }
+
+    @Test
+    void givenAnInvalidDocument_whenReadValue_thenThrowFailureWithTheLocation() {
+        final var aFailure = Assertions.assertThrows(
+                JsonProcessingFailure.class,
+                () -> Json.readValue("{\n  \"sample_id\": \"123\",\n  \"total_items\": nope\n}", Sample.class)
+        );
+
+        Assertions.assertInstanceOf(JsonParseException.class, aFailure.getCause());
+        Assertions.assertEquals(3, aFailure.getLocation().getLineNr());
+        Assertions.assertTrue(aFailure.getMessage().contains("[line:3]"));
+    }
+
+    @Test
+    void givenAValue_whenWriteAndReadSmile_thenRoundTripWithASmallerDocument() {
+        final var aSamples = new Samples(List.of(
+                new Sample("123", 10),
+                new Sample("456", 20),
+                new Sample("789", 30)
+        ));
+
+        final var aSmile = Json.writeValueAsSmile(aSamples);
+
+        // ":)\n" is the header of every smile document
+        Assertions.assertArrayEquals(new byte[]{':', ')', '\n'}, Arrays.copyOf(aSmile, 3));
+        Assertions.assertTrue(aSmile.length < Json.writeValueAsBytes(aSamples).length);
+        Assertions.assertEquals(aSamples, Json.readSmile(aSmile, Samples.class));
+        Assertions.assertSame(Json.smileReader(Samples.class), Json.smileReader(Samples.class));
+        Assertions.assertNotSame(Json.mapper(), Json.smileMapper());
+    }
+
+    @Test
+    void givenAJsonDocument_whenReadSmile_thenThrowFailure() {
+        Assertions.assertThrows(
+                JsonProcessingFailure.class,
+                () -> Json.readSmile(Json.writeValueAsBytes(new Sample("123", 10)), Sample.class)
+        );
+    }
+
+    @Test
+    void givenAnEscapedDocument_whenReadTree_thenParseTheInnerDocument() {
+        final var aSample = new Sample("123", 10);
+        final var aJson = Json.writeValueAsString(aSample);
+        final var aEscaped = Json.writeValueAsString(aJson);
+        final var aEscapedTwice = Json.writeValueAsString(aEscaped);
+
+        Assertions.assertEquals(aSample, Json.readTree(aJson, Sample.class));
+        Assertions.assertEquals(aSample, Json.readTree(aEscaped, Sample.class));
+        Assertions.assertEquals(aSample, Json.readTree(aEscapedTwice, Sample.class));
+        Assertions.assertNull(Json.readTree("null", Sample.class));
+    }
+
+    @Test
+    void givenAnEscapedInvalidDocument_whenReadTree_thenThrowFailure() {
+        Assertions.assertThrows(
+                JsonProcessingFailure.class,
+                () -> Json.readTree(Json.writeValueAsString("{\"sample_id\": nope}"), Sample.class)
+        );
+    }
+
+    private static class TrackingOutputStream extends ByteArrayOutputStream {
+
+        private boolean closed;
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+
+    record Sample(String sampleId, int totalItems) {
+    }
+
+    record Samples(List<Sample> items) {
+    }
+}
@@ -0,0 +1,185 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.IntegrationTest;
+import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyAlreadyExistsException;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyStoreUnavailableException;
+import com.kaua.template.infrastructure.idempotency.gateways.CircuitBreakerIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.InMemoryIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@IntegrationTest
+public class CircuitBreakerIdempotencyKeyGatewayTest {
+
+    @Autowired
+    private ObservationHelper observationHelper;
+
+    @Test
+    void givenConsecutiveFailures_whenReachThreshold_thenOpenAndStopCallingTheStore() {
+        final var aDelegate = new FlakyGateway(this.observationHelper);
+        final var aGateway = new CircuitBreakerIdempotencyKeyGateway(aDelegate, null, 2, Duration.ofMinutes(1), Duration.ZERO, Duration.ZERO);
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        aDelegate.down = true;
+
+        Assertions.assertThrows(IdempotencyKeyStoreUnavailableException.class, () -> aGateway.claim(aKey, 1, TimeUnit.HOURS));
+        Assertions.assertEquals(CircuitBreakerIdempotencyKeyGateway.State.CLOSED, aGateway.getState());
+        Assertions.assertThrows(IdempotencyKeyStoreUnavailableException.class, () -> aGateway.claim(aKey, 1, TimeUnit.HOURS));
+        Assertions.assertEquals(CircuitBreakerIdempotencyKeyGateway.State.OPEN, aGateway.getState());
+
+        Assertions.assertThrows(IdempotencyKeyStoreUnavailableException.class, () -> aGateway.claim(aKey, 1, TimeUnit.HOURS));
+
+        Assertions.assertEquals(2, aDelegate.calls.get());
+        Assertions.assertEquals(1, aGateway.getRejectedCount());
+    }
+
+    @Test
+    void givenAnOpenCircuit_whenOpenDurationElapses_thenTrialCallClosesIt() throws Exception {
+        final var aDelegate = new FlakyGateway(this.observationHelper);
+        final var aGateway = new CircuitBreakerIdempotencyKeyGateway(aDelegate, null, 1, Duration.ofMillis(50), Duration.ZERO, Duration.ZERO);
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        aDelegate.down = true;
+        Assertions.assertThrows(IdempotencyKeyStoreUnavailableException.class, () -> aGateway.claim(aKey, 1, TimeUnit.HOURS));
+        Assertions.assertEquals(CircuitBreakerIdempotencyKeyGateway.State.OPEN, aGateway.getState());
+
+        aDelegate.down = false;
+        Thread.sleep(60);
+
+        Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).acquired());
+        Assertions.assertEquals(CircuitBreakerIdempotencyKeyGateway.State.CLOSED, aGateway.getState());
+    }
+
+    @Test
+    void givenASlowStore_whenClaimAndComplete_thenTimeOutAndUseTheFallback() {
+        final var aDelegate = new FlakyGateway(this.observationHelper);
+        final var aFallback = new InMemoryIdempotencyKeyGateway(this.observationHelper);
+        final var aGateway = new CircuitBreakerIdempotencyKeyGateway(aDelegate, aFallback, 5, Duration.ofMinutes(1), Duration.ofMillis(20), Duration.ofMillis(20));
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        aDelegate.delayMillis = 500;
+        final var aStart = System.nanoTime();
+
+        Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).acquired());
+        aGateway.complete(aKey, new IdempotencyKeyInput(201, "created", Map.of()), 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(System.nanoTime() - aStart < TimeUnit.MILLISECONDS.toNanos(400));
+        Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).isCompleted());
+        Assertions.assertEquals(IdempotencyKeyStatus.COMPLETED, aFallback.find(aKey).orElseThrow().status());
+        Assertions.assertTrue(aGateway.getFallbackCount() >= 2);
+    }
+
+    @Test
+    void givenASlowStoreThatEventuallyClaims_whenClaimTimesOut_thenReleaseTheLateClaimInTheStore() throws Exception {
+        final var aDelegate = new FlakyGateway(this.observationHelper);
+        final var aFallback = new InMemoryIdempotencyKeyGateway(this.observationHelper);
+        final var aGateway = new CircuitBreakerIdempotencyKeyGateway(aDelegate, aFallback, 5, Duration.ofMinutes(1), Duration.ofMillis(20), Duration.ofMillis(20));
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        aDelegate.delayMillis = 100;
+
+        Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).acquired());
+        Assertions.assertTrue(aFallback.find(aKey).isPresent());
+
+        final var aDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (aDelegate.releases.get() == 0) {
+            Assertions.assertTrue(System.nanoTime() < aDeadline, "the late claim was not released");
+            Thread.sleep(10);
+        }
+
+        Assertions.assertTrue(aDelegate.find(aKey).isEmpty());
+    }
+
+    @Test
+    void givenAKeyCompletedInTheFallback_whenTheCircuitClosesAndTheKeyIsRetried_thenReplayFromTheFallback() throws Exception {
+        final var aDelegate = new FlakyGateway(this.observationHelper);
+        final var aFallback = new InMemoryIdempotencyKeyGateway(this.observationHelper);
+        final var aGateway = new CircuitBreakerIdempotencyKeyGateway(aDelegate, aFallback, 1, Duration.ofMillis(50), Duration.ZERO, Duration.ZERO);
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        aDelegate.down = true;
+        Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).acquired());
+        aGateway.complete(aKey, new IdempotencyKeyInput(201, "created", Map.of()), 1, TimeUnit.HOURS);
+        Assertions.assertEquals(CircuitBreakerIdempotencyKeyGateway.State.OPEN, aGateway.getState());
+
+        aDelegate.down = false;
+        Thread.sleep(60);
+
+        // the trial call of another key closes the circuit
+        Assertions.assertTrue(aGateway.claim(IdentifierUtils.generateNewIdWithoutHyphen(), 1, TimeUnit.HOURS).acquired());
+        Assertions.assertEquals(CircuitBreakerIdempotencyKeyGateway.State.CLOSED, aGateway.getState());
+
+        final var aRetry = aGateway.claim(aKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(aRetry.isCompleted());
+        Assertions.assertEquals("created", new String(aRetry.existing().body(), StandardCharsets.UTF_8));
+        Assertions.assertTrue(aDelegate.find(aKey).isEmpty());
+    }
+
+    @Test
+    void givenAnExistingKey_whenSave_thenRethrowWithoutCountingAFailure() {
+        final var aDelegate = new FlakyGateway(this.observationHelper);
+        final var aGateway = new CircuitBreakerIdempotencyKeyGateway(aDelegate, null, 1, Duration.ofMinutes(1), Duration.ZERO, Duration.ZERO);
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        aGateway.save(aKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertThrows(IdempotencyKeyAlreadyExistsException.class, () -> aGateway.save(aKey, 1, TimeUnit.HOURS));
+        Assertions.assertEquals(CircuitBreakerIdempotencyKeyGateway.State.CLOSED, aGateway.getState());
+    }
+
+    // fails or answers late on demand, like a store that is down or overloaded
+    private static class FlakyGateway extends InMemoryIdempotencyKeyGateway {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger releases = new AtomicInteger();
+        private volatile boolean down;
+        private volatile long delayMillis;
+
+        FlakyGateway(final ObservationHelper observationHelper) {
+            super(observationHelper);
+        }
+
+        @Override
+        public IdempotencyKeyClaim claim(final String idempotencyKey, final long ttl, final TimeUnit timeUnit) {
+            beforeCall();
+            return super.claim(idempotencyKey, ttl, timeUnit);
+        }
+
+        @Override
+        public void complete(final String idempotencyKey, final IdempotencyKeyInput body, final long ttl, final TimeUnit timeUnit) {
+            beforeCall();
+            super.complete(idempotencyKey, body, ttl, timeUnit);
+        }
+
+        @Override
+        public void release(final String idempotencyKey) {
+            super.release(idempotencyKey);
+            this.releases.incrementAndGet();
+        }
+
+        private void beforeCall() {
+            this.calls.incrementAndGet();
+            if (this.down) {
+                throw new IllegalStateException("store down");
+            }
+            if (this.delayMillis > 0) {
+                try {
+                    Thread.sleep(this.delayMillis);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+}
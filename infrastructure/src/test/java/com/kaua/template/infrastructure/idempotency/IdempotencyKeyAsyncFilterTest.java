@@ -0,0 +1,217 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.IntegrationTest;
+import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.configurations.properties.IdempotencyKeyProperties;
+import com.kaua.template.infrastructure.idempotency.gateways.ExecutorAsyncIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.InMemoryIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@IntegrationTest
+public class IdempotencyKeyAsyncFilterTest {
+
+    private static final String RESPONSE_BODY = "{\"id\":\"123\"}";
+
+    @Autowired
+    private RequestMappingHandlerMapping requestMappingHandlerMapping;
+
+    @Autowired
+    @Qualifier("handlerExceptionResolver")
+    private HandlerExceptionResolver handlerExceptionResolver;
+
+    @Autowired
+    private ObservationHelper observationHelper;
+
+    @Autowired
+    private IdempotencyKeyProperties properties;
+
+    private final AtomicInteger chainCalls = new AtomicInteger();
+
+    private final FilterChain filterChain = (request, response) -> {
+        this.chainCalls.incrementAndGet();
+        final var aResponse = (HttpServletResponse) response;
+        aResponse.setStatus(201);
+        aResponse.getOutputStream().write(RESPONSE_BODY.getBytes(StandardCharsets.UTF_8));
+    };
+
+    @Test
+    void givenAPendingClaim_whenFilter_thenSuspendAndProcessOnAsyncDispatch() throws Exception {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(this.observationHelper);
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        // every operation completes later on another thread, like a remote store
+        try (final var aAsyncGateway = new ExecutorAsyncIdempotencyKeyGateway(
+                aGateway,
+                CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS)
+        )) {
+            final var aFilter = newFilter(aGateway, aAsyncGateway);
+
+            final var aFirstResponse = dispatch(aFilter, aKey);
+
+            Assertions.assertEquals(201, aFirstResponse.getStatus());
+            Assertions.assertEquals(RESPONSE_BODY, aFirstResponse.getContentAsString());
+            Assertions.assertEquals(1, this.chainCalls.get());
+
+            waitUntilCompleted(aGateway, aKey);
+
+            final var aReplayedResponse = dispatch(aFilter, aKey);
+
+            Assertions.assertEquals(201, aReplayedResponse.getStatus());
+            Assertions.assertEquals(RESPONSE_BODY, aReplayedResponse.getContentAsString());
+            Assertions.assertEquals("true", aReplayedResponse.getHeader(IdempotencyKey.IDEMPOTENCY_RESPONSE_HEADER));
+            Assertions.assertEquals(1, this.chainCalls.get());
+        }
+    }
+
+    @Test
+    void givenAnAlreadyCompletedClaim_whenFilter_thenProcessWithoutSuspending() throws Exception {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(this.observationHelper);
+        final var aFilter = newFilter(aGateway, ExecutorAsyncIdempotencyKeyGateway.direct(aGateway));
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        final var aRequest = newRequest(aKey);
+        final var aResponse = new MockHttpServletResponse();
+
+        aFilter.doFilterInternal(aRequest, aResponse, this.filterChain);
+
+        Assertions.assertFalse(aRequest.isAsyncStarted());
+        Assertions.assertEquals(201, aResponse.getStatus());
+        Assertions.assertEquals(1, this.chainCalls.get());
+        Assertions.assertEquals(IdempotencyKeyStatus.COMPLETED, aGateway.find(aKey).orElseThrow().status());
+    }
+
+    @Test
+    void givenAKeyInProgressAndWaitEnabled_whenFilter_thenSuspendUntilTheOwnerCompletes() throws Exception {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(this.observationHelper);
+        final var aWaiters = new IdempotencyKeyWaiters(aGateway, true, Duration.ofSeconds(5), Duration.ofSeconds(5));
+        final var aFilter = newFilter(aGateway, ExecutorAsyncIdempotencyKeyGateway.direct(aGateway), aWaiters);
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).acquired());
+
+        final var aRequest = newRequest(aKey);
+        final var aResponse = new MockHttpServletResponse();
+
+        aFilter.doFilterInternal(aRequest, aResponse, this.filterChain);
+
+        // the worker is back, the duplicate waits without a thread
+        Assertions.assertTrue(aRequest.isAsyncStarted());
+        Assertions.assertEquals(1, aWaiters.size());
+
+        final var aDispatched = new CountDownLatch(1);
+        ((MockAsyncContext) aRequest.getAsyncContext()).addDispatchHandler(aDispatched::countDown);
+
+        aGateway.complete(aKey, new IdempotencyKeyInput(201, RESPONSE_BODY, Map.of()), 1, TimeUnit.HOURS);
+        aWaiters.signal(aKey);
+
+        Assertions.assertTrue(aDispatched.await(1, TimeUnit.SECONDS));
+
+        aRequest.setAsyncStarted(false);
+        aRequest.setDispatcherType(DispatcherType.ASYNC);
+        aFilter.doFilterInternal(aRequest, aResponse, this.filterChain);
+
+        Assertions.assertEquals(201, aResponse.getStatus());
+        Assertions.assertEquals("true", aResponse.getHeader(IdempotencyKey.IDEMPOTENCY_RESPONSE_HEADER));
+        Assertions.assertEquals(0, this.chainCalls.get());
+        Assertions.assertEquals(0, aWaiters.size());
+    }
+
+    @Test
+    void givenAnAsyncDispatchStartedByTheHandler_whenFilter_thenOnlyContinueTheChain() throws Exception {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(this.observationHelper);
+        final var aFilter = newFilter(aGateway, ExecutorAsyncIdempotencyKeyGateway.direct(aGateway));
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        final var aRequest = newRequest(aKey);
+        aRequest.setDispatcherType(DispatcherType.ASYNC);
+
+        aFilter.doFilterInternal(aRequest, new MockHttpServletResponse(), this.filterChain);
+
+        Assertions.assertEquals(1, this.chainCalls.get());
+        Assertions.assertTrue(aGateway.find(aKey).isEmpty());
+    }
+
+    // runs the request dispatch, and the async dispatch when the filter suspended it
+    private MockHttpServletResponse dispatch(final IdempotencyKeyFilter filter, final String key) throws Exception {
+        final var aRequest = newRequest(key);
+        final var aResponse = new MockHttpServletResponse();
+
+        filter.doFilterInternal(aRequest, aResponse, this.filterChain);
+
+        Assertions.assertTrue(aRequest.isAsyncStarted());
+
+        final var aDispatched = new CountDownLatch(1);
+        ((MockAsyncContext) aRequest.getAsyncContext()).addDispatchHandler(aDispatched::countDown);
+        Assertions.assertTrue(aDispatched.await(1, TimeUnit.SECONDS));
+
+        aRequest.setAsyncStarted(false);
+        aRequest.setDispatcherType(DispatcherType.ASYNC);
+        filter.doFilterInternal(aRequest, aResponse, this.filterChain);
+
+        return aResponse;
+    }
+
+    private IdempotencyKeyFilter newFilter(
+            final InMemoryIdempotencyKeyGateway gateway,
+            final ExecutorAsyncIdempotencyKeyGateway asyncGateway
+    ) {
+        return newFilter(gateway, asyncGateway, IdempotencyKeyWaiters.disabled(gateway));
+    }
+
+    private IdempotencyKeyFilter newFilter(
+            final InMemoryIdempotencyKeyGateway gateway,
+            final ExecutorAsyncIdempotencyKeyGateway asyncGateway,
+            final IdempotencyKeyWaiters waiters
+    ) {
+        return new IdempotencyKeyFilter(
+                gateway,
+                asyncGateway,
+                waiters,
+                this.requestMappingHandlerMapping,
+                this.handlerExceptionResolver,
+                this.observationHelper,
+                this.properties,
+                IdempotencyKeyMetrics.disabled()
+        );
+    }
+
+    private static MockHttpServletRequest newRequest(final String key) {
+        final var aRequest = new MockHttpServletRequest("POST", "/test/idempotency-key-helper/success");
+        aRequest.setAsyncSupported(true);
+        aRequest.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        aRequest.addHeader("Accept", MediaType.APPLICATION_JSON_VALUE);
+        aRequest.addHeader(IdempotencyKey.IDEMPOTENCY_KEY_HEADER, key);
+        aRequest.setContent(RESPONSE_BODY.getBytes(StandardCharsets.UTF_8));
+        return aRequest;
+    }
+
+    private static void waitUntilCompleted(final InMemoryIdempotencyKeyGateway gateway, final String key) throws InterruptedException {
+        final var aDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (System.nanoTime() < aDeadline
+                && !gateway.find(key).map(it -> it.status() == IdempotencyKeyStatus.COMPLETED).orElse(false)) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(IdempotencyKeyStatus.COMPLETED, gateway.find(key).orElseThrow().status());
+    }
+}
@@ -0,0 +1,114 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.domain.UnitTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+class IdempotencyKeyCodecTest extends UnitTest {
+
+    @Test
+    void givenACompletedEntry_whenEncodeAndDecode_thenKeepRawBodyAndHeaders() {
+        final var aBody = "{\"id\":\"123\",\"name\":\"ção\"}".getBytes(StandardCharsets.UTF_8);
+        final var aHeaders = new LinkedHashMap<String, String>();
+        aHeaders.put("Location", "/test/123");
+        aHeaders.put("Content-Type", "application/json");
+
+        final var aDTO = new IdempotencyKeyDTO(201, aBody, aHeaders, "gzip", IdempotencyKeyStatus.COMPLETED);
+
+        final var aResult = IdempotencyKeyCodec.decode(IdempotencyKeyCodec.encode(aDTO));
+
+        Assertions.assertEquals(201, aResult.statusCode());
+        Assertions.assertArrayEquals(aBody, aResult.body());
+        Assertions.assertEquals(aHeaders, aResult.headers());
+        Assertions.assertEquals("gzip", aResult.contentEncoding());
+        Assertions.assertEquals(IdempotencyKeyStatus.COMPLETED, aResult.status());
+    }
+
+    @Test
+    void givenAnInProgressEntry_whenEncodeAndDecode_thenKeepStatus() {
+        final var aResult = IdempotencyKeyCodec.decode(IdempotencyKeyCodec.encode(IdempotencyKeyDTO.inProgress()));
+
+        Assertions.assertEquals(0, aResult.statusCode());
+        Assertions.assertEquals(0, aResult.body().length);
+        Assertions.assertTrue(aResult.headers().isEmpty());
+        Assertions.assertNull(aResult.contentEncoding());
+        Assertions.assertEquals(IdempotencyKeyStatus.IN_PROGRESS, aResult.status());
+    }
+
+    @Test
+    void givenAnEntryWithFingerprint_whenEncodeAndDecode_thenKeepFingerprint() {
+        final var aFingerprint = new byte[]{1, 2, 3, 4, 5, 6, 7, 8};
+        final var aDTO = new IdempotencyKeyDTO(200, "OK".getBytes(StandardCharsets.UTF_8), Map.of(), null, IdempotencyKeyStatus.COMPLETED, aFingerprint);
+
+        final var aResult = IdempotencyKeyCodec.decode(IdempotencyKeyCodec.encode(aDTO));
+
+        Assertions.assertArrayEquals(aFingerprint, aResult.fingerprint());
+        Assertions.assertEquals("OK", new String(aResult.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void givenAVersionOneRecord_whenDecode_thenReadWithoutFingerprint() {
+        // version, status, http status, content encoding length, header count, body length, body
+        final var aRecord = new byte[]{1, 1, 0, (byte) 200, 0, 0, 0, 0, 0, 0, 0, 2, 'O', 'K'};
+
+        final var aResult = IdempotencyKeyCodec.decode(aRecord);
+
+        Assertions.assertEquals(200, aResult.statusCode());
+        Assertions.assertEquals(IdempotencyKeyStatus.COMPLETED, aResult.status());
+        Assertions.assertEquals("OK", new String(aResult.body(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(0, aResult.fingerprint().length);
+    }
+
+    @Test
+    void givenACapturedBody_whenEncode_thenMatchTheEncodingOfTheJoinedBody() {
+        final var aBody = new byte[40_000];
+        new Random(7).nextBytes(aBody);
+        final var aFingerprint = new byte[]{1, 2, 3};
+
+        final var aBuffer = new IdempotencyKeyCaptureBuffer(1024 * 1024);
+        aBuffer.write(aBody, 0, 100);
+        aBuffer.write(aBody[100]);
+        aBuffer.write(aBody, 101, aBody.length - 101);
+
+        final var aCaptured = new IdempotencyKeyInput(201, aBuffer.captured(), Map.of("Location", "/test/123"), aFingerprint);
+        final var aJoined = new IdempotencyKeyInput(201, aBody, Map.of("Location", "/test/123"), aFingerprint);
+        aBuffer.release();
+
+        Assertions.assertArrayEquals(
+                IdempotencyKeyCodec.encode(aJoined, IdempotencyKeyCompressor.none()),
+                IdempotencyKeyCodec.encode(aCaptured, IdempotencyKeyCompressor.none())
+        );
+
+        final var aResult = IdempotencyKeyCodec.decode(IdempotencyKeyCodec.encode(aCaptured, IdempotencyKeyCompressor.none()));
+        Assertions.assertArrayEquals(aBody, aResult.body());
+        Assertions.assertArrayEquals(aFingerprint, aResult.fingerprint());
+    }
+
+    @Test
+    void givenACapturedCompressibleBody_whenEncodeWithCompressor_thenCompressFromTheChunks() {
+        final var aBody = "{\"id\":\"123\"}".repeat(4_000).getBytes(StandardCharsets.UTF_8);
+        final var aCompressor = new IdempotencyKeyCompressor(IdempotencyKeyCompressor.Algorithm.GZIP, 1024, Deflater.DEFAULT_COMPRESSION);
+
+        final var aBuffer = new IdempotencyKeyCaptureBuffer(1024 * 1024);
+        aBuffer.write(aBody, 0, aBody.length);
+
+        final var aResult = IdempotencyKeyCodec.decode(IdempotencyKeyCodec.encode(new IdempotencyKeyInput(200, aBuffer.captured(), Map.of()), aCompressor));
+
+        Assertions.assertEquals("gzip", aResult.contentEncoding());
+        Assertions.assertTrue(aResult.body().length < aBody.length);
+        Assertions.assertArrayEquals(aBody, IdempotencyKeyCompressor.decompress(aResult));
+    }
+
+    @Test
+    void givenAnUnknownVersion_whenDecode_thenThrowIllegalArgumentException() {
+        final var aRecord = new byte[]{9, 0, 0, 0};
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IdempotencyKeyCodec.decode(aRecord));
+    }
+}
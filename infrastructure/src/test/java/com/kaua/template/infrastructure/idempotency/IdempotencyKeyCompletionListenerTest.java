@@ -0,0 +1,67 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.AbstractCacheConfig;
+import com.kaua.template.IntegrationTest;
+import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@IntegrationTest
+@TestPropertySource(properties = {
+        "idempotency-key.storage.type=redis",
+        "idempotency-key.wait.enabled=true",
+        "idempotency-key.wait.max-wait=20s",
+        // long enough that only the pub/sub notification can wake the waiter within the test timeout
+        "idempotency-key.wait.poll-interval=20s"
+})
+class IdempotencyKeyCompletionListenerTest extends AbstractCacheConfig {
+
+    @Autowired
+    private IdempotencyKeyGateway idempotencyKeyGateway;
+
+    @Autowired
+    private IdempotencyKeyWaiters idempotencyKeyWaiters;
+
+    @Test
+    void givenAWaitingRequest_whenKeyIsCompletedInRedis_thenWakeWaiterThroughPubSub() throws Exception {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+        try (final var aExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var aWaiting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return this.idempotencyKeyWaiters.await(aIdempotencyKey, 1, TimeUnit.HOURS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }, aExecutor);
+
+            while (this.idempotencyKeyWaiters.size() == 0) {
+                Thread.sleep(5);
+            }
+
+            // completed without a local signal, as if another instance owned the key
+            this.idempotencyKeyGateway.complete(
+                    aIdempotencyKey,
+                    new IdempotencyKeyInput(201, "created", Map.of()),
+                    1,
+                    TimeUnit.HOURS
+            );
+
+            final var aClaim = aWaiting.get(5, TimeUnit.SECONDS);
+
+            Assertions.assertTrue(aClaim.isCompleted());
+            Assertions.assertEquals(201, aClaim.existing().statusCode());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.domain.UnitTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+class IdempotencyKeyCompressorTest extends UnitTest {
+
+    private static final byte[] COMPRESSIBLE_BODY = "{\"id\":\"123\"}".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void givenAGzipCompressor_whenCompressAndDecompress_thenReturnSameBody() {
+        final var aCompressor = new IdempotencyKeyCompressor(IdempotencyKeyCompressor.Algorithm.GZIP, 1024, Deflater.BEST_SPEED);
+
+        final var aResult = aCompressor.compress(completed(COMPRESSIBLE_BODY, Map.of()));
+
+        Assertions.assertEquals("gzip", aResult.contentEncoding());
+        Assertions.assertTrue(aResult.body().length < COMPRESSIBLE_BODY.length);
+        Assertions.assertTrue(IdempotencyKeyCompressor.isCompressedByStore(aResult));
+        Assertions.assertArrayEquals(COMPRESSIBLE_BODY, IdempotencyKeyCompressor.decompress(aResult));
+    }
+
+    @Test
+    void givenADeflateCompressor_whenCompressAndDecompress_thenReturnSameBody() {
+        final var aCompressor = new IdempotencyKeyCompressor(IdempotencyKeyCompressor.Algorithm.DEFLATE, 1024, Deflater.BEST_COMPRESSION);
+
+        final var aResult = aCompressor.compress(completed(COMPRESSIBLE_BODY, Map.of()));
+
+        Assertions.assertEquals("deflate", aResult.contentEncoding());
+        Assertions.assertArrayEquals(COMPRESSIBLE_BODY, IdempotencyKeyCompressor.decompress(aResult));
+    }
+
+    @Test
+    void givenABodySmallerThanThreshold_whenCompress_thenKeepBody() {
+        final var aCompressor = new IdempotencyKeyCompressor(IdempotencyKeyCompressor.Algorithm.GZIP, COMPRESSIBLE_BODY.length + 1, Deflater.BEST_SPEED);
+        final var aDTO = completed(COMPRESSIBLE_BODY, Map.of());
+
+        Assertions.assertSame(aDTO, aCompressor.compress(aDTO));
+    }
+
+    @Test
+    void givenAnIncompressibleBody_whenCompress_thenKeepBody() {
+        final var aBody = new byte[4096];
+        new Random(42).nextBytes(aBody);
+        final var aCompressor = new IdempotencyKeyCompressor(IdempotencyKeyCompressor.Algorithm.GZIP, 1024, Deflater.BEST_SPEED);
+        final var aDTO = completed(aBody, Map.of());
+
+        Assertions.assertSame(aDTO, aCompressor.compress(aDTO));
+    }
+
+    @Test
+    void givenABodyAlreadyEncodedByTheHandler_whenCompressAndDecompress_thenKeepBody() {
+        final var aCompressor = new IdempotencyKeyCompressor(IdempotencyKeyCompressor.Algorithm.GZIP, 1024, Deflater.BEST_SPEED);
+        final var aDTO = IdempotencyKeyDTO.completed(new IdempotencyKeyInput(200, COMPRESSIBLE_BODY, Map.of("Content-Encoding", "br")));
+
+        final var aResult = aCompressor.compress(aDTO);
+
+        Assertions.assertSame(aDTO, aResult);
+        Assertions.assertFalse(IdempotencyKeyCompressor.isCompressedByStore(aResult));
+        Assertions.assertArrayEquals(COMPRESSIBLE_BODY, IdempotencyKeyCompressor.decompress(aResult));
+    }
+
+    @Test
+    void givenANoneCompressor_whenCompress_thenKeepBody() {
+        final var aDTO = completed(COMPRESSIBLE_BODY, Map.of());
+
+        Assertions.assertSame(aDTO, IdempotencyKeyCompressor.none().compress(aDTO));
+    }
+
+    private static IdempotencyKeyDTO completed(final byte[] body, final Map<String, String> headers) {
+        return IdempotencyKeyDTO.completed(new IdempotencyKeyInput(200, body, headers));
+    }
+}
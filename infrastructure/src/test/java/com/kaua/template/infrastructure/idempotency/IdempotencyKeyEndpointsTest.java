@@ -0,0 +1,116 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.IntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@IntegrationTest
+public class IdempotencyKeyEndpointsTest {
+
+    @Autowired
+    private RequestMappingHandlerMapping requestMappingHandlerMapping;
+
+    @Test
+    void givenAnAnnotatedEndpoint_whenFind_thenReturnPolicy() throws Exception {
+        final var aEndpoints = IdempotencyKeyEndpoints.from(requestMappingHandlerMapping);
+
+        final var aPolicy = aEndpoints.find(new MockHttpServletRequest("POST", "/test/idempotency-key-helper/success"));
+
+        Assertions.assertEquals(new IdempotencyKeyPolicy(
+                1,
+                TimeUnit.HOURS,
+                "IdempotencyKeyHelperControllerTest#testIdempotencyKeyHelperWithReturnSuccess",
+                -1,
+                EnumSet.of(HttpStatus.Series.SUCCESSFUL, HttpStatus.Series.REDIRECTION, HttpStatus.Series.CLIENT_ERROR),
+                IdempotencyKey.Scope.GLOBAL
+        ), aPolicy);
+    }
+
+    @Test
+    void givenAnAnnotatedEndpointWithPathVariable_whenFind_thenReturnAnnotationValues() throws Exception {
+        final var aEndpoints = IdempotencyKeyEndpoints.from(requestMappingHandlerMapping);
+
+        final var aPolicy = aEndpoints.find(new MockHttpServletRequest("POST", "/test/idempotency-key-helper/override/123"));
+
+        Assertions.assertEquals(new IdempotencyKeyPolicy(
+                30,
+                TimeUnit.MINUTES,
+                "IdempotencyKeyHelperControllerTest#testIdempotencyKeyHelperWithPathVariable",
+                -1,
+                EnumSet.of(HttpStatus.Series.SUCCESSFUL, HttpStatus.Series.REDIRECTION, HttpStatus.Series.CLIENT_ERROR),
+                IdempotencyKey.Scope.GLOBAL
+        ), aPolicy);
+    }
+
+    @Test
+    void givenAnEndpointWithPolicyAttributes_whenFind_thenReturnThem() throws Exception {
+        final var aEndpoints = IdempotencyKeyEndpoints.from(requestMappingHandlerMapping);
+
+        final var aPolicy = aEndpoints.find(new MockHttpServletRequest("POST", "/test/idempotency-key-helper/scoped/123"));
+
+        Assertions.assertEquals(64, aPolicy.maxBodySize(1024));
+        Assertions.assertEquals(Set.of(HttpStatus.Series.SUCCESSFUL), aPolicy.storedStatus());
+        Assertions.assertEquals(IdempotencyKey.Scope.PATH, aPolicy.scope());
+        Assertions.assertTrue(aPolicy.stores(201));
+        Assertions.assertFalse(aPolicy.stores(400));
+    }
+
+    @Test
+    void givenAScopedPolicy_whenScopedKey_thenCombineWithPrincipalOrPath() {
+        final var aRequest = new MockHttpServletRequest("POST", "/orders/1");
+        final var aPolicy = new IdempotencyKeyPolicy(1, TimeUnit.HOURS, "Test#test", -1, EnumSet.allOf(HttpStatus.Series.class), IdempotencyKey.Scope.GLOBAL);
+
+        Assertions.assertEquals("key", aPolicy.scopedKey(aRequest, "key"));
+        Assertions.assertEquals("path:13:POST /orders/1:key", withScope(aPolicy, IdempotencyKey.Scope.PATH).scopedKey(aRequest, "key"));
+        Assertions.assertEquals("principal:9:anonymous:key", withScope(aPolicy, IdempotencyKey.Scope.PRINCIPAL).scopedKey(aRequest, "key"));
+
+        aRequest.setUserPrincipal(() -> "john");
+        Assertions.assertEquals("principal:4:john:key", withScope(aPolicy, IdempotencyKey.Scope.PRINCIPAL).scopedKey(aRequest, "key"));
+        Assertions.assertEquals(1024, aPolicy.maxBodySize(1024));
+    }
+
+    @Test
+    void givenAMoreSpecificEndpointWithoutAnnotation_whenFind_thenReturnNull() throws Exception {
+        final var aEndpoints = IdempotencyKeyEndpoints.from(requestMappingHandlerMapping);
+
+        Assertions.assertNull(aEndpoints.find(new MockHttpServletRequest("POST", "/test/idempotency-key-helper/override/plain")));
+    }
+
+    @Test
+    void givenAnEndpointWithoutAnnotation_whenFind_thenReturnNull() throws Exception {
+        final var aEndpoints = IdempotencyKeyEndpoints.from(requestMappingHandlerMapping);
+
+        Assertions.assertNull(aEndpoints.find(new MockHttpServletRequest("GET", "/test/idempotency-key-helper/123")));
+        Assertions.assertNull(aEndpoints.find(new MockHttpServletRequest("PUT", "/test/idempotency-key-helper/put/123")));
+        Assertions.assertNull(aEndpoints.find(new MockHttpServletRequest("POST", "/not-mapped")));
+    }
+
+    @Test
+    void givenAnAnnotatedEndpointCalledWithOtherMethod_whenFind_thenReturnNull() throws Exception {
+        final var aEndpoints = IdempotencyKeyEndpoints.from(requestMappingHandlerMapping);
+
+        Assertions.assertNull(aEndpoints.find(new MockHttpServletRequest("DELETE", "/test/idempotency-key-helper/success")));
+    }
+
+    @Test
+    void givenARequestWithoutParsedPath_whenFind_thenDoNotCacheThePath() throws Exception {
+        final var aEndpoints = IdempotencyKeyEndpoints.from(requestMappingHandlerMapping);
+        final var aRequest = new MockHttpServletRequest("PUT", "/test/idempotency-key-helper/put/idempotency/123");
+
+        Assertions.assertNotNull(aEndpoints.find(aRequest));
+        Assertions.assertFalse(ServletRequestPathUtils.hasParsedRequestPath(aRequest));
+    }
+
+    private static IdempotencyKeyPolicy withScope(final IdempotencyKeyPolicy policy, final IdempotencyKey.Scope scope) {
+        return new IdempotencyKeyPolicy(policy.ttl(), policy.timeUnit(), policy.endpoint(), policy.maxBodySize(), policy.storedStatus(), scope);
+    }
+}
@@ -3,8 +3,11 @@ package com.kaua.template.infrastructure.idempotency;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kaua.template.IntegrationTest;
 import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.configurations.properties.IdempotencyKeyProperties;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyStoreUnavailableException;
 import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
 import com.kaua.template.infrastructure.utils.ObservationHelper;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -13,17 +16,30 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.web.servlet.HandlerExceptionResolver;
-import org.springframework.web.servlet.HandlerExecutionChain;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
 @IntegrationTest
 @AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "idempotency-key.capture.max-size=1KB",
+        "idempotency-key.compression.threshold=256B"
+})
 public class IdempotencyKeyFilterTest {
 
     @Autowired
@@ -38,6 +54,15 @@ public class IdempotencyKeyFilterTest {
     @Autowired
     private ObservationHelper observationHelper;
 
+    @Autowired
+    private IdempotencyKeyProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RequestMappingHandlerMapping requestMappingHandlerMapping;
+
     @Test
     void givenAValidPostMethodWithValidNonExistsIdempotencyKey_whenCallEndpoint_thenReturnSuccess() throws Exception {
         final var aId = IdentifierUtils.generateNewIdWithoutHyphen();
@@ -90,6 +115,229 @@ public class IdempotencyKeyFilterTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(aId));
     }
 
+    @Test
+    void givenAnExistsIdempotencyKeyReusedWithOtherBody_whenCallEndpoint_thenReturnUnprocessableEntity() throws Exception {
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        final var aFirstRequest = MockMvcRequestBuilders.post("/test/idempotency-key-helper/success")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("x-idempotency-key", aKey)
+                .content(this.mapper.writeValueAsString(new IdempotencyKeyBodyTest("first")));
+
+        this.mvc.perform(aFirstRequest)
+                .andExpect(MockMvcResultMatchers.status().isCreated());
+
+        final var aSecondRequest = MockMvcRequestBuilders.post("/test/idempotency-key-helper/success")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("x-idempotency-key", aKey)
+                .content(this.mapper.writeValueAsString(new IdempotencyKeyBodyTest("second")));
+
+        this.mvc.perform(aSecondRequest)
+                .andDo(MockMvcResultHandlers.print())
+                .andExpect(MockMvcResultMatchers.status().isUnprocessableEntity())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("x-idempotency-response"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("The idempotency key was already used with a different request"));
+    }
+
+    @Test
+    void givenAFormPostWithExistsIdempotencyKey_whenRetry_thenReplayAndRejectOtherForm() throws Exception {
+        final var aId = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        final var aFirstRequest = MockMvcRequestBuilders.post("/test/idempotency-key-helper/form")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .header("x-idempotency-key", aKey)
+                .content("id=" + aId);
+
+        this.mvc.perform(aFirstRequest)
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("x-idempotency-response"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(aId));
+
+        final var aRetryRequest = MockMvcRequestBuilders.post("/test/idempotency-key-helper/form")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .header("x-idempotency-key", aKey)
+                .content("id=" + aId);
+
+        this.mvc.perform(aRetryRequest)
+                .andDo(MockMvcResultHandlers.print())
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.header().string("x-idempotency-response", "true"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(aId));
+
+        final var aOtherFormRequest = MockMvcRequestBuilders.post("/test/idempotency-key-helper/form")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .header("x-idempotency-key", aKey)
+                .content("id=other");
+
+        this.mvc.perform(aOtherFormRequest)
+                .andExpect(MockMvcResultMatchers.status().isUnprocessableEntity());
+    }
+
+    @Test
+    void givenAValidPostMethodWithInProgressIdempotencyKey_whenCallEndpoint_thenReturnConflict() throws Exception {
+        final var aId = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        final var aBody = new IdempotencyKeyBodyTest(aId);
+
+        this.idempotencyKeyGateway.claim(aKey, 1, TimeUnit.HOURS);
+
+        final var request = MockMvcRequestBuilders.post("/test/idempotency-key-helper/success")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("x-idempotency-key", aKey)
+                .content(this.mapper.writeValueAsString(aBody));
+
+        this.mvc.perform(request)
+                .andDo(MockMvcResultHandlers.print())
+                .andExpect(MockMvcResultMatchers.status().isConflict())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("A request with this idempotency key is already being processed"));
+    }
+
+    @Test
+    void givenAResponseBiggerThanCaptureLimit_whenCallEndpointTwice_thenStreamFirstAndRejectReplay() throws Exception {
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aSize = 4096;
+
+        final var aFirstRequest = MockMvcRequestBuilders.post("/test/idempotency-key-helper/large/" + aSize)
+                .accept(MediaType.APPLICATION_JSON)
+                .header("x-idempotency-key", aKey);
+
+        this.mvc.perform(aFirstRequest)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value("x".repeat(aSize)));
+
+        final var aSecondRequest = MockMvcRequestBuilders.post("/test/idempotency-key-helper/large/" + aSize)
+                .accept(MediaType.APPLICATION_JSON)
+                .header("x-idempotency-key", aKey);
+
+        this.mvc.perform(aSecondRequest)
+                .andDo(MockMvcResultHandlers.print())
+                .andExpect(MockMvcResultMatchers.status().isUnprocessableEntity())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("The request with this idempotency key was already processed but its response cannot be replayed"));
+    }
+
+    @Test
+    void givenAServerErrorResponse_whenCallEndpointTwice_thenReleaseKeyAndProcessAgain() throws Exception {
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        final var request = MockMvcRequestBuilders.post("/test/idempotency-key-helper/status/503")
+                .accept(MediaType.APPLICATION_JSON)
+                .header("x-idempotency-key", aKey);
+
+        final var aFirstId = this.mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isServiceUnavailable())
+                .andReturn().getResponse().getContentAsString();
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.find(aKey).isEmpty());
+
+        final var aSecondId = this.mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isServiceUnavailable())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("x-idempotency-response"))
+                .andReturn().getResponse().getContentAsString();
+
+        Assertions.assertNotEquals(aFirstId, aSecondId);
+    }
+
+    @Test
+    void givenAClientErrorResponse_whenCallEndpointTwice_thenReplayStoredResponse() throws Exception {
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        final var request = MockMvcRequestBuilders.post("/test/idempotency-key-helper/status/409")
+                .accept(MediaType.APPLICATION_JSON)
+                .header("x-idempotency-key", aKey);
+
+        final var aFirstId = this.mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isConflict())
+                .andReturn().getResponse().getContentAsString();
+
+        this.mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isConflict())
+                .andExpect(MockMvcResultMatchers.header().string("x-idempotency-response", "true"))
+                .andExpect(MockMvcResultMatchers.content().string(aFirstId));
+    }
+
+    @Test
+    void givenAnEndpointWithSmallerMaxBodySize_whenCallEndpointTwice_thenRejectReplay() throws Exception {
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aId = "x".repeat(100);
+
+        final var request = MockMvcRequestBuilders.post("/test/idempotency-key-helper/scoped/" + aId)
+                .accept(MediaType.APPLICATION_JSON)
+                .header("x-idempotency-key", aKey);
+
+        this.mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(aId));
+
+        this.mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isUnprocessableEntity());
+    }
+
+    @Test
+    void givenAPathScopedEndpoint_whenReuseKeyOnOtherPath_thenProcessEachPath() throws Exception {
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        this.mvc.perform(MockMvcRequestBuilders.post("/test/idempotency-key-helper/scoped/first")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("x-idempotency-key", aKey))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value("first"));
+
+        this.mvc.perform(MockMvcRequestBuilders.post("/test/idempotency-key-helper/scoped/second")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("x-idempotency-key", aKey))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("x-idempotency-response"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value("second"));
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.find(aKey).isEmpty());
+        Assertions.assertTrue(this.idempotencyKeyGateway
+                .find("path:46:POST /test/idempotency-key-helper/scoped/first:" + aKey)
+                .isPresent());
+    }
+
+    @Test
+    void givenACompressedStoredResponse_whenReplay_thenSendCompressedOnlyWhenClientAcceptsIt() throws Exception {
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aSize = 600;
+        final var aExpectedBody = this.mapper.writeValueAsString(new IdempotencyKeyBodyTest("x".repeat(aSize)));
+
+        this.mvc.perform(MockMvcRequestBuilders.post("/test/idempotency-key-helper/large/" + aSize)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("x-idempotency-key", aKey))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        final var aStoredResponse = this.idempotencyKeyGateway.find(aKey).orElseThrow();
+        Assertions.assertEquals("gzip", aStoredResponse.contentEncoding());
+
+        final var aGzipResponse = this.mvc.perform(MockMvcRequestBuilders.post("/test/idempotency-key-helper/large/" + aSize)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+                        .header("x-idempotency-key", aKey))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(MockMvcResultMatchers.header().string("x-idempotency-response", "true"))
+                .andReturn().getResponse();
+
+        try (final var aStream = new GZIPInputStream(new ByteArrayInputStream(aGzipResponse.getContentAsByteArray()))) {
+            Assertions.assertEquals(aExpectedBody, new String(aStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        this.mvc.perform(MockMvcRequestBuilders.post("/test/idempotency-key-helper/large/" + aSize)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("x-idempotency-key", aKey))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(MockMvcResultMatchers.content().string(aExpectedBody));
+    }
+
     @Test
     void givenAValidGetMethodWithoutIdempotencyKeyAnnotation_whenCallEndpoint_thenReturnSuccess() throws Exception {
         final var aId = IdentifierUtils.generateNewIdWithoutHyphen();
@@ -189,32 +437,79 @@ public class IdempotencyKeyFilterTest {
     }
 
     @Test
-    void testOnHandlerMethodThrows() throws Exception {
-        final var aRequest = Mockito.mock(HttpServletRequest.class);
-        final var aResponse = Mockito.mock(HttpServletResponse.class);
-        final var aFilterChain = Mockito.mock(FilterChain.class);
+    void givenAReplayedIdempotencyKey_whenCallEndpoint_thenCountMissThenHit() throws Exception {
+        final var aEndpoint = "IdempotencyKeyHelperControllerTest#testIdempotencyKeyHelperWithReturnSuccess";
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aBody = this.mapper.writeValueAsString(new IdempotencyKeyBodyTest(IdentifierUtils.generateNewIdWithoutHyphen()));
+
+        final var request = MockMvcRequestBuilders.post("/test/idempotency-key-helper/success")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("x-idempotency-key", aKey)
+                .content(aBody);
+
+        this.mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isCreated());
 
+        final var aMisses = requests(aEndpoint, "miss");
+        final var aHits = requests(aEndpoint, "hit");
+
+        this.mvc.perform(request)
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.header().string("x-idempotency-response", "true"));
+
+        Assertions.assertEquals(aMisses, requests(aEndpoint, "miss"));
+        Assertions.assertEquals(aHits + 1, requests(aEndpoint, "hit"));
+        Assertions.assertTrue(this.meterRegistry.get("idempotency.storage.latency")
+                .tags("endpoint", aEndpoint, "operation", "claim", "outcome", "success")
+                .timer().count() >= 2);
+        Assertions.assertTrue(this.meterRegistry.get("idempotency.response.size")
+                .tags("endpoint", aEndpoint)
+                .summary().count() >= 1);
+    }
+
+    @Test
+    void givenAnUnavailableStoreAndFailOpen_whenFilter_thenProcessWithoutKeyAndFlagResponse() throws Exception {
+        final var aResponse = new MockHttpServletResponse();
+        final var aFilterChain = new MockFilterChain();
         final var aHandlerExceptionResolver = Mockito.spy(HandlerExceptionResolver.class);
-        final var aRequestMappingHandlerMapping = Mockito.mock(RequestMappingHandlerMapping.class);
 
-        final var aIdempotencyKeyFilter = new IdempotencyKeyFilter(
-                idempotencyKeyGateway,
-                aRequestMappingHandlerMapping,
+        final var aIdempotencyKeyFilter = newUnavailableStoreFilter(
                 aHandlerExceptionResolver,
-                observationHelper
+                IdempotencyKeyProperties.CircuitBreaker.FailureMode.FAIL_OPEN
         );
 
-        Mockito.when(aRequestMappingHandlerMapping.getHandler(aRequest))
-                .thenThrow(new RuntimeException("test"));
-
-        aIdempotencyKeyFilter.doFilterInternal(aRequest, aResponse, aFilterChain);
+        aIdempotencyKeyFilter.doFilterInternal(newStatusRequest(), aResponse, aFilterChain);
 
-        Mockito.verify(aHandlerExceptionResolver, Mockito.times(1))
+        Assertions.assertNotNull(aFilterChain.getRequest());
+        Assertions.assertEquals("true", aResponse.getHeader(IdempotencyKey.IDEMPOTENCY_BYPASSED_HEADER));
+        Mockito.verify(aHandlerExceptionResolver, Mockito.never())
                 .resolveException(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     @Test
-    void testOnHandlerMethodReturnsNull() throws Exception {
+    void givenAnUnavailableStoreAndFailClosed_whenFilter_thenResolveUnavailableWithoutProcessing() throws Exception {
+        final var aFilterChain = new MockFilterChain();
+        final var aHandlerExceptionResolver = Mockito.spy(HandlerExceptionResolver.class);
+
+        final var aIdempotencyKeyFilter = newUnavailableStoreFilter(
+                aHandlerExceptionResolver,
+                IdempotencyKeyProperties.CircuitBreaker.FailureMode.FAIL_CLOSED
+        );
+
+        aIdempotencyKeyFilter.doFilterInternal(newStatusRequest(), new MockHttpServletResponse(), aFilterChain);
+
+        Assertions.assertNull(aFilterChain.getRequest());
+        Mockito.verify(aHandlerExceptionResolver, Mockito.times(1)).resolveException(
+                Mockito.any(),
+                Mockito.any(),
+                Mockito.any(),
+                Mockito.any(IdempotencyKeyStoreUnavailableException.class)
+        );
+    }
+
+    @Test
+    void givenAMappingWithoutAnnotatedEndpoints_whenFilter_thenSkipHandlerLookup() throws Exception {
         final var aRequest = Mockito.mock(HttpServletRequest.class);
         final var aResponse = Mockito.mock(HttpServletResponse.class);
         final var aFilterChain = Mockito.mock(FilterChain.class);
@@ -224,19 +519,25 @@ public class IdempotencyKeyFilterTest {
 
         final var aIdempotencyKeyFilter = new IdempotencyKeyFilter(
                 idempotencyKeyGateway,
+                IdempotencyKeyWaiters.disabled(idempotencyKeyGateway),
                 aRequestMappingHandlerMapping,
                 aHandlerExceptionResolver,
-                observationHelper
+                observationHelper,
+                properties
         );
 
-        Mockito.when(aRequestMappingHandlerMapping.getHandler(aRequest))
-                .thenReturn(null);
+        Mockito.when(aRequest.getMethod()).thenReturn("POST");
+
+        aIdempotencyKeyFilter.doFilterInternal(aRequest, aResponse, aFilterChain);
 
-        Assertions.assertDoesNotThrow(() -> aIdempotencyKeyFilter.doFilterInternal(aRequest, aResponse, aFilterChain));
+        Mockito.verify(aFilterChain, Mockito.times(1)).doFilter(aRequest, aResponse);
+        Mockito.verify(aRequestMappingHandlerMapping, Mockito.never()).getHandler(Mockito.any());
+        Mockito.verify(aHandlerExceptionResolver, Mockito.never())
+                .resolveException(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     @Test
-    void testOnHandlerMethodIsNotHandlerMethod() throws Exception {
+    void givenAFilterChainThatThrows_whenFilter_thenResolveException() throws Exception {
         final var aRequest = Mockito.mock(HttpServletRequest.class);
         final var aResponse = Mockito.mock(HttpServletResponse.class);
         final var aFilterChain = Mockito.mock(FilterChain.class);
@@ -246,16 +547,52 @@ public class IdempotencyKeyFilterTest {
 
         final var aIdempotencyKeyFilter = new IdempotencyKeyFilter(
                 idempotencyKeyGateway,
+                IdempotencyKeyWaiters.disabled(idempotencyKeyGateway),
                 aRequestMappingHandlerMapping,
                 aHandlerExceptionResolver,
-                observationHelper
+                observationHelper,
+                properties
         );
 
-        final var aHandlerExecutionChain = Mockito.mock(HandlerExecutionChain.class);
+        Mockito.doThrow(new RuntimeException("test"))
+                .when(aFilterChain).doFilter(aRequest, aResponse);
+
+        aIdempotencyKeyFilter.doFilterInternal(aRequest, aResponse, aFilterChain);
 
-        Mockito.when(aRequestMappingHandlerMapping.getHandler(aRequest))
-                .thenReturn(aHandlerExecutionChain);
+        Mockito.verify(aHandlerExceptionResolver, Mockito.times(1))
+                .resolveException(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    private double requests(final String endpoint, final String result) {
+        return this.meterRegistry.get("idempotency.requests")
+                .tags("endpoint", endpoint, "result", result)
+                .counter().count();
+    }
+
+    private IdempotencyKeyFilter newUnavailableStoreFilter(
+            final HandlerExceptionResolver handlerExceptionResolver,
+            final IdempotencyKeyProperties.CircuitBreaker.FailureMode failureMode
+    ) {
+        final var aGateway = Mockito.mock(IdempotencyKeyGateway.class);
+        Mockito.when(aGateway.claim(Mockito.anyString(), Mockito.anyLong(), Mockito.any()))
+                .thenThrow(new IdempotencyKeyStoreUnavailableException(null));
+
+        final var aProperties = new IdempotencyKeyProperties();
+        aProperties.getCircuitBreaker().setFailureMode(failureMode);
+
+        return new IdempotencyKeyFilter(
+                aGateway,
+                IdempotencyKeyWaiters.disabled(aGateway),
+                this.requestMappingHandlerMapping,
+                handlerExceptionResolver,
+                this.observationHelper,
+                aProperties
+        );
+    }
 
-        Assertions.assertDoesNotThrow(() -> aIdempotencyKeyFilter.doFilterInternal(aRequest, aResponse, aFilterChain));
+    private static MockHttpServletRequest newStatusRequest() {
+        final var aRequest = new MockHttpServletRequest("POST", "/test/idempotency-key-helper/status/201");
+        aRequest.addHeader(IdempotencyKey.IDEMPOTENCY_KEY_HEADER, IdentifierUtils.generateNewIdWithoutHyphen());
+        return aRequest;
     }
 }
@@ -0,0 +1,121 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.domain.UnitTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartHttpServletRequest;
+import org.springframework.mock.web.MockPart;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+class IdempotencyKeyFingerprintRequestTest extends UnitTest {
+
+    private static final String BODY = "{\"id\":\"123\",\"name\":\"ção\"}";
+
+    @Test
+    void givenABodyReadByTheHandler_whenFinish_thenReturnSameFingerprintAsUnreadBody() throws Exception {
+        final var aReadRequest = new IdempotencyKeyFingerprintRequest(request("POST", "/api/test", BODY));
+        final var aUnreadRequest = new IdempotencyKeyFingerprintRequest(request("POST", "/api/test", BODY));
+
+        Assertions.assertEquals(BODY, new String(aReadRequest.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+
+        Assertions.assertArrayEquals(aUnreadRequest.finish(), aReadRequest.finish());
+        Assertions.assertEquals(32, aReadRequest.finish().length);
+    }
+
+    @Test
+    void givenABodyPartiallyReadWithReader_whenFinish_thenHashWholeBody() throws Exception {
+        final var aPartialRequest = new IdempotencyKeyFingerprintRequest(request("POST", "/api/test", BODY));
+        final var aUnreadRequest = new IdempotencyKeyFingerprintRequest(request("POST", "/api/test", BODY));
+
+        Assertions.assertEquals('{', aPartialRequest.getReader().read());
+
+        Assertions.assertArrayEquals(aUnreadRequest.finish(), aPartialRequest.finish());
+    }
+
+    @Test
+    void givenDifferentBodyOrPathOrMethod_whenFinish_thenReturnDifferentFingerprints() throws Exception {
+        final var aFingerprint = new IdempotencyKeyFingerprintRequest(request("POST", "/api/test", BODY)).finish();
+
+        Assertions.assertFalse(Arrays.equals(aFingerprint,
+                new IdempotencyKeyFingerprintRequest(request("POST", "/api/test", BODY + " ")).finish()));
+        Assertions.assertFalse(Arrays.equals(aFingerprint,
+                new IdempotencyKeyFingerprintRequest(request("POST", "/api/other", BODY)).finish()));
+        Assertions.assertFalse(Arrays.equals(aFingerprint,
+                new IdempotencyKeyFingerprintRequest(request("PUT", "/api/test", BODY)).finish()));
+    }
+
+    @Test
+    void givenAReaderAlreadyRequested_whenGetInputStream_thenThrowIllegalStateException() throws Exception {
+        final var aRequest = new IdempotencyKeyFingerprintRequest(request("POST", "/api/test", BODY));
+
+        aRequest.getReader();
+
+        Assertions.assertThrows(IllegalStateException.class, aRequest::getInputStream);
+    }
+
+    @Test
+    void givenABodyLongerThanTheLimit_whenFinish_thenHashOnlyTheLimitAndTheLength() throws Exception {
+        final var aRequest = request("POST", "/api/test", BODY + "a");
+        final var aFingerprintRequest = new IdempotencyKeyFingerprintRequest(aRequest, 4);
+
+        final var aFingerprint = aFingerprintRequest.finish();
+
+        Assertions.assertEquals(BODY.getBytes(StandardCharsets.UTF_8).length + 1 - 4, aRequest.getInputStream().available());
+        Assertions.assertArrayEquals(aFingerprint,
+                new IdempotencyKeyFingerprintRequest(request("POST", "/api/test", BODY + "b"), 4).finish());
+        Assertions.assertFalse(Arrays.equals(aFingerprint,
+                new IdempotencyKeyFingerprintRequest(request("POST", "/api/test", BODY + "bc"), 4).finish()));
+    }
+
+    @Test
+    void givenAFormReadAsParameters_whenFinish_thenReturnSameFingerprintAsUnreadForm() throws Exception {
+        final var aReadRequest = new IdempotencyKeyFingerprintRequest(formRequest("b=2&a=1"));
+        final var aUnreadRequest = new IdempotencyKeyFingerprintRequest(formRequest("b=2&a=1"));
+
+        Assertions.assertEquals("1", aReadRequest.getParameter("a"));
+
+        Assertions.assertArrayEquals(aUnreadRequest.finish(), aReadRequest.finish());
+        Assertions.assertFalse(Arrays.equals(aReadRequest.finish(),
+                new IdempotencyKeyFingerprintRequest(formRequest("b=2&a=3")).finish()));
+    }
+
+    @Test
+    void givenAMultipartRequest_whenFinish_thenHashTheParts() throws Exception {
+        final var aFingerprint = new IdempotencyKeyFingerprintRequest(multipartRequest("content")).finish();
+
+        Assertions.assertArrayEquals(aFingerprint,
+                new IdempotencyKeyFingerprintRequest(multipartRequest("content")).finish());
+        Assertions.assertFalse(Arrays.equals(aFingerprint,
+                new IdempotencyKeyFingerprintRequest(multipartRequest("other")).finish()));
+    }
+
+    private static MockHttpServletRequest formRequest(final String body) {
+        final var aRequest = request("POST", "/api/test", body);
+        aRequest.setContentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+        // the container parses the form into parameters, as MockMvc does
+        for (final var aPair : body.split("&")) {
+            final var aParts = aPair.split("=");
+            aRequest.addParameter(aParts[0], aParts[1]);
+        }
+        return aRequest;
+    }
+
+    private static MockHttpServletRequest multipartRequest(final String content) {
+        final var aRequest = new MockMultipartHttpServletRequest();
+        aRequest.setMethod("POST");
+        aRequest.setRequestURI("/api/test");
+        aRequest.addPart(new MockPart("file", "file.txt", content.getBytes(StandardCharsets.UTF_8)));
+        return aRequest;
+    }
+
+    private static MockHttpServletRequest request(final String method, final String uri, final String body) {
+        final var aRequest = new MockHttpServletRequest(method, uri);
+        aRequest.setCharacterEncoding("UTF-8");
+        aRequest.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return aRequest;
+    }
+}
@@ -1,9 +1,13 @@
 package com.kaua.template.infrastructure.idempotency;
 
+import com.kaua.template.domain.utils.IdentifierUtils;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.TimeUnit;
+
 @RestController
 @RequestMapping("/test/idempotency-key-helper")
 public class IdempotencyKeyHelperControllerTest {
@@ -20,6 +24,60 @@ public class IdempotencyKeyHelperControllerTest {
                 .body(body);
     }
 
+    @IdempotencyKey
+    @PostMapping(
+            value = "/form",
+            consumes = "application/x-www-form-urlencoded",
+            produces = "application/json"
+    )
+    public ResponseEntity<?> testIdempotencyKeyHelperWithFormBody(@RequestParam String id) {
+        return ResponseEntity.status(201).body(new IdempotencyKeyBodyTest(id));
+    }
+
+    @IdempotencyKey
+    @PostMapping(
+            value = "/large/{size}",
+            produces = "application/json"
+    )
+    public ResponseEntity<?> testIdempotencyKeyHelperWithLargeResponse(@PathVariable int size) {
+        return ResponseEntity.ok(new IdempotencyKeyBodyTest("x".repeat(size)));
+    }
+
+    @IdempotencyKey
+    @PostMapping(
+            value = "/status/{status}",
+            produces = "application/json"
+    )
+    public ResponseEntity<?> testIdempotencyKeyHelperWithStatus(@PathVariable int status) {
+        return ResponseEntity.status(status).body(new IdempotencyKeyBodyTest(IdentifierUtils.generateNewIdWithoutHyphen()));
+    }
+
+    @IdempotencyKey(maxBodySize = 64, storedStatus = HttpStatus.Series.SUCCESSFUL, scope = IdempotencyKey.Scope.PATH)
+    @PostMapping(
+            value = "/scoped/{id}",
+            produces = "application/json"
+    )
+    public ResponseEntity<?> testIdempotencyKeyHelperWithPolicyAttributes(@PathVariable String id) {
+        return ResponseEntity.ok(new IdempotencyKeyBodyTest(id));
+    }
+
+    @IdempotencyKey(ttl = 30, timeUnit = TimeUnit.MINUTES)
+    @PostMapping(
+            value = "/override/{id}",
+            produces = "application/json"
+    )
+    public ResponseEntity<?> testIdempotencyKeyHelperWithPathVariable(@PathVariable String id) {
+        return ResponseEntity.ok(new IdempotencyKeyBodyTest(id));
+    }
+
+    @PostMapping(
+            value = "/override/plain",
+            produces = "application/json"
+    )
+    public ResponseEntity<?> testWithoutIdempotencyKeyMoreSpecificThanAnnotated() {
+        return ResponseEntity.ok(new IdempotencyKeyBodyTest("plain"));
+    }
+
     @GetMapping(
             value = "/{id}",
             produces = "application/json"
@@ -0,0 +1,94 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.domain.UnitTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+class IdempotencyKeyMetricsTest extends UnitTest {
+
+    private static final String ENDPOINT = "TestController#create";
+
+    @Test
+    void givenRecordedResults_whenReadCounters_thenCountEachResultByEndpointAndStorageType() {
+        final var aRegistry = new SimpleMeterRegistry();
+        final var aMetrics = new IdempotencyKeyMetrics(aRegistry, "in-memory");
+
+        aMetrics.recordResult(ENDPOINT, IdempotencyKeyMetrics.Result.MISS);
+        aMetrics.recordResult(ENDPOINT, IdempotencyKeyMetrics.Result.HIT);
+        aMetrics.recordResult(ENDPOINT, IdempotencyKeyMetrics.Result.HIT);
+        aMetrics.recordResult("OtherController#create", IdempotencyKeyMetrics.Result.HIT);
+
+        Assertions.assertEquals(2, aRegistry.get("idempotency.requests")
+                .tags("endpoint", ENDPOINT, "storage_type", "IN_MEMORY", "result", "hit")
+                .counter().count());
+        Assertions.assertEquals(1, aRegistry.get("idempotency.requests")
+                .tags("endpoint", ENDPOINT, "result", "miss")
+                .counter().count());
+        Assertions.assertEquals(0, aRegistry.get("idempotency.requests")
+                .tags("endpoint", ENDPOINT, "result", "in_progress")
+                .counter().count());
+    }
+
+    @Test
+    void givenAFailedOperation_whenRecordLatency_thenTimeItAsErrorAndCountTheException() {
+        final var aRegistry = new SimpleMeterRegistry();
+        final var aMetrics = new IdempotencyKeyMetrics(aRegistry, "redis");
+
+        aMetrics.recordLatency(ENDPOINT, IdempotencyKeyMetrics.Operation.CLAIM, TimeUnit.MILLISECONDS.toNanos(2), null);
+        aMetrics.recordLatency(ENDPOINT, IdempotencyKeyMetrics.Operation.CLAIM, TimeUnit.MILLISECONDS.toNanos(5), new IllegalStateException());
+
+        final var aSuccess = aRegistry.get("idempotency.storage.latency")
+                .tags("endpoint", ENDPOINT, "storage_type", "REDIS", "operation", "claim", "outcome", "success")
+                .timer();
+        final var aError = aRegistry.get("idempotency.storage.latency")
+                .tags("operation", "claim", "outcome", "error")
+                .timer();
+
+        Assertions.assertEquals(1, aSuccess.count());
+        Assertions.assertEquals(2, aSuccess.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        Assertions.assertEquals(1, aError.count());
+        Assertions.assertEquals(1, aRegistry.get("idempotency.storage.errors")
+                .tags("operation", "claim", "exception", "IllegalStateException")
+                .counter().count());
+    }
+
+    @Test
+    void givenOnlySuccessfulOperations_whenRecordLatency_thenDoNotRegisterTheErrorTimers() {
+        final var aRegistry = new SimpleMeterRegistry();
+        final var aMetrics = new IdempotencyKeyMetrics(aRegistry, "redis");
+
+        aMetrics.recordLatency(ENDPOINT, IdempotencyKeyMetrics.Operation.CLAIM, TimeUnit.MILLISECONDS.toNanos(2), null);
+
+        Assertions.assertNull(aRegistry.find("idempotency.storage.latency").tags("outcome", "error").timer());
+        Assertions.assertEquals(4, aRegistry.find("idempotency.storage.latency").tags("outcome", "success").timers().size());
+    }
+
+    @Test
+    void givenStoredResponses_whenRecordSize_thenSummarizeTheirBytes() {
+        final var aRegistry = new SimpleMeterRegistry();
+        final var aMetrics = new IdempotencyKeyMetrics(aRegistry, "jdbc");
+
+        aMetrics.recordResponseSize(ENDPOINT, 100);
+        aMetrics.recordResponseSize(ENDPOINT, 300);
+
+        final var aSummary = aRegistry.get("idempotency.response.size").tags("storage_type", "JDBC").summary();
+
+        Assertions.assertEquals(2, aSummary.count());
+        Assertions.assertEquals(400, aSummary.totalAmount());
+        Assertions.assertEquals(300, aSummary.max());
+    }
+
+    @Test
+    void givenDisabledMetrics_whenRecord_thenDoNothing() {
+        final var aMetrics = IdempotencyKeyMetrics.disabled();
+
+        Assertions.assertDoesNotThrow(() -> {
+            aMetrics.recordResult(ENDPOINT, IdempotencyKeyMetrics.Result.HIT);
+            aMetrics.recordLatency(ENDPOINT, IdempotencyKeyMetrics.Operation.COMPLETE, 1, new RuntimeException());
+            aMetrics.recordResponseSize(ENDPOINT, 1);
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.domain.UnitTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+
+class IdempotencyKeyResponseCaptureTest extends UnitTest {
+
+    @Test
+    void givenABodyWrittenToOutputStream_whenCapture_thenStreamToClientAndKeepCopy() throws Exception {
+        final var aResponse = new MockHttpServletResponse();
+        final var aCapture = new IdempotencyKeyResponseCapture(aResponse, 1024 * 1024);
+        final var aBody = "a".repeat(40_000).getBytes(StandardCharsets.UTF_8);
+
+        aCapture.getOutputStream().write(aBody, 0, 100);
+        aCapture.getOutputStream().write(aBody[100]);
+        aCapture.getOutputStream().write(aBody, 101, aBody.length - 101);
+        aCapture.finish();
+
+        Assertions.assertTrue(aCapture.isReplayable());
+        Assertions.assertArrayEquals(aBody, aResponse.getContentAsByteArray());
+        Assertions.assertArrayEquals(aBody, aCapture.getCapturedBody());
+
+        aCapture.release();
+    }
+
+    @Test
+    void givenABodyWrittenToWriter_whenFinish_thenFlushToClientAndCapture() throws Exception {
+        final var aResponse = new MockHttpServletResponse();
+        aResponse.setCharacterEncoding("UTF-8");
+        final var aCapture = new IdempotencyKeyResponseCapture(aResponse, 1024);
+
+        aCapture.getWriter().write("{\"name\":\"ção\"}");
+        aCapture.finish();
+
+        final var aExpected = "{\"name\":\"ção\"}".getBytes(StandardCharsets.UTF_8);
+        Assertions.assertArrayEquals(aExpected, aResponse.getContentAsByteArray());
+        Assertions.assertArrayEquals(aExpected, aCapture.getCapturedBody());
+        Assertions.assertThrows(IllegalStateException.class, aCapture::getOutputStream);
+
+        aCapture.release();
+    }
+
+    @Test
+    void givenABodyBiggerThanLimit_whenCapture_thenStreamToClientAndMarkNotReplayable() throws Exception {
+        final var aResponse = new MockHttpServletResponse();
+        final var aCapture = new IdempotencyKeyResponseCapture(aResponse, 10);
+        final var aBody = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+        aCapture.getOutputStream().write(aBody);
+        aCapture.finish();
+
+        Assertions.assertFalse(aCapture.isReplayable());
+        Assertions.assertArrayEquals(aBody, aResponse.getContentAsByteArray());
+        Assertions.assertEquals(0, aCapture.getCapturedBody().length);
+
+        aCapture.release();
+    }
+
+    @Test
+    void givenACapturedBody_whenResetBuffer_thenDropCapturedBytes() throws Exception {
+        final var aResponse = new MockHttpServletResponse();
+        final var aCapture = new IdempotencyKeyResponseCapture(aResponse, 10);
+
+        aCapture.getOutputStream().write("0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+        aCapture.resetBuffer();
+        aCapture.getOutputStream().write("ok".getBytes(StandardCharsets.UTF_8));
+
+        Assertions.assertTrue(aCapture.isReplayable());
+        Assertions.assertEquals("ok", new String(aCapture.getCapturedBody(), StandardCharsets.UTF_8));
+
+        aCapture.release();
+    }
+}
@@ -0,0 +1,143 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.IntegrationTest;
+import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.idempotency.gateways.ExecutorAsyncIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.InMemoryIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@IntegrationTest
+public class IdempotencyKeyWaitersTest {
+
+    @Autowired
+    private ObservationHelper observationHelper;
+
+    @Test
+    void givenAnInProgressKey_whenOwnerCompletesAndSignals_thenWaiterReceivesStoredResponse() throws Exception {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(observationHelper);
+        final var aWaiters = new IdempotencyKeyWaiters(aGateway, true, Duration.ofSeconds(5), Duration.ofSeconds(5));
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).acquired());
+
+        try (final var aExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var aWaiting = CompletableFuture.supplyAsync(() -> awaitClaim(aWaiters, aKey), aExecutor);
+
+            waitUntilRegistered(aWaiters);
+            aGateway.complete(aKey, new IdempotencyKeyInput(201, "created", Map.of()), 1, TimeUnit.HOURS);
+            aWaiters.signal(aKey);
+
+            final var aClaim = aWaiting.get(1, TimeUnit.SECONDS);
+
+            Assertions.assertTrue(aClaim.isCompleted());
+            Assertions.assertEquals(201, aClaim.existing().statusCode());
+            Assertions.assertEquals("created", new String(aClaim.existing().body(), StandardCharsets.UTF_8));
+            Assertions.assertEquals(0, aWaiters.size());
+        }
+    }
+
+    @Test
+    void givenAKeyCompletedWithoutSignal_whenAwait_thenPickItUpOnNextPoll() throws Exception {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(observationHelper);
+        final var aWaiters = new IdempotencyKeyWaiters(aGateway, true, Duration.ofSeconds(5), Duration.ofMillis(20));
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).acquired());
+
+        try (final var aExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var aWaiting = CompletableFuture.supplyAsync(() -> awaitClaim(aWaiters, aKey), aExecutor);
+
+            waitUntilRegistered(aWaiters);
+            aGateway.complete(aKey, new IdempotencyKeyInput(200, "ok", Map.of()), 1, TimeUnit.HOURS);
+
+            Assertions.assertTrue(aWaiting.get(1, TimeUnit.SECONDS).isCompleted());
+        }
+    }
+
+    @Test
+    void givenAKeyThatNeverCompletes_whenAwait_thenReturnInProgressAfterMaxWait() throws Exception {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(observationHelper);
+        final var aWaiters = new IdempotencyKeyWaiters(aGateway, true, Duration.ofMillis(100), Duration.ofMillis(20));
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).acquired());
+
+        final var aStart = System.nanoTime();
+        final var aClaim = aWaiters.await(aKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(aClaim.isInProgress());
+        Assertions.assertTrue(System.nanoTime() - aStart >= TimeUnit.MILLISECONDS.toNanos(100));
+        Assertions.assertEquals(0, aWaiters.size());
+    }
+
+    @Test
+    void givenAnInProgressKey_whenAwaitAsync_thenCompleteWithoutParkingTheCaller() throws Exception {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(observationHelper);
+        final var aWaiters = new IdempotencyKeyWaiters(aGateway, true, Duration.ofSeconds(5), Duration.ofSeconds(5));
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).acquired());
+
+        final var aWaiting = aWaiters.awaitAsync(ExecutorAsyncIdempotencyKeyGateway.direct(aGateway), aKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertFalse(aWaiting.isDone());
+        Assertions.assertEquals(1, aWaiters.size());
+
+        aGateway.complete(aKey, new IdempotencyKeyInput(201, "created", Map.of()), 1, TimeUnit.HOURS);
+        aWaiters.signal(aKey);
+
+        Assertions.assertTrue(aWaiting.get(1, TimeUnit.SECONDS).isCompleted());
+        Assertions.assertEquals(0, aWaiters.size());
+    }
+
+    @Test
+    void givenAKeyThatNeverCompletes_whenAwaitAsync_thenReturnInProgressAfterMaxWait() throws Exception {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(observationHelper);
+        final var aWaiters = new IdempotencyKeyWaiters(aGateway, true, Duration.ofMillis(100), Duration.ofMillis(20));
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).acquired());
+
+        final var aStart = System.nanoTime();
+        final var aClaim = aWaiters.awaitAsync(ExecutorAsyncIdempotencyKeyGateway.direct(aGateway), aKey, 1, TimeUnit.HOURS)
+                .get(1, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(aClaim.isInProgress());
+        Assertions.assertTrue(System.nanoTime() - aStart >= TimeUnit.MILLISECONDS.toNanos(100));
+        Assertions.assertEquals(0, aWaiters.size());
+    }
+
+    @Test
+    void givenADisabledWaiters_whenSignal_thenDoNothing() {
+        final var aWaiters = IdempotencyKeyWaiters.disabled(new InMemoryIdempotencyKeyGateway(observationHelper));
+
+        Assertions.assertFalse(aWaiters.isEnabled());
+        Assertions.assertDoesNotThrow(() -> aWaiters.signal("key"));
+    }
+
+    private static IdempotencyKeyClaim awaitClaim(final IdempotencyKeyWaiters waiters, final String key) {
+        try {
+            return waiters.await(key, 1, TimeUnit.HOURS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntilRegistered(final IdempotencyKeyWaiters waiters) throws InterruptedException {
+        final var aDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (waiters.size() == 0 && System.nanoTime() < aDeadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -2,11 +2,15 @@ package com.kaua.template.infrastructure.idempotency;
 
 import com.kaua.template.IntegrationTest;
 import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyAlreadyExistsException;
 import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.InMemoryIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -16,6 +20,9 @@ public class InMemoryIdempotencyKeyGatewayTest {
     @Autowired
     private IdempotencyKeyGateway inMemoryIdempotencyKeyGateway;
 
+    @Autowired
+    private ObservationHelper observationHelper;
+
     @Test
     void givenAValidValues_whenCallSave_thenSaveIdempotencyKey() {
         String idempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
@@ -43,6 +50,28 @@ public class InMemoryIdempotencyKeyGatewayTest {
         Assertions.assertTrue(inMemoryIdempotencyKeyGateway.find(idempotencyKey).isPresent());
     }
 
+    @Test
+    void givenAnExistsIdempotencyKey_whenCallSave_thenThrowIdempotencyKeyAlreadyExists() {
+        String idempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        inMemoryIdempotencyKeyGateway.save(idempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertThrows(IdempotencyKeyAlreadyExistsException.class,
+                () -> inMemoryIdempotencyKeyGateway.save(idempotencyKey, 1, TimeUnit.HOURS));
+    }
+
+    @Test
+    void givenAClaimedIdempotencyKey_whenCallRelease_thenClaimAcquiresAgain() {
+        String idempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(inMemoryIdempotencyKeyGateway.claim(idempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+        inMemoryIdempotencyKeyGateway.release(idempotencyKey);
+
+        Assertions.assertTrue(inMemoryIdempotencyKeyGateway.find(idempotencyKey).isEmpty());
+        Assertions.assertTrue(inMemoryIdempotencyKeyGateway.claim(idempotencyKey, 1, TimeUnit.HOURS).acquired());
+    }
+
     @Test
     void givenAnInvalidIdempotencyKey_whenCallFind_thenReturnEmpty() {
         String idempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
@@ -65,4 +94,76 @@ public class InMemoryIdempotencyKeyGatewayTest {
 
         Assertions.assertTrue(inMemoryIdempotencyKeyGateway.find(idempotencyKey).isPresent());
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenAValidIdempotencyKey_whenCallClaimTwice_thenSecondReturnsInProgress() {
+        String idempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(inMemoryIdempotencyKeyGateway.claim(idempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+        final var aClaim = inMemoryIdempotencyKeyGateway.claim(idempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertFalse(aClaim.acquired());
+        Assertions.assertTrue(aClaim.isInProgress());
+    }
+
+    @Test
+    void givenACompletedIdempotencyKey_whenCallClaim_thenReturnStoredResponse() {
+        String idempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        IdempotencyKeyInput body = new IdempotencyKeyInput(
+                201,
+                "OK",
+                Map.of("Location", "/api/hello")
+        );
+
+        Assertions.assertTrue(inMemoryIdempotencyKeyGateway.claim(idempotencyKey, 1, TimeUnit.HOURS).acquired());
+        inMemoryIdempotencyKeyGateway.complete(idempotencyKey, body, 1, TimeUnit.HOURS);
+
+        final var aClaim = inMemoryIdempotencyKeyGateway.claim(idempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(aClaim.isCompleted());
+        Assertions.assertEquals(201, aClaim.existing().statusCode());
+        Assertions.assertEquals("OK", new String(aClaim.existing().body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void givenAnExpiredIdempotencyKey_whenCallFind_thenReturnEmptyAndCountExpiration() throws InterruptedException {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(observationHelper, 10, 0);
+        String idempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(aGateway.claim(idempotencyKey, 50, TimeUnit.MILLISECONDS).acquired());
+
+        Thread.sleep(150);
+
+        Assertions.assertFalse(aGateway.find(idempotencyKey).isPresent());
+        Assertions.assertEquals(0, aGateway.size());
+        Assertions.assertEquals(1, aGateway.getExpirationCount());
+        Assertions.assertTrue(aGateway.claim(idempotencyKey, 1, TimeUnit.HOURS).acquired());
+    }
+
+    @Test
+    void givenAFullGateway_whenCallClaim_thenEvictKeysAboveMaxEntries() {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(observationHelper, 5, 0);
+
+        for (int i = 0; i < 20; i++) {
+            aGateway.claim(IdentifierUtils.generateNewIdWithoutHyphen(), 1, TimeUnit.HOURS);
+        }
+
+        Assertions.assertTrue(aGateway.size() <= 5);
+        Assertions.assertTrue(aGateway.getEvictionCount() >= 15);
+        Assertions.assertEquals(0, aGateway.getExpirationCount());
+    }
+
+    @Test
+    void givenAByteBudget_whenCallComplete_thenEvictKeysAboveBudget() {
+        final var aGateway = new InMemoryIdempotencyKeyGateway(observationHelper, 0, 1024);
+        final var aBody = new IdempotencyKeyInput(200, "x".repeat(300), Map.of());
+
+        for (int i = 0; i < 10; i++) {
+            aGateway.complete(IdentifierUtils.generateNewIdWithoutHyphen(), aBody, 1, TimeUnit.HOURS);
+        }
+
+        Assertions.assertTrue(aGateway.size() < 10);
+        Assertions.assertTrue(aGateway.getEvictionCount() > 0);
+    }
+}
@@ -0,0 +1,165 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.IntegrationTest;
+import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyAlreadyExistsException;
+import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.JdbcIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.JdbcIdempotencyKeyPurger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@IntegrationTest
+@TestPropertySource(properties = {
+        "idempotency-key.storage.type=jdbc",
+        "idempotency-key.storage.jdbc.purge-interval=1h",
+        "idempotency-key.storage.jdbc.purge-batch-size=2"
+})
+public class JdbcIdempotencyKeyGatewayTest {
+
+    @Autowired
+    private IdempotencyKeyGateway idempotencyKeyGateway;
+
+    @Autowired
+    private JdbcIdempotencyKeyPurger purger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void cleanUp() {
+        this.jdbcTemplate.update("DELETE FROM idempotency_keys");
+    }
+
+    @Test
+    void givenJdbcStorageType_whenInject_thenUseJdbcGateway() {
+        Assertions.assertInstanceOf(JdbcIdempotencyKeyGateway.class, this.idempotencyKeyGateway);
+    }
+
+    @Test
+    void givenJdbcStorageType_whenStart_thenMigrateTheTableInItsOwnHistory() {
+        final var aMigrated = this.jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM idempotency_key_schema_history WHERE version = '1' AND success",
+                Integer.class
+        );
+
+        Assertions.assertEquals(1, aMigrated);
+    }
+
+    @Test
+    void givenAValidIdempotencyKey_whenCallClaimTwice_thenSecondReturnsInProgress() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+        final var aSecondClaim = this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertFalse(aSecondClaim.acquired());
+        Assertions.assertTrue(aSecondClaim.isInProgress());
+    }
+
+    @Test
+    void givenAClaimedIdempotencyKey_whenRelease_thenClaimAcquiresAgain() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+        this.idempotencyKeyGateway.release(aIdempotencyKey);
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.find(aIdempotencyKey).isEmpty());
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+    }
+
+    @Test
+    void givenAClaimedIdempotencyKey_whenComplete_thenClaimReturnsStoredResponse() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aInput = new IdempotencyKeyInput(201, "{\"id\":\"123\"}", Map.of("Location", "/test/123"));
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+        this.idempotencyKeyGateway.complete(aIdempotencyKey, aInput, 1, TimeUnit.HOURS);
+
+        final var aClaim = this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(aClaim.isCompleted());
+        Assertions.assertEquals(201, aClaim.existing().statusCode());
+        Assertions.assertEquals("{\"id\":\"123\"}", new String(aClaim.existing().body(), StandardCharsets.UTF_8));
+        Assertions.assertEquals("/test/123", aClaim.existing().headers().get("Location"));
+    }
+
+    @Test
+    void givenAnExpiredIdempotencyKey_whenClaim_thenAcquireAgain() throws Exception {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.MILLISECONDS).acquired());
+        Thread.sleep(20);
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.find(aIdempotencyKey).isEmpty());
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+    }
+
+    @Test
+    void givenAnExistsIdempotencyKey_whenSave_thenThrowIdempotencyKeyAlreadyExists() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        this.idempotencyKeyGateway.save(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertThrows(IdempotencyKeyAlreadyExistsException.class,
+                () -> this.idempotencyKeyGateway.save(aIdempotencyKey, 1, TimeUnit.HOURS));
+    }
+
+    @Test
+    void givenAClaimedIdempotencyKey_whenMarkNotReplayable_thenClaimReturnsNotReplayable() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+        this.idempotencyKeyGateway.markNotReplayable(aIdempotencyKey, 200, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).isNotReplayable());
+    }
+
+    @Test
+    void testConcurrencyClaim() throws Exception {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aAcquired = new AtomicInteger();
+        final var aInProgress = new AtomicInteger();
+
+        try (final var aExecutor = Executors.newFixedThreadPool(10)) {
+            for (int i = 0; i < 10; i++) {
+                aExecutor.submit(() -> {
+                    if (this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired()) {
+                        aAcquired.incrementAndGet();
+                    } else {
+                        aInProgress.incrementAndGet();
+                    }
+                });
+            }
+        }
+
+        Assertions.assertEquals(1, aAcquired.get());
+        Assertions.assertEquals(9, aInProgress.get());
+    }
+
+    @Test
+    void givenExpiredIdempotencyKeys_whenPurge_thenDeleteOnlyExpiredInBatches() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            this.idempotencyKeyGateway.save(IdentifierUtils.generateNewIdWithoutHyphen(), 1, TimeUnit.MILLISECONDS);
+        }
+        final var aValidKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        this.idempotencyKeyGateway.save(aValidKey, 1, TimeUnit.HOURS);
+        Thread.sleep(20);
+
+        Assertions.assertEquals(5, this.purger.purge());
+        Assertions.assertEquals(1, this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_keys", Integer.class));
+        Assertions.assertTrue(this.idempotencyKeyGateway.find(aValidKey).isPresent());
+    }
+}
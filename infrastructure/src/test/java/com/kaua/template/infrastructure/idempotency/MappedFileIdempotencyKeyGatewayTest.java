@@ -0,0 +1,228 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.IntegrationTest;
+import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.exceptions.IdempotencyKeyAlreadyExistsException;
+import com.kaua.template.infrastructure.idempotency.gateways.MappedFileIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@IntegrationTest
+public class MappedFileIdempotencyKeyGatewayTest {
+
+    private static final long SEGMENT_SIZE = 4096;
+
+    @Autowired
+    private ObservationHelper observationHelper;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void givenAValidIdempotencyKey_whenCallClaimTwice_thenSecondReturnsInProgress() {
+        try (final var aGateway = newGateway()) {
+            final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+            Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+            final var aSecondClaim = aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+            Assertions.assertFalse(aSecondClaim.acquired());
+            Assertions.assertTrue(aSecondClaim.isInProgress());
+        }
+    }
+
+    @Test
+    void givenAnExistsIdempotencyKey_whenSave_thenThrowIdempotencyKeyAlreadyExists() {
+        try (final var aGateway = newGateway()) {
+            final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+            aGateway.save(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+            Assertions.assertThrows(IdempotencyKeyAlreadyExistsException.class,
+                    () -> aGateway.save(aIdempotencyKey, 1, TimeUnit.HOURS));
+        }
+    }
+
+    @Test
+    void givenACompletedIdempotencyKey_whenRestart_thenRecoverStoredResponse() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aNotReplayableKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aInput = new IdempotencyKeyInput(201, "{\"id\":\"123\"}", Map.of("Location", "/test/123"));
+
+        try (final var aGateway = newGateway()) {
+            Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+            aGateway.complete(aIdempotencyKey, aInput, 1, TimeUnit.HOURS);
+            aGateway.markNotReplayable(aNotReplayableKey, 200, 1, TimeUnit.HOURS);
+        }
+
+        try (final var aGateway = newGateway()) {
+            final var aClaim = aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+            Assertions.assertTrue(aClaim.isCompleted());
+            Assertions.assertEquals(201, aClaim.existing().statusCode());
+            Assertions.assertEquals("{\"id\":\"123\"}", new String(aClaim.existing().body(), StandardCharsets.UTF_8));
+            Assertions.assertEquals("/test/123", aClaim.existing().headers().get("Location"));
+            Assertions.assertTrue(aGateway.claim(aNotReplayableKey, 1, TimeUnit.HOURS).isNotReplayable());
+            Assertions.assertEquals(2, aGateway.size());
+        }
+    }
+
+    @Test
+    void givenATornRecord_whenRestart_thenKeepRecordsBeforeIt() throws Exception {
+        final var aKeptKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aTornKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        try (final var aGateway = newGateway()) {
+            aGateway.save(aKeptKey, 1, TimeUnit.HOURS);
+            aGateway.save(aTornKey, 1, TimeUnit.HOURS);
+        }
+
+        // flips the last byte of the second record checksum
+        final var aRecordSize = 16 + aKeptKey.length() + IdempotencyKeyCodec.encode(IdempotencyKeyDTO.inProgress()).length + 4;
+        try (final var aFile = new RandomAccessFile(this.directory.resolve("segment-1.log").toFile(), "rw")) {
+            aFile.seek(aRecordSize * 2L - 1);
+            final var aByte = aFile.read();
+            aFile.seek(aRecordSize * 2L - 1);
+            aFile.write(aByte ^ 0xff);
+        }
+
+        try (final var aGateway = newGateway()) {
+            Assertions.assertTrue(aGateway.find(aKeptKey).isPresent());
+            Assertions.assertTrue(aGateway.find(aTornKey).isEmpty());
+            Assertions.assertTrue(aGateway.claim(aTornKey, 1, TimeUnit.HOURS).acquired());
+        }
+    }
+
+    @Test
+    void givenAnExpiredIdempotencyKey_whenClaim_thenAcquireAgain() throws Exception {
+        try (final var aGateway = newGateway()) {
+            final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+            Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.MILLISECONDS).acquired());
+            Thread.sleep(20);
+
+            Assertions.assertTrue(aGateway.find(aIdempotencyKey).isEmpty());
+            Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+        }
+    }
+
+    @Test
+    void givenAReleasedIdempotencyKey_whenRestart_thenClaimAcquiresAgain() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        try (final var aGateway = newGateway()) {
+            Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+            aGateway.release(aIdempotencyKey);
+
+            Assertions.assertTrue(aGateway.find(aIdempotencyKey).isEmpty());
+        }
+
+        try (final var aGateway = newGateway()) {
+            Assertions.assertTrue(aGateway.find(aIdempotencyKey).isEmpty());
+            Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+        }
+    }
+
+    @Test
+    void givenAReleasedIdempotencyKey_whenCompactAndRestart_thenTheClaimDoesNotComeBack() throws Exception {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        try (final var aGateway = newGateway()) {
+            Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+            // the release lands in a later segment, which is sealed with only short lived records besides it
+            for (int i = 0; i < 200; i++) {
+                aGateway.save(IdentifierUtils.generateNewIdWithoutHyphen(), 1, TimeUnit.MILLISECONDS);
+            }
+            aGateway.release(aIdempotencyKey);
+            for (int i = 0; i < 200; i++) {
+                aGateway.save(IdentifierUtils.generateNewIdWithoutHyphen(), 1, TimeUnit.MILLISECONDS);
+            }
+            Thread.sleep(20);
+
+            Assertions.assertTrue(aGateway.compact() > 0);
+            Assertions.assertTrue(aGateway.find(aIdempotencyKey).isEmpty());
+        }
+
+        try (final var aGateway = newGateway()) {
+            Assertions.assertTrue(aGateway.find(aIdempotencyKey).isEmpty());
+            Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+        }
+    }
+
+    @Test
+    void givenFullyExpiredSegments_whenCompact_thenDeleteOnlyThem() throws Exception {
+        try (final var aGateway = newGateway()) {
+            final var aValidKey = IdentifierUtils.generateNewIdWithoutHyphen();
+            aGateway.save(aValidKey, 1, TimeUnit.HOURS);
+
+            // enough short lived records to roll over the first segment a few times
+            for (int i = 0; i < 200; i++) {
+                aGateway.save(IdentifierUtils.generateNewIdWithoutHyphen(), 1, TimeUnit.MILLISECONDS);
+            }
+            Thread.sleep(20);
+
+            final var aSegmentsBefore = aGateway.segmentCount();
+            Assertions.assertTrue(aSegmentsBefore > 2);
+
+            final var aDeleted = aGateway.compact();
+
+            // the first segment holds the valid key and the active one is never deleted
+            Assertions.assertEquals(aSegmentsBefore - 2, aDeleted);
+            Assertions.assertEquals(2, aGateway.segmentCount());
+            Assertions.assertEquals(1, aGateway.size());
+            Assertions.assertTrue(aGateway.find(aValidKey).isPresent());
+            try (final var aFiles = Files.list(this.directory)) {
+                Assertions.assertEquals(2, aFiles.count());
+            }
+        }
+    }
+
+    @Test
+    void testConcurrencyClaim() {
+        try (final var aGateway = newGateway()) {
+            final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+            final var aAcquired = new AtomicInteger();
+            final var aInProgress = new AtomicInteger();
+
+            try (final var aExecutor = Executors.newFixedThreadPool(10)) {
+                for (int i = 0; i < 10; i++) {
+                    aExecutor.submit(() -> {
+                        if (aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired()) {
+                            aAcquired.incrementAndGet();
+                        } else {
+                            aInProgress.incrementAndGet();
+                        }
+                    });
+                }
+            }
+
+            Assertions.assertEquals(1, aAcquired.get());
+            Assertions.assertEquals(9, aInProgress.get());
+        }
+    }
+
+    private MappedFileIdempotencyKeyGateway newGateway() {
+        return new MappedFileIdempotencyKeyGateway(
+                this.directory,
+                SEGMENT_SIZE,
+                Duration.ofHours(1),
+                this.observationHelper,
+                IdempotencyKeyCompressor.none()
+        );
+    }
+}
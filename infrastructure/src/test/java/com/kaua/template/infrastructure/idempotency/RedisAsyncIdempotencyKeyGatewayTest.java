@@ -0,0 +1,106 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.AbstractCacheConfig;
+import com.kaua.template.IntegrationTest;
+import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.idempotency.gateways.AsyncIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.RedisAsyncIdempotencyKeyGateway;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+@IntegrationTest
+@TestPropertySource(properties = {
+        "idempotency-key.storage.type=REDIS",
+        "idempotency-key.async.enabled=true"
+})
+class RedisAsyncIdempotencyKeyGatewayTest extends AbstractCacheConfig {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private AsyncIdempotencyKeyGateway asyncIdempotencyKeyGateway;
+
+    @Autowired
+    private IdempotencyKeyGateway idempotencyKeyGateway;
+
+    @BeforeEach
+    void cleanUp() {
+        Objects.requireNonNull(redisTemplate.getConnectionFactory()).getConnection().serverCommands().flushAll();
+    }
+
+    @Test
+    void givenARedisStorage_whenAsyncEnabled_thenUseTheLettuceAsyncGateway() {
+        Assertions.assertInstanceOf(RedisAsyncIdempotencyKeyGateway.class, asyncIdempotencyKeyGateway);
+    }
+
+    @Test
+    void givenAValidIdempotencyKey_whenCallClaimTwice_thenSecondReturnsInProgress() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        final var aFirstClaim = join(asyncIdempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS));
+        final var aSecondClaim = join(asyncIdempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS));
+
+        Assertions.assertTrue(aFirstClaim.acquired());
+        Assertions.assertTrue(aSecondClaim.isInProgress());
+        Assertions.assertTrue(idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).isInProgress());
+    }
+
+    @Test
+    void givenAClaimedKey_whenCompleteAsync_thenBlockingGatewayReplaysIt() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aInput = new IdempotencyKeyInput(201, "{\"id\":\"123\"}", Map.of("Location", "/test/123"));
+
+        Assertions.assertTrue(join(asyncIdempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS)).acquired());
+        join(asyncIdempotencyKeyGateway.complete(aIdempotencyKey, aInput, 1, TimeUnit.HOURS));
+
+        final var aClaim = idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(aClaim.isCompleted());
+        Assertions.assertEquals(201, aClaim.existing().statusCode());
+        Assertions.assertEquals("{\"id\":\"123\"}", new String(aClaim.existing().body(), StandardCharsets.UTF_8));
+        Assertions.assertEquals("/test/123", aClaim.existing().headers().get("Location"));
+    }
+
+    @Test
+    void givenAKeyCompletedByTheBlockingGateway_whenFindAsync_thenReturnIt() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aNotReplayableKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        idempotencyKeyGateway.save(aIdempotencyKey, new IdempotencyKeyInput(200, "ok", Map.of()), 1, TimeUnit.HOURS);
+        join(asyncIdempotencyKeyGateway.markNotReplayable(aNotReplayableKey, 200, 1, TimeUnit.HOURS));
+
+        Assertions.assertEquals("ok", new String(
+                join(asyncIdempotencyKeyGateway.find(aIdempotencyKey)).orElseThrow().body(),
+                StandardCharsets.UTF_8
+        ));
+        Assertions.assertEquals(IdempotencyKeyStatus.NOT_REPLAYABLE,
+                join(asyncIdempotencyKeyGateway.find(aNotReplayableKey)).orElseThrow().status());
+        Assertions.assertTrue(join(asyncIdempotencyKeyGateway.find(IdentifierUtils.generateNewIdWithoutHyphen())).isEmpty());
+    }
+
+    @Test
+    void givenTheScriptsFlushedFromTheServer_whenClaim_thenSendTheScriptAgain() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Objects.requireNonNull(redisTemplate.getConnectionFactory()).getConnection().scriptingCommands().scriptFlush();
+
+        Assertions.assertTrue(join(asyncIdempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS)).acquired());
+        Assertions.assertTrue(join(asyncIdempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS)).isInProgress());
+    }
+
+    private static <T> T join(final CompletionStage<T> stage) {
+        return stage.toCompletableFuture().join();
+    }
+}
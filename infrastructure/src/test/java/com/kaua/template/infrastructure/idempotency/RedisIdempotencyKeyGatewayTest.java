@@ -7,6 +7,7 @@ import com.kaua.template.ObservationTest;
 import com.kaua.template.domain.utils.IdentifierUtils;
 import com.kaua.template.infrastructure.exceptions.IdempotencyKeyAlreadyExistsException;
 import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.RedisIdempotencyKeyGateway;
 import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,7 +17,10 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.TestPropertySource;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
@@ -29,6 +33,8 @@ class RedisIdempotencyKeyGatewayTest extends AbstractCacheConfig implements Obse
     private static final String IDEMPOTENCY_KEY_SAVE_WITH_BODY = "cache.idempotency_key.save_key_with_body";
     private static final String IDEMPOTENCY_KEY_SAVE = "cache.idempotency_key.save_key";
     private static final String IDEMPOTENCY_KEY_FIND = "cache.idempotency_key.find_key";
+    private static final String IDEMPOTENCY_KEY_CLAIM = "cache.idempotency_key.claim_key";
+    private static final String IDEMPOTENCY_KEY_COMPLETE = "cache.idempotency_key.complete_key";
 
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
@@ -301,8 +307,150 @@ class RedisIdempotencyKeyGatewayTest extends AbstractCacheConfig implements Obse
         Assertions.assertEquals(0, aResult.headers().size());
     }
 
+    @Test
+    void givenANonExistsIdempotencyKey_whenClaim_thenShouldAcquireAndMarkInProgress() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        final var aClaim = this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(aClaim.acquired());
+        Assertions.assertNull(aClaim.existing());
+
+        final var aResult = this.idempotencyKeyGateway.find(aIdempotencyKey).get();
+
+        Assertions.assertEquals(IdempotencyKeyStatus.IN_PROGRESS, aResult.status());
+
+        assertSpanCreated(IDEMPOTENCY_KEY_CLAIM);
+        assertSpanAttribute(
+                IDEMPOTENCY_KEY_CLAIM,
+                "idempotency_key",
+                aIdempotencyKey
+        );
+        assertSpanAttribute(
+                IDEMPOTENCY_KEY_CLAIM,
+                "storage_type",
+                "REDIS"
+        );
+    }
+
+    @Test
+    void givenAClaimedIdempotencyKey_whenClaimAgain_thenShouldReturnInProgress() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+        final var aClaim = this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertFalse(aClaim.acquired());
+        Assertions.assertTrue(aClaim.isInProgress());
+        Assertions.assertFalse(aClaim.isCompleted());
+    }
+
+    @Test
+    void givenAClaimedIdempotencyKey_whenRelease_thenClaimAcquiresAgain() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+        this.idempotencyKeyGateway.release(aIdempotencyKey);
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.find(aIdempotencyKey).isEmpty());
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+    }
+
+    @Test
+    void givenACompletedIdempotencyKey_whenClaim_thenShouldReturnStoredResponse() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        final var aHeaders = new HashMap<String, String>();
+        aHeaders.put("location", "/test/123");
+
+        final var aIdempotencyKeyInput = new IdempotencyKeyInput(201, "{\"id\":\"123\"}", aHeaders);
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+        this.idempotencyKeyGateway.complete(aIdempotencyKey, aIdempotencyKeyInput, 1, TimeUnit.HOURS);
+
+        final var aClaim = this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(aClaim.isCompleted());
+        Assertions.assertEquals(201, aClaim.existing().statusCode());
+        Assertions.assertEquals("{\"id\":\"123\"}", new String(aClaim.existing().body(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(aHeaders, aClaim.existing().headers());
+
+        assertSpanCreated(IDEMPOTENCY_KEY_COMPLETE);
+        assertSpanAttribute(
+                IDEMPOTENCY_KEY_COMPLETE,
+                "idempotency_key",
+                aIdempotencyKey
+        );
+    }
+
+    @Test
+    void testConcurrencyClaim() throws InterruptedException {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        ConcurrentlyTestHelper.doSyncAndConcurrently(
+                10,
+                o -> {
+                    if (!this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired()) {
+                        throw new IllegalStateException("Idempotency key already claimed");
+                    }
+                },
+                RedisIdempotencyKeyGatewayTest.class.getSimpleName(),
+                1,
+                9
+        );
+    }
+
     @Override
     public InMemorySpanExporter getSpanExporter() {
         return spanExporter;
     }
+
+    @Test
+    void givenClaimedIdempotencyKeys_whenCompleteAll_thenStoreEveryFinalStateInOneCall() {
+        final var aCompletedKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aNotReplayableKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(idempotencyKeyGateway.claim(aCompletedKey, 1, TimeUnit.HOURS).acquired());
+        Assertions.assertTrue(idempotencyKeyGateway.claim(aNotReplayableKey, 1, TimeUnit.HOURS).acquired());
+
+        idempotencyKeyGateway.completeAll(List.of(
+                IdempotencyKeyCompletion.completed(aCompletedKey, new IdempotencyKeyInput(201, "created", Map.of()), 1, TimeUnit.HOURS),
+                IdempotencyKeyCompletion.notReplayable(aNotReplayableKey, 200, 1, TimeUnit.HOURS)
+        ));
+
+        final var aCompleted = idempotencyKeyGateway.claim(aCompletedKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(aCompleted.isCompleted());
+        Assertions.assertEquals("created", new String(aCompleted.existing().body(), StandardCharsets.UTF_8));
+        Assertions.assertTrue(idempotencyKeyGateway.claim(aNotReplayableKey, 1, TimeUnit.HOURS).isNotReplayable());
+        assertSpanCreated("cache.idempotency_key.complete_keys");
+    }
+
+    @Test
+    void givenASavedIdempotencyKey_whenReadRawValue_thenStoreCodecBytesWithoutJavaSerialization() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        idempotencyKeyGateway.save(aIdempotencyKey, new IdempotencyKeyInput(201, "created", Map.of()), 1, TimeUnit.HOURS);
+
+        final var aConnection = Objects.requireNonNull(redisTemplate.getConnectionFactory()).getConnection();
+        try {
+            final var aRaw = aConnection.stringCommands().get(("idempotency:{" + aIdempotencyKey + "}").getBytes(StandardCharsets.UTF_8));
+
+            Assertions.assertNotNull(aRaw);
+            // 0xACED is the stream magic of the java serialization
+            Assertions.assertFalse(aRaw.length > 1 && aRaw[0] == (byte) 0xAC && aRaw[1] == (byte) 0xED);
+            Assertions.assertEquals("created", new String(IdempotencyKeyCodec.decode(aRaw).body(), StandardCharsets.UTF_8));
+        } finally {
+            aConnection.close();
+        }
+    }
+
+    @Test
+    void givenATemplateWithoutByteArrayValues_whenCreateGateway_thenThrowIllegalArgument() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new RedisIdempotencyKeyGateway(new RedisTemplate<>(), null));
+    }
 }
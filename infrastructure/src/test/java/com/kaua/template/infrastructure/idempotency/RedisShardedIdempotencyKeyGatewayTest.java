@@ -0,0 +1,147 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.AbstractCacheConfig;
+import com.kaua.template.IntegrationTest;
+import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.RedisIdempotencyKeyShards;
+import com.kaua.template.infrastructure.idempotency.gateways.ShardedIdempotencyKeyGateway;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.utility.DockerImageName;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@IntegrationTest
+@TestPropertySource(properties = {
+        "idempotency-key.storage.type=redis",
+        "idempotency-key.wait.enabled=true",
+        "idempotency-key.wait.max-wait=20s",
+        // long enough that only the pub/sub notification of the shard can wake the waiter within the test timeout
+        "idempotency-key.wait.poll-interval=20s"
+})
+class RedisShardedIdempotencyKeyGatewayTest extends AbstractCacheConfig {
+
+    private static final GenericContainer<?> firstShard = shardContainer();
+    private static final GenericContainer<?> secondShard = shardContainer();
+
+    static {
+        firstShard.start();
+        secondShard.start();
+    }
+
+    @Autowired
+    private IdempotencyKeyGateway idempotencyKeyGateway;
+
+    @Autowired
+    private RedisIdempotencyKeyShards redisIdempotencyKeyShards;
+
+    @Autowired
+    private IdempotencyKeyWaiters idempotencyKeyWaiters;
+
+    @DynamicPropertySource
+    static void shardProperties(final DynamicPropertyRegistry registry) {
+        registry.add("idempotency-key.storage.redis.shards[0]", () -> firstShard.getHost() + ":" + firstShard.getFirstMappedPort());
+        registry.add("idempotency-key.storage.redis.shards[1]", () -> secondShard.getHost() + ":" + secondShard.getFirstMappedPort());
+    }
+
+    @BeforeEach
+    void cleanUp() {
+        this.redisIdempotencyKeyShards.getTemplates().values().forEach(template ->
+                Objects.requireNonNull(template.getConnectionFactory()).getConnection().serverCommands().flushAll());
+    }
+
+    @Test
+    void givenRedisShards_whenInject_thenUseShardedGateway() {
+        Assertions.assertInstanceOf(ShardedIdempotencyKeyGateway.class, this.idempotencyKeyGateway);
+        Assertions.assertEquals(2, ((ShardedIdempotencyKeyGateway) this.idempotencyKeyGateway).getShards().size());
+    }
+
+    @Test
+    void givenManyIdempotencyKeys_whenClaim_thenStoreThemOnBothShardsWithHashTaggedKeys() {
+        for (int i = 0; i < 50; i++) {
+            Assertions.assertTrue(this.idempotencyKeyGateway.claim(IdentifierUtils.generateNewIdWithoutHyphen(), 1, TimeUnit.HOURS).acquired());
+        }
+
+        var aTotal = 0L;
+        for (final var aTemplate : this.redisIdempotencyKeyShards.getTemplates().values()) {
+            final var aKeys = Objects.requireNonNull(aTemplate.keys("idempotency:{*}"));
+
+            Assertions.assertFalse(aKeys.isEmpty());
+            aTotal += aKeys.size();
+        }
+        Assertions.assertEquals(50, aTotal);
+    }
+
+    @Test
+    void givenAClaimedIdempotencyKey_whenComplete_thenClaimReturnsStoredResponse() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+        this.idempotencyKeyGateway.complete(aIdempotencyKey, new IdempotencyKeyInput(201, "created", Map.of()), 1, TimeUnit.HOURS);
+
+        final var aClaim = this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(aClaim.isCompleted());
+        Assertions.assertEquals("created", new String(aClaim.existing().body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void givenAWaitingRequest_whenKeyIsCompletedOnItsShard_thenWakeWaiterThroughTheShardPubSub() throws Exception {
+        // one key per shard, so a completion is published on each of them
+        final var aShardedGateway = (ShardedIdempotencyKeyGateway) this.idempotencyKeyGateway;
+        final var aKeysByShard = new HashMap<IdempotencyKeyGateway, String>();
+        while (aKeysByShard.size() < aShardedGateway.getShards().size()) {
+            final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+            aKeysByShard.putIfAbsent(aShardedGateway.shardFor(aIdempotencyKey), aIdempotencyKey);
+        }
+
+        for (final var aIdempotencyKey : aKeysByShard.values()) {
+            Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+            try (final var aExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+                final var aWaiting = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return this.idempotencyKeyWaiters.await(aIdempotencyKey, 1, TimeUnit.HOURS);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException(e);
+                    }
+                }, aExecutor);
+
+                while (this.idempotencyKeyWaiters.size() == 0) {
+                    Thread.sleep(5);
+                }
+
+                // completed without a local signal, as if another instance owned the key
+                this.idempotencyKeyGateway.complete(
+                        aIdempotencyKey,
+                        new IdempotencyKeyInput(201, "created", Map.of()),
+                        1,
+                        TimeUnit.HOURS
+                );
+
+                Assertions.assertTrue(aWaiting.get(5, TimeUnit.SECONDS).isCompleted());
+            }
+        }
+    }
+
+    private static GenericContainer<?> shardContainer() {
+        return new GenericContainer<>(DockerImageName.parse("redis:alpine"))
+                .withExposedPorts(6379)
+                .waitingFor(Wait.forLogMessage(".*Ready to accept connections.*", 1));
+    }
+}
@@ -0,0 +1,97 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.IntegrationTest;
+import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.InMemoryIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.ShardedIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@IntegrationTest
+public class ShardedIdempotencyKeyGatewayTest {
+
+    private static final int KEYS = 3000;
+
+    @Autowired
+    private ObservationHelper observationHelper;
+
+    @Test
+    void givenAClaimedIdempotencyKey_whenClaimAgain_thenRouteToTheSameShard() {
+        final var aGateway = new ShardedIdempotencyKeyGateway(shards("a", "b", "c"), 160);
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+        Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).isInProgress());
+        Assertions.assertTrue(aGateway.shardFor(aIdempotencyKey).find(aIdempotencyKey).isPresent());
+    }
+
+    @Test
+    void givenManyKeys_whenRoute_thenSpreadThemOverEveryShard() {
+        final var aGateway = new ShardedIdempotencyKeyGateway(shards("a", "b", "c"), 160);
+        final var aCount = new HashMap<IdempotencyKeyGateway, Integer>();
+
+        keys().forEach(key -> aCount.merge(aGateway.shardFor(key), 1, Integer::sum));
+
+        Assertions.assertEquals(3, aCount.size());
+        aCount.values().forEach(count -> Assertions.assertTrue(count > KEYS * 0.2 && count < KEYS * 0.47, "unbalanced shard: " + count));
+    }
+
+    @Test
+    void givenANewShard_whenRoute_thenMoveOnlyTheKeysOfTheNewShard() {
+        final var aShards = shards("a", "b", "c");
+        final var aGateway = new ShardedIdempotencyKeyGateway(aShards, 160);
+
+        final var aExtendedShards = new LinkedHashMap<String, IdempotencyKeyGateway>(aShards);
+        aExtendedShards.put("d", new InMemoryIdempotencyKeyGateway(this.observationHelper));
+        final var aExtendedGateway = new ShardedIdempotencyKeyGateway(aExtendedShards, 160);
+
+        var aMoved = 0;
+        for (final var aKey : keys()) {
+            final var aBefore = aGateway.shardFor(aKey);
+            final var aAfter = aExtendedGateway.shardFor(aKey);
+
+            if (aBefore != aAfter) {
+                Assertions.assertSame(aExtendedShards.get("d"), aAfter);
+                aMoved++;
+            }
+        }
+
+        Assertions.assertTrue(aMoved > KEYS * 0.15 && aMoved < KEYS * 0.35, "moved keys: " + aMoved);
+    }
+
+    @Test
+    void givenCompletionsOfManyShards_whenCompleteAll_thenEachShardStoresItsKeys() {
+        final var aGateway = new ShardedIdempotencyKeyGateway(shards("a", "b", "c"), 160);
+        final var aKeys = keys().subList(0, 30);
+
+        aKeys.forEach(key -> Assertions.assertTrue(aGateway.claim(key, 1, TimeUnit.HOURS).acquired()));
+
+        aGateway.completeAll(aKeys.stream()
+                .map(key -> IdempotencyKeyCompletion.notReplayable(key, 200, 1, TimeUnit.HOURS))
+                .toList());
+
+        aKeys.forEach(key -> Assertions.assertTrue(aGateway.shardFor(key).claim(key, 1, TimeUnit.HOURS).isNotReplayable()));
+    }
+
+    private Map<String, IdempotencyKeyGateway> shards(final String... names) {
+        final var aShards = new LinkedHashMap<String, IdempotencyKeyGateway>();
+        for (final var aName : names) {
+            aShards.put(aName, new InMemoryIdempotencyKeyGateway(this.observationHelper));
+        }
+        return aShards;
+    }
+
+    private static List<String> keys() {
+        return IntStream.range(0, KEYS).mapToObj(i -> "key-" + i).toList();
+    }
+}
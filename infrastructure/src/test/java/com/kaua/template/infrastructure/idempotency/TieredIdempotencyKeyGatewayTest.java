@@ -0,0 +1,130 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.AbstractCacheConfig;
+import com.kaua.template.IntegrationTest;
+import com.kaua.template.ObservationTest;
+import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.idempotency.gateways.IdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.InMemoryIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.TieredIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+@IntegrationTest
+@TestPropertySource(properties = {
+        "idempotency-key.storage.type=tiered"
+})
+class TieredIdempotencyKeyGatewayTest extends AbstractCacheConfig implements ObservationTest {
+
+    private static final String IDEMPOTENCY_KEY_NEAR_CACHE_CLAIM = "cache.idempotency_key.near_cache_claim_key";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private IdempotencyKeyGateway idempotencyKeyGateway;
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @Autowired
+    private ObservationHelper observationHelper;
+
+    @BeforeEach
+    void cleanUp() {
+        flushRedis();
+        resetSpans();
+    }
+
+    @Test
+    void givenTieredStorageType_whenInject_thenUseTieredGateway() {
+        Assertions.assertInstanceOf(TieredIdempotencyKeyGateway.class, this.idempotencyKeyGateway);
+    }
+
+    @Test
+    void givenACompletedIdempotencyKey_whenClaim_thenServeFromNearCacheWithoutRedis() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aInput = new IdempotencyKeyInput(201, "{\"id\":\"123\"}", Map.of("location", "/test/123"));
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+        this.idempotencyKeyGateway.complete(aIdempotencyKey, aInput, 1, TimeUnit.HOURS);
+
+        // the response must still be replayed even if redis lost the key
+        flushRedis();
+        resetSpans();
+
+        final var aClaim = this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(aClaim.isCompleted());
+        Assertions.assertEquals(201, aClaim.existing().statusCode());
+        Assertions.assertEquals("{\"id\":\"123\"}", new String(aClaim.existing().body(), StandardCharsets.UTF_8));
+        Assertions.assertTrue(this.idempotencyKeyGateway.find(aIdempotencyKey).isPresent());
+
+        assertSpanAttribute(IDEMPOTENCY_KEY_NEAR_CACHE_CLAIM, "near_cache_hit", true);
+    }
+
+    @Test
+    void givenAnInProgressIdempotencyKey_whenClaim_thenAskRedis() {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+
+        final var aClaim = this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS);
+
+        Assertions.assertTrue(aClaim.isInProgress());
+        assertSpanAttribute(IDEMPOTENCY_KEY_NEAR_CACHE_CLAIM, "near_cache_hit", false);
+    }
+
+    @Test
+    void givenACompletedIdempotencyKeyWithShortTtl_whenTtlElapses_thenNearCacheDropsIt() throws InterruptedException {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aInput = new IdempotencyKeyInput(200, "OK", Map.of());
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 100, TimeUnit.MILLISECONDS).acquired());
+        this.idempotencyKeyGateway.complete(aIdempotencyKey, aInput, 100, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(250);
+
+        Assertions.assertTrue(this.idempotencyKeyGateway.find(aIdempotencyKey).isEmpty());
+        Assertions.assertTrue(this.idempotencyKeyGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+    }
+
+    @Test
+    void givenAKeyCompletedByAnotherNode_whenClaimAfterItExpires_thenDoNotReplayFromNearCache() throws InterruptedException {
+        final var aIdempotencyKey = IdentifierUtils.generateNewIdWithoutHyphen();
+        final var aInput = new IdempotencyKeyInput(200, "OK", Map.of());
+        final var aDelegate = new InMemoryIdempotencyKeyGateway(this.observationHelper);
+        final var aGateway = new TieredIdempotencyKeyGateway(aDelegate, this.observationHelper, 100, Duration.ofMinutes(5));
+
+        // another node completes the key with a short ttl straight in the shared store
+        Assertions.assertTrue(aDelegate.claim(aIdempotencyKey, 100, TimeUnit.MILLISECONDS).acquired());
+        aDelegate.complete(aIdempotencyKey, aInput, 100, TimeUnit.MILLISECONDS);
+
+        Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).isCompleted());
+
+        Thread.sleep(250);
+
+        Assertions.assertTrue(aGateway.claim(aIdempotencyKey, 1, TimeUnit.HOURS).acquired());
+    }
+
+    private void flushRedis() {
+        Objects.requireNonNull(redisTemplate.getConnectionFactory()).getConnection().serverCommands().flushAll();
+    }
+
+    @Override
+    public InMemorySpanExporter getSpanExporter() {
+        return spanExporter;
+    }
+}
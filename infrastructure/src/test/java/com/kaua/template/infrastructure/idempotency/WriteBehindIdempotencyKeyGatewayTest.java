@@ -0,0 +1,168 @@
+package com.kaua.template.infrastructure.idempotency;
+
+import com.kaua.template.IntegrationTest;
+import com.kaua.template.domain.utils.IdentifierUtils;
+import com.kaua.template.infrastructure.idempotency.gateways.InMemoryIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.idempotency.gateways.WriteBehindIdempotencyKeyGateway;
+import com.kaua.template.infrastructure.utils.ObservationHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@IntegrationTest
+public class WriteBehindIdempotencyKeyGatewayTest {
+
+    @Autowired
+    private ObservationHelper observationHelper;
+
+    @Test
+    void givenACompletedKeyNotWrittenYet_whenClaim_thenReturnPendingResponse() throws Exception {
+        final var aDelegate = new BlockingGateway(this.observationHelper);
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        try (final var aGateway = new WriteBehindIdempotencyKeyGateway(aDelegate, 10, 10)) {
+            Assertions.assertTrue(aGateway.claim(aKey, 1, TimeUnit.HOURS).acquired());
+
+            aGateway.complete(aKey, new IdempotencyKeyInput(201, "created", Map.of()), 1, TimeUnit.HOURS);
+            Assertions.assertTrue(aDelegate.entered.await(1, TimeUnit.SECONDS));
+
+            final var aClaim = aGateway.claim(aKey, 1, TimeUnit.HOURS);
+
+            Assertions.assertTrue(aClaim.isCompleted());
+            Assertions.assertEquals("created", new String(aClaim.existing().body(), StandardCharsets.UTF_8));
+            Assertions.assertTrue(aDelegate.claim(aKey, 1, TimeUnit.HOURS).isInProgress());
+
+            aDelegate.release.countDown();
+            waitUntilWritten(aGateway);
+
+            Assertions.assertTrue(aDelegate.claim(aKey, 1, TimeUnit.HOURS).isCompleted());
+        }
+    }
+
+    @Test
+    void givenManyCompletions_whenWriterIsBusy_thenWriteThemInOneBatch() throws Exception {
+        final var aDelegate = new BlockingGateway(this.observationHelper);
+
+        try (final var aGateway = new WriteBehindIdempotencyKeyGateway(aDelegate, 100, 50)) {
+            aGateway.markNotReplayable(IdentifierUtils.generateNewIdWithoutHyphen(), 200, 1, TimeUnit.HOURS);
+            Assertions.assertTrue(aDelegate.entered.await(1, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 20; i++) {
+                aGateway.complete(IdentifierUtils.generateNewIdWithoutHyphen(), new IdempotencyKeyInput(200, "ok", Map.of()), 1, TimeUnit.HOURS);
+            }
+
+            aDelegate.release.countDown();
+            waitUntilWritten(aGateway);
+
+            Assertions.assertEquals(2, aDelegate.batches.get());
+            Assertions.assertEquals(21, aDelegate.size());
+        }
+    }
+
+    @Test
+    void givenAFullQueue_whenComplete_thenWriteSynchronously() throws Exception {
+        final var aDelegate = new BlockingGateway(this.observationHelper);
+        final var aKey = IdentifierUtils.generateNewIdWithoutHyphen();
+
+        try (final var aGateway = new WriteBehindIdempotencyKeyGateway(aDelegate, 1, 10)) {
+            aGateway.markNotReplayable(IdentifierUtils.generateNewIdWithoutHyphen(), 200, 1, TimeUnit.HOURS);
+            Assertions.assertTrue(aDelegate.entered.await(1, TimeUnit.SECONDS));
+            aGateway.markNotReplayable(IdentifierUtils.generateNewIdWithoutHyphen(), 200, 1, TimeUnit.HOURS);
+
+            aGateway.complete(aKey, new IdempotencyKeyInput(201, "created", Map.of()), 1, TimeUnit.HOURS);
+
+            Assertions.assertEquals(1, aGateway.getSynchronousWriteCount());
+            Assertions.assertTrue(aDelegate.find(aKey).isPresent());
+
+            aDelegate.release.countDown();
+        }
+
+        Assertions.assertEquals(3, aDelegate.size());
+    }
+
+    @Test
+    void givenQueuedCompletions_whenClose_thenWriteThemBeforeReturning() throws Exception {
+        final var aDelegate = new BlockingGateway(this.observationHelper);
+        final var aGateway = new WriteBehindIdempotencyKeyGateway(aDelegate, 10, 10);
+
+        aGateway.markNotReplayable(IdentifierUtils.generateNewIdWithoutHyphen(), 200, 1, TimeUnit.HOURS);
+        Assertions.assertTrue(aDelegate.entered.await(1, TimeUnit.SECONDS));
+        aGateway.markNotReplayable(IdentifierUtils.generateNewIdWithoutHyphen(), 200, 1, TimeUnit.HOURS);
+
+        aDelegate.release.countDown();
+        aGateway.close();
+
+        Assertions.assertEquals(0, aGateway.pendingCount());
+        Assertions.assertEquals(2, aDelegate.size());
+    }
+
+    @Test
+    void givenCompletionsSubmittedDuringShutdown_whenClose_thenNoneIsLost() throws Exception {
+        final var aDelegate = new BlockingGateway(this.observationHelper);
+        aDelegate.release.countDown();
+        final var aGateway = new WriteBehindIdempotencyKeyGateway(aDelegate, 1000, 10);
+
+        final var aStarted = new CountDownLatch(4);
+        final var aSubmitted = new AtomicInteger();
+        final var aThreads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            aThreads.add(Thread.ofVirtual().start(() -> {
+                aStarted.countDown();
+                for (int j = 0; j < 500; j++) {
+                    aGateway.complete(IdentifierUtils.generateNewIdWithoutHyphen(), new IdempotencyKeyInput(200, "ok", Map.of()), 1, TimeUnit.HOURS);
+                    aSubmitted.incrementAndGet();
+                }
+            }));
+        }
+
+        Assertions.assertTrue(aStarted.await(1, TimeUnit.SECONDS));
+        aGateway.close();
+        for (final var aThread : aThreads) {
+            aThread.join();
+        }
+
+        Assertions.assertEquals(2000, aSubmitted.get());
+        Assertions.assertEquals(0, aGateway.pendingCount());
+        Assertions.assertEquals(2000, aDelegate.size());
+    }
+
+    private static void waitUntilWritten(final WriteBehindIdempotencyKeyGateway gateway) throws InterruptedException {
+        final var aDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (gateway.pendingCount() > 0 && System.nanoTime() < aDeadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(0, gateway.pendingCount());
+    }
+
+    // holds the first batch until released, so the test controls what is still pending
+    private static class BlockingGateway extends InMemoryIdempotencyKeyGateway {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger batches = new AtomicInteger();
+
+        BlockingGateway(final ObservationHelper observationHelper) {
+            super(observationHelper);
+        }
+
+        @Override
+        public void completeAll(final List<IdempotencyKeyCompletion> completions) {
+            this.entered.countDown();
+            try {
+                this.release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.batches.incrementAndGet();
+            super.completeAll(completions);
+        }
+    }
+}
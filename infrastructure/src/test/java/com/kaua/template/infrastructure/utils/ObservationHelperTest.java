@@ -12,6 +12,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.info.BuildProperties;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -137,4 +138,33 @@ class ObservationHelperTest extends UnitTest {
         verify(span).recordException(exception);
         verify(span).end();
     }
+
+    @Test
+    void testObservationAsyncEndsSpanWhenStageCompletes() {
+        final var future = new CompletableFuture<String>();
+
+        observationHelper = new ObservationHelper(openTelemetry, buildProperties);
+        final var result = observationHelper.observationAsync("test-span", span -> future);
+
+        verify(span, never()).end();
+
+        future.complete("result");
+
+        assertEquals("result", result.toCompletableFuture().join());
+        verify(span).end();
+    }
+
+    @Test
+    void testObservationAsyncRecordsFailureOfTheStage() {
+        final var future = new CompletableFuture<String>();
+        final var exception = new RuntimeException("Test Exception");
+
+        observationHelper = new ObservationHelper(openTelemetry, buildProperties);
+        observationHelper.observationAsync("test-span", span -> future);
+
+        future.completeExceptionally(exception);
+
+        verify(span).recordException(exception);
+        verify(span).end();
+    }
 }